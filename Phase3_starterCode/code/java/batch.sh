@@ -0,0 +1,10 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+COMMANDS=$4
+THREADS=$5
+GROUP=$6
+
+# Example: source ./batch.sh flightDB 5432 user commands.txt 8 100
+java -cp lib/*:bin/ BatchRunner $USER"_DB" $PORT $USER $COMMANDS $THREADS $GROUP
@@ -0,0 +1,11 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+BENCHMARK=$4
+ITERATIONS=$5
+REPLICAS=$6
+
+# Example: source ./bench.sh flightDB 5432 user lookups 10000
+# Replica routing: source ./bench.sh flightDB 5432 user replicas 1000 localhost:9991
+java ${REPLICAS:+-Ddbproject.replicas=$REPLICAS} -cp lib/*:bin/ DBbench $USER"_DB" $PORT $USER $BENCHMARK $ITERATIONS
@@ -0,0 +1,12 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+DIR=${4:-export}
+FORMAT=${5:-csv}
+GZIP=${6:-false}
+shift 6 2>/dev/null
+
+# Example: source ./export.sh flightDB 5432 user export jsonl true
+# Selected tables only: source ./export.sh flightDB 5432 user export csv false 4 Reservation Repairs
+java -cp lib/*:bin/ Exporter $USER"_DB" $PORT $USER $DIR $FORMAT $GZIP "$@"
@@ -0,0 +1,9 @@
+#! /bin/bash
+DIR=${1:-generated}
+SCALE=${2:-1}
+SEED=${3:-1}
+THREADS=${4:-4}
+
+# Example: source ./gen.sh ../data_x100 100 42 8
+# Then load it with: source ./load.sh flightDB 5432 user ../data_x100
+java -cp lib/*:bin/ DataGenerator $DIR $SCALE $SEED $THREADS
@@ -0,0 +1,9 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+MODE=$4
+BASELINE=${5:-plan_baseline.txt}
+
+# Example: source ./plancheck.sh flightDB 5432 user check plan_baseline.txt
+java -cp lib/*:bin/ PlanCheck $USER"_DB" $PORT $USER $MODE $BASELINE
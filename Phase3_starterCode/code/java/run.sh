@@ -2,6 +2,10 @@
 DBNAME=$1
 PORT=$2
 USER=$3
+SNAPSHOT=$4
+REPLICAS=$5
 
 # Example: source ./run.sh flightDB 5432 user
-java -cp lib/*:bin/ DBproject $USER"_DB" $PORT $USER
+# With a reference snapshot: source ./run.sh flightDB 5432 user reference.snapshot
+# Reading from replicas: source ./run.sh flightDB 5432 user "" localhost:9991
+java -Ddbproject.listen=true ${SNAPSHOT:+-Ddbproject.snapshot=$SNAPSHOT} ${REPLICAS:+-Ddbproject.replicas=$REPLICAS} -cp lib/*:bin/ DBproject $USER"_DB" $PORT $USER
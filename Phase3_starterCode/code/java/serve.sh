@@ -0,0 +1,10 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+HTTPPORT=${4:-8080}
+REPLICAS=$5
+
+# Example: source ./serve.sh flightDB 5432 user 8080
+# Reading from replicas: source ./serve.sh flightDB 5432 user 8080 localhost:9991,localhost:9992
+java -Ddbproject.listen=true ${REPLICAS:+-Ddbproject.replicas=$REPLICAS} -cp lib/*:bin/ HttpFrontEnd $USER"_DB" $PORT $USER $HTTPPORT
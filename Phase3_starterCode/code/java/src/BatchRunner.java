@@ -0,0 +1,406 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class runs the menu operations without the menu.  It reads a
+ * command file, or standard input, with one operation per line: the
+ * operation name followed by its arguments, separated by commas, e.g.
+ *
+ *   book,157,1203
+ *   seats,1203,2014-05-01
+ *   add-flight,450,0,1,2014-05-01 16:45,2014-05-01 19:10,LAX,SFO,12,34
+ *
+ * Blank lines and lines starting with # are skipped.  Commands run back
+ * to back on a number of worker threads, optionally grouped into one
+ * transaction per N commands, and the throughput and latency of every
+ * operation type is reported at the end.  Query results are fetched but
+ * not printed.
+ *
+ * With more than one thread, commands of different groups run
+ * concurrently and their order is not kept.  A group whose transaction
+ * fails, e.g. on a deadlock between two groups booking the same flights,
+ * is rolled back as a whole and counted under "transaction".
+ */
+
+public class BatchRunner{
+	//command groups read ahead of the workers, per worker
+	static final int QUEUE_DEPTH = 4;
+	//operation name of the per group commit
+	static final String TRANSACTION = "transaction";
+
+	/**
+	 * One operation of a command file.
+	 */
+	interface Op{
+		/**
+		 * @return the number of rows fetched or written
+		 */
+		int run(DBproject esql, String[] args) throws SQLException;
+	}
+
+	/**
+	 * A parsed command line.
+	 */
+	static class Command{
+		final int line;
+		final String name;
+		final Op op;
+		final String[] args;
+
+		Command(int line, String name, Op op, String[] args) {
+			this.line = line;
+			this.name = name;
+			this.op = op;
+			this.args = args;
+		}
+	}
+
+	/**
+	 * Counters of one operation type.
+	 */
+	static class OpStats{
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLong errors = new AtomicLong();
+		final AtomicLong rows = new AtomicLong();
+	}
+
+	//operations by name, with the number of arguments they take
+	static final Map<String, Op> OPS = new LinkedHashMap<String, Op>();
+	static final Map<String, Integer> ARITY = new LinkedHashMap<String, Integer>();
+
+	static void op(String name, int arity, Op op) {
+		OPS.put(name, op);
+		ARITY.put(name, arity);
+	}
+
+	static{
+		op("add-plane", 4, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				return esql.addPlane(esql.nextId(IdAllocator.PLANE), a[0], a[1], Integer.parseInt(a[2]), Integer.parseInt(a[3]));
+			}
+		});
+		op("add-pilot", 2, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				return esql.addPilot(esql.nextId(IdAllocator.PILOT), a[0], a[1]);
+			}
+		});
+		op("add-flight", 9, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				esql.addFlight(new FlightWriter.NewFlight(Integer.parseInt(a[0]), Integer.parseInt(a[1]), Integer.parseInt(a[2]),
+						a[3], a[4], a[5], a[6], Integer.parseInt(a[7]), Integer.parseInt(a[8])));
+				return 3;
+			}
+		});
+		op("add-technician", 1, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				return esql.addTechnician(esql.nextId(IdAllocator.TECHNICIAN), a[0]);
+			}
+		});
+		op("book", 2, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				esql.bookFlight(Integer.parseInt(a[0]), Integer.parseInt(a[1]));
+				return 1;
+			}
+		});
+		op("cancel", 1, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				return esql.cancelReservation(Integer.parseInt(a[0])) == null ? 0 : 1;
+			}
+		});
+		op("promote", 1, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				//"all" promotes on every flight
+				return a[0].equals("all") ? esql.promoteWaitlist() : esql.promoteWaitlist(Integer.parseInt(a[0]));
+			}
+		});
+		op("seats", 1, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				//an optional second argument is the departure date
+				Integer seats = a.length > 1 ? esql.availableSeats(Integer.parseInt(a[0]), a[1])
+						: esql.availableSeats(Integer.parseInt(a[0]));
+				return seats == null ? 0 : 1;
+			}
+		});
+		query("repairs-per-plane", DBproject.REPAIRS_PER_PLANE, 0);
+		query("repairs-per-year", DBproject.REPAIRS_PER_YEAR, 0);
+		op("passengers-with-status", 2, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				return fetch(esql, DBproject.PASSENGERS_WITH_STATUS, Integer.parseInt(a[0]), a[1]);
+			}
+		});
+		query("passengers-in-all-status", DBproject.PASSENGERS_IN_ALL_STATUS, 0);
+		find("find-plane", DBproject.FIND_PLANE);
+		find("find-pilot", DBproject.FIND_PILOT);
+		find("find-flight", DBproject.FIND_FLIGHT);
+		find("find-technician", DBproject.FIND_TECHNICIAN);
+		find("find-reservation", DBproject.FIND_RESERVATION);
+		find("find-customer", DBproject.FIND_CUSTOMER);
+	}
+
+	/**
+	 * Registers a primary key lookup, which goes through the entity cache
+	 * of tables that have one.
+	 */
+	static void find(String name, final String sql) {
+		op(name, 1, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				return esql.find(sql, Integer.parseInt(a[0])).rowCount();
+			}
+		});
+	}
+
+	/**
+	 * Registers a read only operation whose arguments are integer parameters.
+	 */
+	static void query(String name, final String sql, int arity) {
+		op(name, arity, new Op(){
+			public int run(DBproject esql, String[] a) throws SQLException {
+				Object[] params = new Object[a.length];
+				for (int i = 0; i < a.length; ++i)
+					params[i] = Integer.parseInt(a[i]);
+				return fetch(esql, sql, params);
+			}
+		});
+	}
+
+	/**
+	 * Streams the rows of a query without keeping or printing them.
+	 */
+	static int fetch(DBproject esql, String sql, Object... params) throws SQLException {
+		return esql.executeQueryStreaming(sql, new DBproject.RowHandler(){
+			public void row(ResultSet rs) {
+			}
+		}, params);
+	}
+
+	/**
+	 * Method to parse one line of a command file.
+	 *
+	 * @return the command, or null for a blank or comment line
+	 * @throws java.lang.IllegalArgumentException for an unknown operation or a wrong number of arguments
+	 */
+	static Command parse(int line, String text) {
+		text = text.trim();
+		if (text.isEmpty() || text.startsWith("#")) return null;
+		String[] fields = text.split(",", -1);
+		for (int i = 0; i < fields.length; ++i)
+			fields[i] = fields[i].trim();
+		String name = fields[0];
+		Op op = OPS.get(name);
+		if (op == null) throw new IllegalArgumentException("unknown operation " + name);
+		String[] args = Arrays.copyOfRange(fields, 1, fields.length);
+		int arity = ARITY.get(name);
+		//seats takes an optional date
+		if (args.length != arity && !(name.equals("seats") && args.length == 2))
+			throw new IllegalArgumentException(name + " takes " + arity + " arguments, got " + args.length);
+		return new Command(line, name, op, args);
+	}
+
+	private final DBproject _esql;
+	private final int _threads;
+	private final int _groupSize;
+	private final ConcurrentHashMap<String, OpStats> _stats = new ConcurrentHashMap<String, OpStats>();
+	private final AtomicLong _parseErrors = new AtomicLong();
+
+	/**
+	 * @param threads the number of commands run at the same time
+	 * @param groupSize commands per transaction, 1 runs every command on its own
+	 */
+	public BatchRunner(DBproject esql, int threads, int groupSize) {
+		this._esql = esql;
+		this._threads = threads;
+		this._groupSize = groupSize;
+	}
+
+	private OpStats stats(String name) {
+		OpStats stats = this._stats.get(name);
+		if (stats == null){
+			OpStats created = new OpStats();
+			stats = this._stats.putIfAbsent(name, created);
+			if (stats == null) stats = created;
+		}//end if
+		return stats;
+	}
+
+	/**
+	 * Method to run every command read from a stream and print the report.
+	 *
+	 * @param commands the command file
+	 * @throws java.lang.Exception when the commands could not be read
+	 */
+	public void run(BufferedReader commands) throws Exception {
+		final List<Command> poison = new ArrayList<Command>();
+		final BlockingQueue<List<Command>> queue = new ArrayBlockingQueue<List<Command>>(this._threads * QUEUE_DEPTH);
+		Thread[] workers = new Thread[this._threads];
+		for (int i = 0; i < workers.length; ++i){
+			workers[i] = new Thread("batch-" + i){
+				public void run() {
+					try{
+						for (List<Command> group = queue.take(); group != poison; group = queue.take())
+							runGroup(group);
+					}catch (InterruptedException e){
+						Thread.currentThread().interrupt();
+					}//end try
+				}
+			};
+			workers[i].start();
+		}//end for
+
+		long start = System.nanoTime();
+		try{
+			int lineNumber = 0;
+			List<Command> group = new ArrayList<Command>(this._groupSize);
+			for (String line = commands.readLine(); line != null; line = commands.readLine()){
+				++lineNumber;
+				Command command;
+				try{
+					command = parse(lineNumber, line);
+				}catch (IllegalArgumentException e){
+					this._parseErrors.incrementAndGet();
+					System.err.println("line " + lineNumber + ": " + e.getMessage());
+					continue;
+				}//end try
+				if (command == null) continue;
+				group.add(command);
+				if (group.size() == this._groupSize){
+					queue.put(group);
+					group = new ArrayList<Command>(this._groupSize);
+				}//end if
+			}//end for
+			if (!group.isEmpty()) queue.put(group);
+		}finally{
+			for (int i = 0; i < workers.length; ++i)
+				queue.put(poison);
+			for (Thread worker : workers)
+				worker.join();
+		}
+		report(System.nanoTime() - start);
+	}//end run
+
+	/**
+	 * Runs a group of commands, in one transaction when it has more than one.
+	 */
+	void runGroup(final List<Command> group) {
+		if (group.size() == 1){
+			runCommand(group.get(0));
+			return;
+		}//end if
+		long start = System.nanoTime();
+		OpStats commit = stats(TRANSACTION);
+		try{
+			this._esql.transaction(new DBproject.Work<Void>(){
+				public Void run(CachedConnection conn) throws SQLException {
+					for (Command command : group){
+						if (!runCommand(command))
+							throw new SQLException("line " + command.line + ": " + command.name + " failed, group rolled back");
+					}//end for
+					return null;
+				}
+			});
+			commit.latency.record(System.nanoTime() - start);
+			commit.rows.addAndGet(group.size());
+		}catch (SQLException e){
+			commit.errors.incrementAndGet();
+			System.err.println(e.getMessage());
+		}//end try
+	}
+
+	/**
+	 * @return false when the command failed
+	 */
+	boolean runCommand(Command command) {
+		OpStats stats = stats(command.name);
+		long start = System.nanoTime();
+		try{
+			int rows = command.op.run(this._esql, command.args);
+			stats.latency.record(System.nanoTime() - start);
+			stats.rows.addAndGet(rows);
+			return true;
+		}catch (SQLException | RuntimeException e){
+			stats.errors.incrementAndGet();
+			System.err.println("line " + command.line + ": " + e.getMessage());
+			return false;
+		}//end try
+	}
+
+	private void report(long nanos) {
+		double seconds = nanos / 1e9;
+		System.out.println(String.format("%-26s %10s %8s %10s %12s %10s %10s %10s %10s",
+				"operation", "count", "errors", "rows", "ops/s", "mean us", "p50 us", "p99 us", "max us"));
+		long total = 0, errors = this._parseErrors.get();
+		for (Map.Entry<String, OpStats> entry : new TreeMap<String, OpStats>(this._stats).entrySet()){
+			OpStats s = entry.getValue();
+			LatencyHistogram h = s.latency;
+			if (!entry.getKey().equals(TRANSACTION)) total += h.getCount();
+			errors += s.errors.get();
+			System.out.println(String.format("%-26s %10d %8d %10d %12.0f %10.0f %10.0f %10.0f %10.0f",
+					entry.getKey(), h.getCount(), s.errors.get(), s.rows.get(), h.getCount() / seconds,
+					h.getMean() / 1e3, h.percentile(0.50) / 1e3, h.percentile(0.99) / 1e3, h.getMax() / 1e3));
+		}//end for
+		System.out.println(String.format("%d commands in %.2f s, %.0f commands/s, %d errors",
+				total, seconds, total / seconds, errors));
+	}
+
+	/**
+	 * The batch entry point
+	 *
+	 * @param args <dbname> <port> <user> [command file|-] [threads] [commands per transaction]
+	 */
+	public static void main (String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + BatchRunner.class.getName () +
+		            " <dbname> <port> <user> [command file|-] [threads] [commands per transaction]");
+			System.err.println ("operations: " + OPS.keySet ());
+			return;
+		}//end if
+
+		DBproject esql = null;
+		try{
+			Class.forName("org.postgresql.Driver");
+			String file = args.length > 3 ? args[3] : "-";
+			int threads = args.length > 4 ? Integer.parseInt(args[4]) : 1;
+			int groupSize = args.length > 5 ? Integer.parseInt(args[5]) : 1;
+
+			esql = new DBproject(args[0], args[1], args[2], "", threads);
+			BufferedReader commands = file.equals("-") ? new BufferedReader(new InputStreamReader(System.in))
+					: new BufferedReader(new FileReader(file));
+			try{
+				new BatchRunner(esql, threads, Math.max(1, groupSize)).run(commands);
+			}finally{
+				commands.close();
+			}
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			if (esql != null) esql.cleanup();
+		}
+	}
+}
@@ -0,0 +1,509 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class benchmarks every menu operation and every DBproject helper
+ * the way JMH would: a number of timed warmup iterations, then timed
+ * measurement iterations, each run by 1 or more threads calling the
+ * operation in a loop.  It reports throughput with its 99.9% confidence
+ * interval and the latency distribution per operation and thread count,
+ * and writes the results in JMH's JSON result format, so runs of two
+ * releases can be diffed with the usual JMH tools.
+ *
+ * Ids are drawn at random from the row counts found in the database, so
+ * the suite runs against code/data or any scaled up load of it; the scale
+ * given with -p scale= is only recorded with the results.  The Add*,
+ * BookFlight and executeUpdate cases commit, so run them against a
+ * scratch database.
+ */
+
+public class BenchSuite{
+	//JMH's defaults are longer, these keep a full run of the suite in minutes
+	static final int DEFAULT_WARMUP_ITERATIONS = 2;
+	static final int DEFAULT_MEASUREMENT_ITERATIONS = 5;
+	static final int DEFAULT_ITERATION_SECONDS = 2;
+	static final int[] DEFAULT_THREADS = {1, 8};
+	//schedule rows sampled for the date based seat lookups
+	static final int SCHEDULE_SAMPLE = 1000;
+	static final String SCHEDULE_DATES = "SELECT flightNum, departure_time FROM Schedule ORDER BY id LIMIT " + SCHEDULE_SAMPLE;
+	static final String FLIGHT_RANGE = "SELECT * FROM Flight WHERE fnum >= ? AND fnum < ?";
+	//rows fetched by the materializing helper cases
+	static final int RANGE_ROWS = 100;
+	//Student's t for a two sided 99.9% interval, by degrees of freedom, as JMH reports scoreError
+	static final double[] T_999 = {Double.NaN, 636.619, 31.599, 12.924, 8.610, 6.869, 5.959, 5.408, 5.041, 4.781, 4.587,
+			4.437, 4.318, 4.221, 4.140, 4.073, 4.015, 3.965, 3.922, 3.883, 3.850,
+			3.819, 3.792, 3.768, 3.745, 3.725, 3.707, 3.690, 3.674, 3.659, 3.646};
+
+	/**
+	 * One benchmarked operation.
+	 */
+	interface Case{
+		void run(DBproject esql, Random random) throws SQLException;
+	}
+
+	/**
+	 * The row counts ids are drawn from.
+	 */
+	static class Dataset{
+		int planes, pilots, technicians, flights, customers, reservations;
+		int[] scheduledFlights;
+		String[] scheduledDates;
+	}
+
+	/**
+	 * Results of one case run with one thread count.
+	 */
+	static class Result{
+		final String name;
+		final int threads;
+		final double[] throughput;
+		final LatencyHistogram latency;
+		final long errors;
+
+		Result(String name, int threads, double[] throughput, LatencyHistogram latency, long errors) {
+			this.name = name;
+			this.threads = threads;
+			this.throughput = throughput;
+			this.latency = latency;
+			this.errors = errors;
+		}
+
+		double mean() {
+			double sum = 0;
+			for (double t : this.throughput)
+				sum += t;
+			return sum / this.throughput.length;
+		}
+
+		double error() {
+			int n = this.throughput.length;
+			if (n < 2) return Double.NaN;
+			double mean = mean(), squares = 0;
+			for (double t : this.throughput)
+				squares += (t - mean) * (t - mean);
+			double t = n - 1 < T_999.length ? T_999[n - 1] : 3.291;
+			return t * Math.sqrt(squares / (n - 1)) / Math.sqrt(n);
+		}
+	}
+
+	private final DBproject _esql;
+	private final Dataset _data;
+	private final Map<String, Case> _cases = new LinkedHashMap<String, Case>();
+	//where executeQueryAndPrintResult writes during a run
+	private static final PrintStream DISCARD = new PrintStream(new OutputStream(){
+		public void write(int b) {
+		}
+		public void write(byte[] b, int off, int len) {
+		}
+	});
+
+	public BenchSuite(DBproject esql) throws SQLException {
+		this._esql = esql;
+		this._data = dataset(esql);
+		register();
+	}
+
+	static Dataset dataset(DBproject esql) throws SQLException {
+		Dataset data = new Dataset();
+		data.planes = count(esql, "Plane");
+		data.pilots = count(esql, "Pilot");
+		data.technicians = count(esql, "Technician");
+		data.flights = count(esql, "Flight");
+		data.customers = count(esql, "Customer");
+		data.reservations = count(esql, "Reservation");
+		ResultTable schedule = esql.executeQueryAndReturnTable(SCHEDULE_DATES);
+		data.scheduledFlights = new int[Math.max(1, schedule.rowCount())];
+		data.scheduledDates = new String[data.scheduledFlights.length];
+		data.scheduledDates[0] = "2014-01-01";
+		for (int r = 0; r < schedule.rowCount(); ++r){
+			data.scheduledFlights[r] = schedule.getInt(r, 0);
+			data.scheduledDates[r] = schedule.getString(r, 1);
+		}//end for
+		return data;
+	}
+
+	static int count(DBproject esql, String table) throws SQLException {
+		return Math.max(1, esql.executeQueryAndReturnTable("SELECT COUNT(*) FROM " + table).getInt(0, 0));
+	}
+
+	private void register() {
+		final Dataset d = this._data;
+
+		//menu operations, without the prompts and the printing
+		this._cases.put("menu.AddPlane", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				esql.addPlane(esql.nextId(IdAllocator.PLANE), "Boeing", "737-800", r.nextInt(30), 160);
+			}
+		});
+		this._cases.put("menu.AddPilot", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				esql.addPilot(esql.nextId(IdAllocator.PILOT), "Bench Pilot", "USA");
+			}
+		});
+		this._cases.put("menu.AddFlight", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				esql.addFlight(new FlightWriter.NewFlight(100 + r.nextInt(900), 0, r.nextInt(3), "2014-05-01 16:45", "2014-05-01 19:10",
+						"LAX", "SFO", r.nextInt(d.pilots), r.nextInt(d.planes)));
+			}
+		});
+		this._cases.put("menu.AddTechnician", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				esql.addTechnician(esql.nextId(IdAllocator.TECHNICIAN), "Bench Technician");
+			}
+		});
+		this._cases.put("menu.BookFlight", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				int fnum = r.nextInt(d.flights);
+				esql.availableSeats(fnum);
+				esql.bookFlight(r.nextInt(d.customers), fnum);
+			}
+		});
+		this._cases.put("menu.ListNumberOfAvailableSeats", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				int i = r.nextInt(d.scheduledFlights.length);
+				esql.availableSeats(d.scheduledFlights[i], d.scheduledDates[i]);
+			}
+		});
+		report("menu.ListsTotalNumberOfRepairsPerPlane", DBproject.REPAIRS_PER_PLANE);
+		report("menu.ListTotalNumberOfRepairsPerYear", DBproject.REPAIRS_PER_YEAR);
+		this._cases.put("menu.FindPassengersCountWithStatus", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				BatchRunner.fetch(esql, DBproject.PASSENGERS_WITH_STATUS, r.nextInt(d.flights), "R");
+			}
+		});
+		report("menu.FindPassengersInAllStatus", DBproject.PASSENGERS_IN_ALL_STATUS);
+		find("menu.FindPlane", DBproject.FIND_PLANE, d.planes);
+		find("menu.FindPilot", DBproject.FIND_PILOT, d.pilots);
+		find("menu.FindFlight", DBproject.FIND_FLIGHT, d.flights);
+		find("menu.FindTechnician", DBproject.FIND_TECHNICIAN, d.technicians);
+		find("menu.FindReservation", DBproject.FIND_RESERVATION, d.reservations);
+		find("menu.FindCustomer", DBproject.FIND_CUSTOMER, d.customers);
+
+		//DBproject helpers on a point lookup or a RANGE_ROWS row range of Flight
+		this._cases.put("helper.executeQuery", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				esql.executeQuery(DBproject.FIND_FLIGHT, r.nextInt(d.flights));
+			}
+		});
+		this._cases.put("helper.executeQueryAndPrintResult", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				int from = r.nextInt(d.flights);
+				esql.executeQueryAndPrintResult(FLIGHT_RANGE, from, from + RANGE_ROWS);
+			}
+		});
+		this._cases.put("helper.executeQueryAndReturnResult", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				int from = r.nextInt(d.flights);
+				esql.executeQueryAndReturnResult(FLIGHT_RANGE, from, from + RANGE_ROWS);
+			}
+		});
+		this._cases.put("helper.executeQueryAndReturnTable", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				int from = r.nextInt(d.flights);
+				esql.executeQueryAndReturnTable(FLIGHT_RANGE, from, from + RANGE_ROWS);
+			}
+		});
+		this._cases.put("helper.executeQueryStreaming", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				int from = r.nextInt(d.flights);
+				BatchRunner.fetch(esql, FLIGHT_RANGE, from, from + RANGE_ROWS);
+			}
+		});
+		this._cases.put("helper.executeUpdate", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				//writes the row back unchanged
+				esql.executeUpdate("UPDATE Flight SET cost = cost WHERE fnum = ?", r.nextInt(d.flights));
+			}
+		});
+		this._cases.put("helper.getCurrSeqVal", new Case(){
+			public void run(final DBproject esql, Random r) throws SQLException {
+				//currval needs a nextval on the same connection first
+				esql.transaction(new DBproject.Work<Integer>(){
+					public Integer run(CachedConnection conn) throws SQLException {
+						esql.executeQuery("SELECT nextval(CAST(? AS regclass))", IdAllocator.RESERVATION);
+						return esql.getCurrSeqVal(IdAllocator.RESERVATION);
+					}
+				});
+			}
+		});
+		this._cases.put("helper.nextId", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				esql.nextId(IdAllocator.RESERVATION);
+			}
+		});
+		this._cases.put("helper.availableSeats", new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				esql.availableSeats(r.nextInt(d.flights));
+			}
+		});
+	}
+
+	private void report(String name, final String sql) {
+		this._cases.put(name, new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				BatchRunner.fetch(esql, sql);
+			}
+		});
+	}
+
+	private void find(String name, final String sql, final int rows) {
+		this._cases.put(name, new Case(){
+			public void run(DBproject esql, Random r) throws SQLException {
+				esql.find(sql, r.nextInt(rows));
+			}
+		});
+	}
+
+	/**
+	 * Method to run every case whose name matches a pattern.
+	 *
+	 * @param include the pattern a case name has to contain a match of
+	 * @param threads the thread counts to run each case with
+	 * @return the results, one per case and thread count
+	 * @throws java.lang.InterruptedException when interrupted
+	 */
+	public List<Result> run(Pattern include, int[] threads, int warmups, int iterations, int seconds) throws InterruptedException {
+		List<Result> results = new ArrayList<Result>();
+		PrintStream out = System.out;
+		out.println(String.format("%-48s %5s %7s %5s %12s %10s %10s %10s %10s %7s",
+				"Benchmark", "Mode", "Threads", "Cnt", "Score", "Error", "p50 us", "p99 us", "p99.9 us", "Errors"));
+		for (Map.Entry<String, Case> entry : this._cases.entrySet()){
+			if (!include.matcher(entry.getKey()).find()) continue;
+			for (int t : threads){
+				System.setOut(DISCARD);
+				Result result;
+				try{
+					for (int i = 0; i < warmups; ++i)
+						iteration(entry.getValue(), t, seconds, new LatencyHistogram(), new AtomicLong());
+					LatencyHistogram latency = new LatencyHistogram();
+					AtomicLong errors = new AtomicLong();
+					double[] throughput = new double[iterations];
+					for (int i = 0; i < iterations; ++i)
+						throughput[i] = iteration(entry.getValue(), t, seconds, latency, errors);
+					result = new Result(entry.getKey(), t, throughput, latency, errors.get());
+				}finally{
+					System.setOut(out);
+				}
+				results.add(result);
+				out.println(String.format(Locale.ROOT, "%-48s %5s %7d %5d %12.1f %10.1f %10.1f %10.1f %10.1f %7d",
+						result.name, "thrpt", t, iterations, result.mean(), result.error(),
+						result.latency.percentile(0.50) / 1e3, result.latency.percentile(0.99) / 1e3,
+						result.latency.percentile(0.999) / 1e3, result.errors));
+			}//end for
+		}//end for
+		return results;
+	}//end run
+
+	/**
+	 * Runs a case on a number of threads for a fixed time.
+	 *
+	 * @return the operations completed per second
+	 */
+	double iteration(final Case c, int threads, int seconds, final LatencyHistogram latency, final AtomicLong errors) throws InterruptedException {
+		final AtomicLong ops = new AtomicLong();
+		final CountDownLatch ready = new CountDownLatch(threads);
+		final CountDownLatch go = new CountDownLatch(1);
+		final long[] deadline = new long[1];
+		Thread[] workers = new Thread[threads];
+		for (int i = 0; i < threads; ++i){
+			final Random random = new Random(31L * i + 17);
+			workers[i] = new Thread("bench-" + i){
+				public void run() {
+					ready.countDown();
+					try{
+						go.await();
+					}catch (InterruptedException e){
+						return;
+					}//end try
+					long done = 0;
+					while (System.nanoTime() < deadline[0]){
+						long start = System.nanoTime();
+						try{
+							c.run(_esql, random);
+							latency.record(System.nanoTime() - start);
+							++done;
+						}catch (SQLException | RuntimeException e){
+							errors.incrementAndGet();
+						}//end try
+					}//end while
+					ops.addAndGet(done);
+				}
+			};
+			workers[i].start();
+		}//end for
+		ready.await();
+		long start = System.nanoTime();
+		deadline[0] = start + seconds * 1000000000L;
+		go.countDown();
+		for (Thread worker : workers)
+			worker.join();
+		return ops.get() * 1e9 / (System.nanoTime() - start);
+	}
+
+	/**
+	 * Method to write results in JMH's JSON result format.  Every result
+	 * becomes a thrpt entry in ops/s, with the latency percentiles in us as
+	 * a secondary metric.
+	 */
+	public void writeJson(List<Result> results, Map<String, String> params, int warmups, int seconds, String file) throws IOException {
+		Writer out = new FileWriter(file);
+		try{
+			out.write("[\n");
+			for (int i = 0; i < results.size(); ++i){
+				Result r = results.get(i);
+				out.write("  {\n");
+				out.write("    \"jmhVersion\" : \"n/a\",\n");
+				out.write("    \"benchmark\" : " + Json.quote(BenchSuite.class.getName() + "." + r.name) + ",\n");
+				out.write("    \"mode\" : \"thrpt\",\n");
+				out.write("    \"threads\" : " + r.threads + ",\n");
+				out.write("    \"forks\" : 1,\n");
+				out.write("    \"warmupIterations\" : " + warmups + ",\n");
+				out.write("    \"warmupTime\" : \"" + seconds + " s\",\n");
+				out.write("    \"measurementIterations\" : " + r.throughput.length + ",\n");
+				out.write("    \"measurementTime\" : \"" + seconds + " s\",\n");
+				out.write("    \"params\" : {");
+				int p = 0;
+				for (Map.Entry<String, String> param : params.entrySet())
+					out.write((p++ == 0 ? "\n" : ",\n") + "      " + Json.quote(param.getKey()) + " : " + Json.quote(param.getValue()));
+				out.write("\n    },\n");
+				out.write("    \"primaryMetric\" : {\n");
+				out.write("      \"score\" : " + number(r.mean()) + ",\n");
+				out.write("      \"scoreError\" : " + number(r.error()) + ",\n");
+				out.write("      \"scoreUnit\" : \"ops/s\",\n");
+				out.write("      \"rawData\" : [[");
+				for (int j = 0; j < r.throughput.length; ++j)
+					out.write((j == 0 ? "" : ", ") + number(r.throughput[j]));
+				out.write("]]\n");
+				out.write("    },\n");
+				out.write("    \"secondaryMetrics\" : {\n");
+				out.write("      \"latency\" : {\n");
+				out.write("        \"score\" : " + number(r.latency.getMean() / 1e3) + ",\n");
+				out.write("        \"scoreUnit\" : \"us/op\",\n");
+				out.write("        \"scorePercentiles\" : {");
+				double[] quantiles = {0.0, 50.0, 90.0, 99.0, 99.9, 100.0};
+				for (int j = 0; j < quantiles.length; ++j){
+					double us = (quantiles[j] == 0.0 ? 0 : r.latency.percentile(quantiles[j] / 100)) / 1e3;
+					out.write((j == 0 ? "\n" : ",\n") + "          \"" + quantiles[j] + "\" : " + number(us));
+				}//end for
+				out.write("\n        }\n");
+				out.write("      },\n");
+				out.write("      \"errors\" : {\n");
+				out.write("        \"score\" : " + r.errors + ",\n");
+				out.write("        \"scoreUnit\" : \"#\"\n");
+				out.write("      }\n");
+				out.write("    }\n");
+				out.write(i == results.size() - 1 ? "  }\n" : "  },\n");
+			}//end for
+			out.write("]\n");
+		}finally{
+			out.close();
+		}
+	}//end writeJson
+
+	static String number(double value) {
+		return Double.isNaN(value) || Double.isInfinite(value) ? "\"NaN\"" : String.format(Locale.ROOT, "%.3f", value);
+	}
+
+	public void list() {
+		for (String name : this._cases.keySet())
+			System.out.println(name);
+	}
+
+	static int[] parseThreads(String list) {
+		String[] parts = list.split(",");
+		int[] threads = new int[parts.length];
+		for (int i = 0; i < parts.length; ++i)
+			threads[i] = Integer.parseInt(parts[i].trim());
+		return threads;
+	}
+
+	/**
+	 * The benchmark suite entry point
+	 *
+	 * @param args <dbname> <port> <user> [options] [pattern], options as in JMH:
+	 *   -wi warmup iterations, -i measurement iterations, -r seconds per iteration,
+	 *   -t thread counts e.g. 1,8,64, -p scale=N recorded with the results,
+	 *   -rff JSON result file, -l list the cases
+	 */
+	public static void main (String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + BenchSuite.class.getName () +
+		            " <dbname> <port> <user> [-wi n] [-i n] [-r seconds] [-t 1,8,64] [-p scale=N] [-rff result.json] [-l] [pattern]");
+			return;
+		}//end if
+
+		int warmups = DEFAULT_WARMUP_ITERATIONS, iterations = DEFAULT_MEASUREMENT_ITERATIONS, seconds = DEFAULT_ITERATION_SECONDS;
+		int[] threads = DEFAULT_THREADS;
+		String file = null, pattern = ".*";
+		boolean list = false;
+		Map<String, String> params = new LinkedHashMap<String, String>();
+		params.put("scale", "1");
+		for (int a = 3; a < args.length; ++a){
+			String arg = args[a];
+			if (arg.equals("-wi")) warmups = Integer.parseInt(args[++a]);
+			else if (arg.equals("-i")) iterations = Integer.parseInt(args[++a]);
+			else if (arg.equals("-r")) seconds = Integer.parseInt(args[++a]);
+			else if (arg.equals("-t")) threads = parseThreads(args[++a]);
+			else if (arg.equals("-rff")) file = args[++a];
+			else if (arg.equals("-l")) list = true;
+			else if (arg.equals("-p")){
+				String[] param = args[++a].split("=", 2);
+				params.put(param[0], param.length > 1 ? param[1] : "");
+			}else pattern = arg;
+		}//end for
+
+		DBproject esql = null;
+		try{
+			Class.forName("org.postgresql.Driver");
+			int poolSize = 1;
+			for (int t : threads)
+				poolSize = Math.max(poolSize, t);
+			esql = new DBproject(args[0], args[1], args[2], "", poolSize);
+			BenchSuite suite = new BenchSuite(esql);
+			if (list){
+				suite.list();
+				return;
+			}//end if
+			Dataset d = suite._data;
+			params.put("planes", Integer.toString(d.planes));
+			params.put("flights", Integer.toString(d.flights));
+			params.put("customers", Integer.toString(d.customers));
+			params.put("reservations", Integer.toString(d.reservations));
+
+			List<Result> results = suite.run(Pattern.compile(pattern), threads, warmups, iterations, seconds);
+			if (file != null) suite.writeJson(results, params, warmups, seconds, file);
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			if (esql != null) esql.cleanup();
+		}
+	}
+}
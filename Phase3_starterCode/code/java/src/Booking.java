@@ -0,0 +1,43 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+/**
+ * This class holds the outcome of booking a seat: the reservation number
+ * and whether the customer got a seat ('R') or was waitlisted ('W').
+ *
+ */
+
+public class Booking{
+	public final int rnum;
+	public final int cid;
+	public final int fnum;
+	public final String status;
+
+	public Booking(int rnum, int cid, int fnum, String status) {
+		this.rnum = rnum;
+		this.cid = cid;
+		this.fnum = fnum;
+		this.status = status;
+	}
+
+	/**
+	 * @return true when a seat was reserved, false when waitlisted
+	 */
+	public boolean isReserved() {
+		return "R".equals(this.status);
+	}
+
+	public String toString() {
+		return "Reservation " + this.rnum + " for customer " + this.cid + " on flight " + this.fnum + ": " + this.status;
+	}
+}
@@ -0,0 +1,163 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+
+/**
+ * This class books seats with a single statement per booking.  The seat
+ * check, the num_sold increment and the Reservation insert run as one
+ * data-modifying query, so a booking costs one round trip and is atomic.
+ *
+ * The increment only applies while num_sold is below the plane's seats.
+ * When two bookers race for the last seat, the second UPDATE waits for the
+ * first to commit and then re-checks the condition against the new
+ * num_sold, so a flight never goes past Plane.seats.
+ *
+ * A group booking takes any number of (customer, flight) pairs in one
+ * statement: it locks the Flight rows involved in fnum order, hands out
+ * the seats left on each flight to the pairs in the order they were given,
+ * waitlists the rest and inserts every Reservation at once.  Either all
+ * pairs are booked or, e.g. for an unknown customer, none is.
+ */
+
+public class BookingEngine{
+	//seat check, increment and insert in one round trip
+	static final String BOOK_SEAT =
+		"WITH capacity AS (" +
+			"SELECT P.seats FROM FlightInfo FI, Plane P WHERE FI.flight_id = ? AND P.id = FI.plane_id LIMIT 1" +
+		"), sold AS (" +
+			"UPDATE Flight F SET num_sold = F.num_sold + 1 " +
+			"WHERE F.fnum = ? AND F.num_sold < (SELECT seats FROM capacity) " +
+			"RETURNING F.num_sold" +
+		"), booked AS (" +
+			"INSERT INTO Reservation (rnum, cid, fid, status) " +
+			"SELECT ?, ?, ?, CASE WHEN EXISTS (SELECT 1 FROM sold) THEN 'R' ELSE 'W' END " +
+			"RETURNING status" +
+		") SELECT status, (SELECT num_sold FROM sold) AS num_sold FROM booked";
+	//seat checks, increments and inserts of a whole group in one round trip
+	static final String BOOK_GROUP =
+		"WITH request AS (" +
+			"SELECT * FROM unnest(CAST(? AS integer[]), CAST(? AS integer[]), CAST(? AS integer[])) " +
+			"WITH ORDINALITY AS R(rnum, cid, fid, seq)" +
+		"), flights AS (" +
+			//fnum order, so two groups sharing flights can not deadlock each other
+			"SELECT F.fnum, F.num_sold FROM Flight F WHERE F.fnum IN (SELECT fid FROM request) ORDER BY F.fnum FOR UPDATE" +
+		"), capacity AS (" +
+			"SELECT FL.fnum, FL.num_sold, (SELECT P.seats FROM FlightInfo FI, Plane P WHERE FI.flight_id = FL.fnum AND P.id = FI.plane_id LIMIT 1) " +
+			"AS seats FROM flights FL" +
+		"), assigned AS (" +
+			"SELECT R.rnum, R.cid, R.fid, R.seq, " +
+			"CASE WHEN C.num_sold + row_number() OVER (PARTITION BY R.fid ORDER BY R.seq) <= C.seats THEN 'R' ELSE 'W' END AS status " +
+			"FROM request R, capacity C WHERE C.fnum = R.fid" +
+		"), sold AS (" +
+			"UPDATE Flight F SET num_sold = F.num_sold + A.n " +
+			"FROM (SELECT fid, COUNT(*) AS n FROM assigned WHERE status = 'R' GROUP BY fid) A WHERE F.fnum = A.fid " +
+			"RETURNING F.fnum, F.num_sold" +
+		"), booked AS (" +
+			"INSERT INTO Reservation (rnum, cid, fid, status) SELECT rnum, cid, fid, status FROM assigned" +
+		") SELECT A.rnum, A.cid, A.fid, A.status, S.num_sold FROM assigned A LEFT JOIN sold S ON S.fnum = A.fid ORDER BY A.seq";
+
+	private final DBproject _esql;
+
+	public BookingEngine(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to book a seat for a customer.  The customer gets a seat when
+	 * the flight has seats left and is waitlisted otherwise.
+	 *
+	 * @param cid the customer id
+	 * @param fnum the flight number
+	 * @return the booked reservation
+	 * @throws java.sql.SQLException when the booking failed, e.g. for an unknown flight
+	 */
+	public Booking book(int cid, int fnum) throws SQLException {
+		int rnum = this._esql.nextId(IdAllocator.RESERVATION);
+		ResultTable result = this._esql.executeQueryAndReturnTable(BOOK_SEAT, fnum, fnum, rnum, cid, fnum);
+		Booking booking = new Booking(rnum, cid, fnum, result.getString(0, 0));
+		if (booking.isReserved()) soldAfterCommit(fnum, result.getInt(0, 1));
+		return booking;
+	}
+
+	/**
+	 * Method to book seats for a group, e.g. a family on a trip of several
+	 * legs, in one statement.  The i-th customer is booked on the i-th
+	 * flight; on every flight the pairs get the seats left in the order
+	 * they were given and the rest is waitlisted.
+	 *
+	 * @param cids the customer ids
+	 * @param fnums the flight numbers, as many as customer ids
+	 * @return the booked reservations, in the order of the pairs
+	 * @throws java.sql.SQLException when the booking failed, in which case nothing is booked
+	 */
+	public List<Booking> bookGroup(final int[] cids, final int[] fnums) throws SQLException {
+		if (cids.length != fnums.length)
+			throw new IllegalArgumentException(cids.length + " customers for " + fnums.length + " flights");
+		if (cids.length == 0) return new ArrayList<Booking>();
+		final int[] rnums = this._esql.getIds().next(IdAllocator.RESERVATION, cids.length);
+		return this._esql.transaction(new DBproject.Work<List<Booking>>(){
+			public List<Booking> run(CachedConnection conn) throws SQLException {
+				return bookGroup(rnums, cids, fnums);
+			}
+		});
+	}//end bookGroup
+
+	/**
+	 * Runs the group booking statement in the calling transaction.
+	 */
+	private List<Booking> bookGroup(int[] rnums, int[] cids, int[] fnums) throws SQLException {
+		Array[] arrays = new Array[3];
+		CachedConnection conn = this._esql.acquire();
+		try{
+			int[][] columns = {rnums, cids, fnums};
+			for (int a = 0; a < arrays.length; ++a){
+				Integer[] boxed = new Integer[columns[a].length];
+				for (int i = 0; i < boxed.length; ++i)
+					boxed[i] = columns[a][i];
+				arrays[a] = conn.getConnection().createArrayOf("integer", boxed);
+			}//end for
+		}finally{
+			this._esql.release(conn);
+		}
+		ResultTable result = this._esql.executeQueryAndReturnTable(BOOK_GROUP, arrays[0], arrays[1], arrays[2]);
+		//pairs without a Flight row are not inserted, the transaction rolls the others back
+		if (result.rowCount() != cids.length)
+			throw new SQLException("group booking of " + cids.length + " seats refers to flights that do not exist");
+		List<Booking> bookings = new ArrayList<Booking>(cids.length);
+		Set<Integer> sold = new HashSet<Integer>();
+		for (int r = 0; r < result.rowCount(); ++r){
+			Booking booking = new Booking(result.getInt(r, 0), result.getInt(r, 1), result.getInt(r, 2), result.getString(r, 3));
+			bookings.add(booking);
+			if (booking.isReserved() && sold.add(booking.fnum)) soldAfterCommit(booking.fnum, result.getInt(r, 4));
+		}//end for
+		return bookings;
+	}
+
+	/**
+	 * Writes the new num_sold through to the seat cache once it is committed.
+	 */
+	private void soldAfterCommit(final int fnum, final int sold) {
+		this._esql.afterCommit(new Runnable(){
+			public void run() {
+				_esql.getSeatCache().reserved(fnum, sold);
+			}
+		});
+	}
+}
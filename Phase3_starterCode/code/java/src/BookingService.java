@@ -0,0 +1,89 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * This class runs bookings, lookups and reports for many client sessions
+ * at the same time.  Work is handed to a fixed set of worker threads that
+ * share a DBproject opened in pooled mode; a worker holds a connection only
+ * for the duration of a single statement.
+ *
+ */
+
+public class BookingService{
+	private final DBproject _esql;
+	private final ExecutorService _workers;
+
+	public BookingService(DBproject esql, int workers) {
+		this._esql = esql;
+		final AtomicInteger count = new AtomicInteger();
+		this._workers = Executors.newFixedThreadPool(workers, new ThreadFactory(){
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "booking-worker-" + count.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			}
+		});
+	}
+
+	/**
+	 * Books a seat for a customer, or waitlists them when the flight is full.
+	 */
+	public Future<Booking> book(final int cid, final int fnum) {
+		return this._workers.submit(new Callable<Booking>(){
+			public Booking call() throws Exception {
+				return _esql.bookFlight(cid, fnum);
+			}
+		});
+	}
+
+	/**
+	 * Runs one of the DBproject.FIND_* lookups for a primary key, through
+	 * the entity cache where the table has one.
+	 */
+	public Future<ResultTable> find(final String template, final int key) {
+		return this._workers.submit(new Callable<ResultTable>(){
+			public ResultTable call() throws Exception {
+				return _esql.find(template, key);
+			}
+		});
+	}
+
+	/**
+	 * Runs a report or any other query and returns its rows.  Reads may be
+	 * served by a replica.
+	 */
+	public Future<ResultTable> query(final String query, final Object... params) {
+		return this._workers.submit(new Callable<ResultTable>(){
+			public ResultTable call() throws Exception {
+				return _esql.executeQueryAndReturnTable(query, params);
+			}
+		});
+	}
+
+	/**
+	 * Stops accepting work and waits for queued work to finish.
+	 */
+	public void shutdown() throws InterruptedException {
+		this._workers.shutdown();
+		this._workers.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+	}
+}
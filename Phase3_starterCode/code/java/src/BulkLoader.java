@@ -0,0 +1,221 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+
+
+/**
+ * This class loads the CSV files in code/data into a fresh schema.  The
+ * files are streamed from the client with the COPY protocol, so they do not
+ * have to be copied into the server's data directory first.  Tables are
+ * loaded in parallel on separate connections, the independent ones before
+ * the ones that reference them, and primary keys, foreign keys and indexes
+ * are only built once all rows are in.
+ *
+ */
+
+public class BulkLoader{
+	//bytes read from a CSV file per chunk sent to the server
+	static final int COPY_BUFFER_SIZE = 1 << 16;
+
+	//schema without keys, run before the load
+	static final String SCHEMA_SCRIPT = "create_schema.sql";
+	//scripts run in order after the load
+	static final String[] POST_LOAD_SCRIPTS = {"create_constraints.sql", "create_indexes.sql", "create_sequences.sql", "create_aggregates.sql", "create_notify.sql"};
+
+	/**
+	 * A table, the CSV file it is loaded from and the columns in file order.
+	 */
+	static class TableFile{
+		final String table;
+		final String file;
+		final String columns;
+
+		TableFile(String table, String file, String columns) {
+			this.table = table;
+			this.file = file;
+			this.columns = columns;
+		}
+
+		String copySql() {
+			return "COPY " + this.table + " (" + this.columns + ") FROM STDIN WITH DELIMITER ','";
+		}
+	}
+
+	//tables without foreign keys
+	static final TableFile[] INDEPENDENT = {
+		new TableFile("Customer", "customer.csv", "id, fname, lname, gtype, dob, address, phone, zipcode"),
+		new TableFile("Pilot", "pilots.csv", "id, fullname, nationality"),
+		new TableFile("Plane", "planes.csv", "id, make, model, age, seats"),
+		new TableFile("Technician", "technician.csv", "id, full_name"),
+	};
+
+	//tables loaded once the independent tables are in
+	static final TableFile[] DEPENDENT = {
+		new TableFile("Flight", "flights.csv", "fnum, cost, num_sold, num_stops, actual_departure_date, actual_arrival_date, arrival_airport, departure_airport"),
+		new TableFile("Reservation", "reservation.csv", "rnum, cid, fid, status"),
+		new TableFile("FlightInfo", "flightinfo.csv", "fiid, flight_id, pilot_id, plane_id"),
+		new TableFile("Repairs", "repairs.csv", "rid, repair_date, repair_code, pilot_id, plane_id, technician_id"),
+		new TableFile("Schedule", "schedule.csv", "id, flightNum, departure_time, arrival_time"),
+	};
+
+	private final DBproject _esql;
+	private final File _dataDir;
+	private final File _sqlDir;
+	private final ExecutorService _workers;
+
+	public BulkLoader(DBproject esql, File dataDir, File sqlDir, int threads) {
+		this._esql = esql;
+		this._dataDir = dataDir;
+		this._sqlDir = sqlDir;
+		this._workers = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Method to recreate the schema and load every table.
+	 *
+	 * @throws java.lang.Exception when a script or a table load failed
+	 */
+	public void load() throws Exception {
+		long start = System.nanoTime();
+		runScript(SCHEMA_SCRIPT);
+		loadParallel(INDEPENDENT);
+		loadParallel(DEPENDENT);
+		long loaded = System.nanoTime();
+		for (String script : POST_LOAD_SCRIPTS)
+			runScript(script);
+		runSql("ANALYZE");
+		long end = System.nanoTime();
+		System.out.println(String.format("load %.2f s, keys and indexes %.2f s, total %.2f s",
+				(loaded - start) / 1e9, (end - loaded) / 1e9, (end - start) / 1e9));
+	}//end load
+
+	private void loadParallel(TableFile[] tables) throws Exception {
+		List<Future<Long>> pending = new ArrayList<Future<Long>>();
+		for (final TableFile table : tables){
+			pending.add(this._workers.submit(new Callable<Long>(){
+				public Long call() throws Exception {
+					return loadTable(table);
+				}
+			}));
+		}//end for
+		try{
+			for (Future<Long> f : pending)
+				f.get();
+		}catch (ExecutionException e){
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
+		}//end try
+	}
+
+	/**
+	 * Streams one CSV file into its table and reports the load rate.
+	 *
+	 * @return the number of rows loaded
+	 */
+	long loadTable(TableFile table) throws SQLException, IOException {
+		File file = new File(this._dataDir, table.file);
+		CachedConnection conn = this._esql.acquire();
+		try{
+			CopyManager copy = ((PGConnection) conn.getConnection()).getCopyAPI();
+			InputStream in = new BufferedInputStream(new FileInputStream(file), COPY_BUFFER_SIZE);
+			long start = System.nanoTime();
+			long rows;
+			try{
+				rows = copy.copyIn(table.copySql(), in, COPY_BUFFER_SIZE);
+			}finally{
+				in.close();
+			}
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%-12s %12d rows %10.2f s %14.0f rows/s %10.2f MB/s",
+					table.table, rows, seconds, rows / seconds, file.length() / seconds / (1 << 20)));
+			return rows;
+		}finally{
+			this._esql.release(conn);
+		}
+	}//end loadTable
+
+	private void runScript(String name) throws SQLException, IOException {
+		long start = System.nanoTime();
+		runSql(new String(Files.readAllBytes(new File(this._sqlDir, name).toPath()), StandardCharsets.UTF_8));
+		System.out.println(String.format("%-24s %10.2f s", name, (System.nanoTime() - start) / 1e9));
+	}
+
+	private void runSql(String sql) throws SQLException {
+		CachedConnection conn = this._esql.acquire();
+		try{
+			Statement stmt = conn.getConnection().createStatement();
+			try{
+				stmt.execute(sql);
+			}finally{
+				stmt.close();
+			}
+		}finally{
+			this._esql.release(conn);
+		}
+	}
+
+	public void shutdown() {
+		this._workers.shutdown();
+	}
+
+	/**
+	 * The bulk load entry point
+	 *
+	 * @param args <dbname> <port> <user> [data dir] [sql dir] [threads]
+	 */
+	public static void main (String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + BulkLoader.class.getName () +
+		            " <dbname> <port> <user> [data dir] [sql dir] [threads]");
+			return;
+		}//end if
+
+		DBproject esql = null;
+		BulkLoader loader = null;
+		try{
+			Class.forName("org.postgresql.Driver");
+			File dataDir = new File(args.length > 3 ? args[3] : "../data");
+			File sqlDir = new File(args.length > 4 ? args[4] : "../sql");
+			int threads = args.length > 5 ? Integer.parseInt(args[5]) : DEPENDENT.length;
+
+			esql = new DBproject(args[0], args[1], args[2], "", threads);
+			loader = new BulkLoader(esql, dataDir, sqlDir, threads);
+			loader.load();
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			if (loader != null) loader.shutdown();
+			if (esql != null) esql.cleanup();
+		}
+	}
+}
@@ -0,0 +1,109 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+
+/**
+ * This class wraps a physical database connection together with a bounded
+ * cache of prepared statements keyed by their SQL template.  Reusing the
+ * same PreparedStatement lets the PostgreSQL driver switch to a named
+ * server-side statement, so the server parses and plans each template once
+ * instead of on every call.
+ *
+ * A CachedConnection is not thread safe; it must be used by one thread at a
+ * time.
+ */
+
+public class CachedConnection{
+	//default number of statements kept open per connection
+	public static final int DEFAULT_CAPACITY = 64;
+
+	//reference to physical database connection
+	private final Connection _connection;
+	//least recently used statements are closed once the cache is full
+	private final LinkedHashMap<String, PreparedStatement> _statements;
+
+	public CachedConnection(Connection connection, final int capacity) {
+		this._connection = connection;
+		this._statements = new LinkedHashMap<String, PreparedStatement>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, PreparedStatement> eldest) {
+				if (size() <= capacity) return false;
+				closeQuietly(eldest.getValue());
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Method to fetch the prepared statement for a SQL template, preparing
+	 * it on first use.  The returned statement stays owned by the cache and
+	 * must not be closed by the caller.
+	 *
+	 * @param sql the SQL template with '?' placeholders
+	 * @return the cached prepared statement
+	 * @throws java.sql.SQLException when the statement can not be prepared
+	 */
+	public PreparedStatement prepare(String sql) throws SQLException {
+		PreparedStatement stmt = this._statements.get(sql);
+		if (stmt == null || stmt.isClosed()){
+			stmt = this._connection.prepareStatement(sql);
+			this._statements.put(sql, stmt);
+		}//end if
+		return stmt;
+	}//end prepare
+
+	/**
+	 * @return the physical connection behind this cache
+	 */
+	public Connection getConnection() {
+		return this._connection;
+	}
+
+	/**
+	 * @return the number of statements currently cached
+	 */
+	public int size() {
+		return this._statements.size();
+	}
+
+	/**
+	 * Method to close all cached statements and the physical connection.
+	 */
+	public void close() {
+		Iterator<PreparedStatement> it = this._statements.values().iterator();
+		while (it.hasNext()){
+			closeQuietly(it.next());
+			it.remove();
+		}//end while
+		try{
+			this._connection.close();
+		}catch (SQLException e){
+			// ignored.
+		}//end try
+	}//end close
+
+	private static void closeQuietly(PreparedStatement stmt) {
+		try{
+			stmt.close();
+		}catch (SQLException e){
+			// ignored.
+		}//end try
+	}
+}
@@ -0,0 +1,344 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+
+/**
+ * This class keeps the caches of a DBproject coherent with the writes of
+ * other processes.  The triggers of sql/create_notify.sql publish every
+ * change to Flight, Reservation, Plane, Pilot, Technician and Customer on
+ * the dbproject_changes channel; a background thread LISTENs on its own
+ * connection and applies what arrived since its last wake-up as one batch:
+ * num_sold goes into the seat cache, changed reference rows are dropped
+ * from the entity caches and new and changed flights are noted in the
+ * route graph.
+ *
+ * Notifications are delivered in commit order, so caches converge to the
+ * last committed values; in between they may lag by the listener's delay.
+ * Notifications sent while the listening connection was down are lost, so
+ * after a reconnect every cache is cleared instead.
+ *
+ * Every ping on dbproject_ping is answered on dbproject_pong once the batch
+ * it came with was applied, which DBbench uses to time propagation.
+ */
+
+public class ChangeListener{
+	public static final String CHANNEL = "dbproject_changes";
+	public static final String PING_CHANNEL = "dbproject_ping";
+	public static final String PONG_CHANNEL = "dbproject_pong";
+	//longest wait for a notification before checking for shutdown
+	static final int POLL_MILLIS = 500;
+	//wait before reconnecting after the connection failed
+	static final long RECONNECT_MILLIS = 1000;
+	//notifications applied at most per batch
+	static final int MAX_BATCH = 10000;
+
+	static final String PONG = "SELECT pg_notify('" + PONG_CHANNEL + "', ?)";
+
+	private final DBproject _esql;
+	private final Thread _thread;
+	private volatile boolean _running = false;
+	private volatile Connection _connection = null;
+	private final AtomicLong _events = new AtomicLong();
+	private final AtomicLong _batches = new AtomicLong();
+	private final AtomicLong _ignored = new AtomicLong();
+	private final AtomicLong _reconnects = new AtomicLong();
+	private final AtomicLong _applyNanos = new AtomicLong();
+
+	public ChangeListener(DBproject esql) {
+		this._esql = esql;
+		this._thread = new Thread(new Runnable(){
+			public void run() {
+				listenLoop();
+			}
+		}, "change-listener");
+		this._thread.setDaemon(true);
+	}
+
+	/**
+	 * Method to connect and start listening.  Changes committed before this
+	 * returns are not seen.
+	 *
+	 * @throws java.sql.SQLException when the listening connection could not be opened
+	 */
+	public void start() throws SQLException {
+		this._connection = listen();
+		this._running = true;
+		this._thread.start();
+	}
+
+	/**
+	 * Method to stop listening and close the connection.
+	 */
+	public void stop() {
+		this._running = false;
+		this._thread.interrupt();
+		try{
+			this._thread.join(POLL_MILLIS * 2);
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+		}//end try
+		close();
+	}
+
+	private Connection listen() throws SQLException {
+		Connection conn = this._esql.getPool().connect();
+		try{
+			Statement stmt = conn.createStatement();
+			try{
+				stmt.execute("LISTEN " + CHANNEL + "; LISTEN " + PING_CHANNEL);
+			}finally{
+				stmt.close();
+			}
+			return conn;
+		}catch (SQLException e){
+			conn.close();
+			throw e;
+		}//end try
+	}
+
+	private void close() {
+		Connection conn = this._connection;
+		this._connection = null;
+		if (conn == null) return;
+		try{
+			conn.close();
+		}catch (SQLException e){
+			//closing anyway
+		}//end try
+	}
+
+	private void listenLoop() {
+		while (this._running){
+			try{
+				if (this._connection == null){
+					this._connection = listen();
+					this._reconnects.incrementAndGet();
+					resync();
+				}//end if
+				PGConnection pg = this._connection.unwrap(PGConnection.class);
+				PGNotification[] arrived = pg.getNotifications(POLL_MILLIS);
+				if (arrived == null || arrived.length == 0) continue;
+				List<PGNotification> batch = new ArrayList<PGNotification>(Arrays.asList(arrived));
+				//whatever else the driver already read joins the batch
+				while (batch.size() < MAX_BATCH && (arrived = pg.getNotifications()) != null && arrived.length > 0)
+					batch.addAll(Arrays.asList(arrived));
+				apply(batch);
+			}catch (SQLException e){
+				if (!this._running) return;
+				System.err.println("Change listener: " + e.getMessage() + ", reconnecting");
+				close();
+				try{
+					Thread.sleep(RECONNECT_MILLIS);
+				}catch (InterruptedException ie){
+					return;
+				}//end try
+			}//end try
+		}//end while
+	}
+
+	/**
+	 * Clears every cache after notifications may have been lost.
+	 */
+	private void resync() {
+		this._esql.getSeatCache().clear();
+		for (EntityCache<Integer, ResultTable> cache : this._esql.getEntityCaches().values())
+			cache.clear();
+	}
+
+	/**
+	 * Applies a batch of notifications: the last num_sold of each flight,
+	 * one invalidation per changed row, then answers the pings.
+	 */
+	void apply(List<PGNotification> batch) throws SQLException {
+		long start = System.nanoTime();
+		Map<Integer, Integer> sold = new HashMap<Integer, Integer>();
+		Set<Integer> deleted = new HashSet<Integer>();
+		Set<Integer> reserved = new HashSet<Integer>();
+		List<Integer> added = new ArrayList<Integer>();
+		Map<String, Set<Integer>> entities = new LinkedHashMap<String, Set<Integer>>();
+		boolean planes = false;
+		List<String> pings = new ArrayList<String>();
+		int events = 0;
+		for (PGNotification n : batch){
+			if (n.getName().equals(PING_CHANNEL)){
+				pings.add(n.getParameter());
+				continue;
+			}//end if
+			String[] fields = n.getParameter().split(" ");
+			try{
+				char table = fields[0].charAt(0), op = fields[1].charAt(0);
+				int key = Integer.parseInt(fields[2]);
+				switch (table){
+					case 'F':
+						if (op == 'D'){
+							sold.remove(key);
+							deleted.add(key);
+						}else{
+							sold.put(key, Integer.parseInt(fields[3]));
+							deleted.remove(key);
+							if (op == 'I') added.add(key);
+						}//end if
+						break;
+					case 'R': reserved.add(Integer.parseInt(fields[3])); break;
+					case 'P':
+						invalidate(entities, DBproject.FIND_PLANE, key);
+						//the seats of its flights may have changed
+						if (op != 'I') planes = true;
+						break;
+					case 'I': invalidate(entities, DBproject.FIND_PILOT, key); break;
+					case 'T': invalidate(entities, DBproject.FIND_TECHNICIAN, key); break;
+					case 'C': invalidate(entities, DBproject.FIND_CUSTOMER, key); break;
+					default: this._ignored.incrementAndGet(); continue;
+				}
+				++events;
+			}catch (RuntimeException e){
+				this._ignored.incrementAndGet();
+			}//end try
+		}//end for
+
+		SeatCache seats = this._esql.getSeatCache();
+		if (planes) seats.clear();
+		else{
+			for (Map.Entry<Integer, Integer> e : sold.entrySet())
+				seats.changed(e.getKey(), e.getValue());
+			for (int fnum : deleted)
+				seats.invalidate(fnum);
+			//a reservation changed without its flight's num_sold, e.g. by hand
+			for (int fnum : reserved)
+				if (!sold.containsKey(fnum) && !deleted.contains(fnum)) seats.invalidate(fnum);
+		}//end if
+		for (Map.Entry<String, Set<Integer>> e : entities.entrySet()){
+			EntityCache<Integer, ResultTable> cache = this._esql.getEntityCaches().get(e.getKey());
+			if (cache == null) continue;
+			for (int id : e.getValue())
+				cache.invalidate(id);
+		}//end for
+		RouteGraph routes = this._esql.getRoutes();
+		if (!added.isEmpty()){
+			int[] fnums = new int[added.size()];
+			for (int i = 0; i < fnums.length; ++i)
+				fnums[i] = added.get(i);
+			routes.added(fnums);
+		}//end if
+		//seats left of flights already in the route graph
+		List<Integer> changed = new ArrayList<Integer>(sold.keySet());
+		changed.removeAll(added);
+		changed.addAll(reserved);
+		if (!changed.isEmpty()){
+			int[] fnums = new int[changed.size()];
+			for (int i = 0; i < fnums.length; ++i)
+				fnums[i] = changed.get(i);
+			routes.changed(fnums);
+		}//end if
+		if (planes) routes.planesChanged();
+		this._events.addAndGet(events);
+		this._batches.incrementAndGet();
+		this._applyNanos.addAndGet(System.nanoTime() - start);
+
+		for (String ping : pings){
+			PreparedStatement stmt = this._connection.prepareStatement(PONG);
+			try{
+				stmt.setString(1, ping);
+				stmt.execute();
+			}finally{
+				stmt.close();
+			}
+		}//end for
+	}//end apply
+
+	private static void invalidate(Map<String, Set<Integer>> entities, String template, int id) {
+		Set<Integer> ids = entities.get(template);
+		if (ids == null){
+			ids = new HashSet<Integer>();
+			entities.put(template, ids);
+		}//end if
+		ids.add(id);
+	}
+
+	/**
+	 * @return the change notifications applied
+	 */
+	public long getEvents() {
+		return this._events.get();
+	}
+
+	public long getBatches() {
+		return this._batches.get();
+	}
+
+	public long getReconnects() {
+		return this._reconnects.get();
+	}
+
+	public String toString() {
+		long batches = getBatches();
+		return String.format("Change listener: %d events in %d batches, %.1f events/batch, %.1f us/batch applying, %d ignored, %d reconnects",
+				getEvents(), batches, batches == 0 ? 0.0 : (double) getEvents() / batches,
+				batches == 0 ? 0.0 : this._applyNanos.get() / 1e3 / batches, this._ignored.get(), getReconnects());
+	}
+
+	/**
+	 * Runs a listener that answers pings until its standard input closes,
+	 * the other side of DBbench notify.
+	 *
+	 * @param args <dbname> <port> <user>
+	 */
+	public static void main (String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + ChangeListener.class.getName () +
+		            " <dbname> <port> <user>");
+			return;
+		}//end if
+
+		DBproject esql = null;
+		ChangeListener listener = null;
+		try{
+			Class.forName("org.postgresql.Driver");
+			esql = new DBproject(args[0], args[1], args[2], "");
+			listener = new ChangeListener(esql);
+			listener.start();
+			System.out.println("listening");
+			BufferedReader stdin = new BufferedReader(new InputStreamReader(System.in));
+			while (stdin.readLine() != null)
+				System.out.println(listener);
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			if (listener != null){
+				listener.stop();
+				System.out.println(listener);
+			}//end if
+			if (esql != null) esql.cleanup();
+		}
+	}
+}
@@ -0,0 +1,242 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+
+/**
+ * This class keeps a bounded pool of physical connections, each with its
+ * own prepared statement cache.  Callers check a connection out, use it
+ * from a single thread and return it.  Idle connections are validated
+ * before they are handed out again and closed once they have been idle
+ * longer than the idle timeout.
+ *
+ */
+
+public class ConnectionPool{
+	//default upper bound of open connections
+	public static final int DEFAULT_MAX_SIZE = 32;
+	//default time a caller waits for a free connection
+	public static final long DEFAULT_CHECKOUT_TIMEOUT_MILLIS = 30000;
+	//default time an idle connection is kept open, 0 keeps them forever
+	public static final long DEFAULT_IDLE_TIMEOUT_MILLIS = 300000;
+	//idle connections younger than this are handed out without validation
+	static final long VALIDATION_INTERVAL_MILLIS = 5000;
+	static final int VALIDATION_TIMEOUT_SECONDS = 2;
+
+	private final String _url;
+	private final String _user;
+	private final String _passwd;
+	private final int _maxSize;
+	private final long _checkoutTimeoutMillis;
+	private final long _idleTimeoutMillis;
+
+	//one permit per connection that may be checked out
+	private final Semaphore _permits;
+	//idle connections, most recently returned first
+	private final LinkedBlockingDeque<Idle> _idle = new LinkedBlockingDeque<Idle>();
+	private final Thread _evictor;
+	private volatile boolean _closed = false;
+
+	/**
+	 * An idle connection and the time it was returned to the pool.
+	 */
+	private static class Idle{
+		final CachedConnection connection;
+		final long returnedAt;
+
+		Idle(CachedConnection connection, long returnedAt) {
+			this.connection = connection;
+			this.returnedAt = returnedAt;
+		}
+	}
+
+	public ConnectionPool(String url, String user, String passwd, int maxSize) {
+		this(url, user, passwd, maxSize, DEFAULT_CHECKOUT_TIMEOUT_MILLIS, DEFAULT_IDLE_TIMEOUT_MILLIS);
+	}
+
+	public ConnectionPool(String url, String user, String passwd, int maxSize, long checkoutTimeoutMillis, long idleTimeoutMillis) {
+		if (maxSize < 1) throw new IllegalArgumentException("pool size must be positive: " + maxSize);
+		this._url = url;
+		this._user = user;
+		this._passwd = passwd;
+		this._maxSize = maxSize;
+		this._checkoutTimeoutMillis = checkoutTimeoutMillis;
+		this._idleTimeoutMillis = idleTimeoutMillis;
+		this._permits = new Semaphore(maxSize, true);
+
+		if (idleTimeoutMillis > 0){
+			this._evictor = new Thread(new Runnable(){
+				public void run() {
+					evictLoop();
+				}
+			}, "connection-pool-evictor");
+			this._evictor.setDaemon(true);
+			this._evictor.start();
+		}else{
+			this._evictor = null;
+		}//end if
+	}
+
+	/**
+	 * Method to check a connection out of the pool.  Waits up to the
+	 * checkout timeout when all connections are in use.
+	 *
+	 * @return a connection owned by the caller until it is released
+	 * @throws java.sql.SQLException when no connection could be obtained
+	 */
+	public CachedConnection checkout() throws SQLException {
+		if (this._closed) throw new SQLException("Connection pool is closed");
+		try{
+			if (!this._permits.tryAcquire(this._checkoutTimeoutMillis, TimeUnit.MILLISECONDS))
+				throw new SQLException("Timed out waiting for a database connection");
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new SQLException("Interrupted waiting for a database connection");
+		}//end try
+
+		try{
+			Idle idle;
+			while ((idle = this._idle.pollFirst()) != null){
+				if (isUsable(idle)) return idle.connection;
+				idle.connection.close();
+			}//end while
+			return new CachedConnection(DriverManager.getConnection(this._url, this._user, this._passwd), CachedConnection.DEFAULT_CAPACITY);
+		}catch (SQLException e){
+			this._permits.release();
+			throw e;
+		}catch (RuntimeException e){
+			this._permits.release();
+			throw e;
+		}//end try
+	}//end checkout
+
+	/**
+	 * Method to open a connection outside the pool and its bound, for a
+	 * session that lasts as long as the process, such as a LISTEN.
+	 *
+	 * @return a connection the caller closes
+	 * @throws java.sql.SQLException when the connection could not be opened
+	 */
+	public Connection connect() throws SQLException {
+		if (this._closed) throw new SQLException("Connection pool is closed");
+		return DriverManager.getConnection(this._url, this._user, this._passwd);
+	}
+
+	/**
+	 * Method to return a connection to the pool.
+	 *
+	 * @param connection a connection obtained from checkout
+	 */
+	public void release(CachedConnection connection) {
+		release(connection, false);
+	}
+
+	/**
+	 * Method to return a connection to the pool.  A broken connection is
+	 * closed instead of being kept for reuse.
+	 *
+	 * @param connection a connection obtained from checkout
+	 * @param broken true when the connection must not be reused
+	 */
+	public void release(CachedConnection connection, boolean broken) {
+		try{
+			if (broken || this._closed || !connection.getConnection().getAutoCommit()){
+				//a connection left inside a transaction is not safe to hand out again
+				connection.close();
+			}else{
+				this._idle.offerFirst(new Idle(connection, System.currentTimeMillis()));
+			}//end if
+		}catch (SQLException e){
+			connection.close();
+		}finally{
+			this._permits.release();
+		}//end try
+	}//end release
+
+	private boolean isUsable(Idle idle) {
+		if (System.currentTimeMillis() - idle.returnedAt < VALIDATION_INTERVAL_MILLIS) return true;
+		try{
+			return idle.connection.getConnection().isValid(VALIDATION_TIMEOUT_SECONDS);
+		}catch (SQLException e){
+			return false;
+		}//end try
+	}
+
+	private void evictLoop() {
+		long period = Math.max(1000, this._idleTimeoutMillis / 2);
+		while (!this._closed){
+			try{
+				Thread.sleep(period);
+			}catch (InterruptedException e){
+				return;
+			}//end try
+			evictIdle(System.currentTimeMillis() - this._idleTimeoutMillis);
+		}//end while
+	}
+
+	/**
+	 * Closes every idle connection returned before the given time.
+	 */
+	void evictIdle(long returnedBefore) {
+		List<Idle> expired = new ArrayList<Idle>();
+		Iterator<Idle> it = this._idle.iterator();
+		while (it.hasNext()){
+			Idle idle = it.next();
+			if (idle.returnedAt < returnedBefore && this._idle.remove(idle)) expired.add(idle);
+		}//end while
+		for (Idle idle : expired)
+			idle.connection.close();
+	}
+
+	/**
+	 * @return the upper bound of open connections
+	 */
+	public int getMaxSize() {
+		return this._maxSize;
+	}
+
+	/**
+	 * @return the number of idle connections kept open
+	 */
+	public int getIdleCount() {
+		return this._idle.size();
+	}
+
+	/**
+	 * @return the number of connections currently checked out
+	 */
+	public int getActiveCount() {
+		return this._maxSize - this._permits.availablePermits();
+	}
+
+	/**
+	 * Method to close the pool and every idle connection.  Connections that
+	 * are checked out are closed when they are released.
+	 */
+	public void close() {
+		this._closed = true;
+		if (this._evictor != null) this._evictor.interrupt();
+		Idle idle;
+		while ((idle = this._idle.pollFirst()) != null)
+			idle.connection.close();
+	}//end close
+}
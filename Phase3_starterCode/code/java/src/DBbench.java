@@ -0,0 +1,993 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.sql.DriverManager;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.lang.management.ManagementFactory;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+
+
+/**
+ * This class runs micro benchmarks against a database loaded with the data
+ * in code/data.  Every benchmark prints one line per measured variant so
+ * the numbers can be compared between runs.
+ *
+ */
+
+public class DBbench{
+	//number of timed iterations when none is given on the command line
+	static final int DEFAULT_ITERATIONS = 10000;
+
+	//lookup queries as they were issued before the prepared statement cache
+	static final String[] FIND_NAMES = {"FindPlane", "FindPilot", "FindTechnician", "FindFlight", "FindReservation", "FindCustomer"};
+	static final String[] FIND_TEMPLATES = {DBproject.FIND_PLANE, DBproject.FIND_PILOT, DBproject.FIND_TECHNICIAN,
+			DBproject.FIND_FLIGHT, DBproject.FIND_RESERVATION, DBproject.FIND_CUSTOMER};
+	static final String[] FIND_TABLES = {"Plane", "Pilot", "Technician", "Flight", "Reservation", "Customer"};
+	//worker counts used by the concurrent booking stress test
+	static final int[] BOOKING_WORKERS = {1, 8, 64, 256};
+	//flights and workers used by the overselling check
+	static final int OVERSELL_FLIGHTS = 8;
+	static final int OVERSELL_WORKERS = 64;
+	//queries compared by the allocation benchmark
+	static final String[] ALLOC_QUERIES = {"SELECT * FROM Reservation", "SELECT * FROM Flight", "SELECT * FROM Repairs", DBproject.REPAIRS_PER_YEAR};
+	//travellers and legs of a booked group, and the workers booking groups
+	static final int GROUP_CUSTOMERS = 6;
+	static final int GROUP_LEGS = 2;
+	static final int[] GROUP_WORKERS = {1, 8, 64};
+	//size of the generated network the route search is timed on
+	static final int ROUTE_AIRPORTS = 300;
+	static final int ROUTE_FLIGHTS_PER_DAY = 30000;
+	static final int ROUTE_DAYS = 7;
+	//rows per page of the listings benchmark, small so the busiest airport spans many pages
+	static final int LISTING_PAGE_SIZE = 10;
+	//flights touched in one transaction by the notification throughput test
+	static final int NOTIFY_BURST = 10000;
+	static final int NOTIFY_BURSTS = 3;
+	//longest wait for the other process to answer a ping
+	static final int PONG_TIMEOUT_MILLIS = 30000;
+	//the listing of Listings.FLIGHTS_FROM paged with OFFSET instead of a cursor
+	static final String FLIGHTS_FROM_OFFSET =
+		"SELECT * FROM Flight WHERE departure_airport = CAST(? AS CHAR(5)) " +
+		"AND actual_departure_date BETWEEN CAST(? AS DATE) AND CAST(? AS DATE) " +
+		"ORDER BY actual_departure_date, fnum LIMIT ? OFFSET ?";
+	//concurrent clients of the HTTP load test
+	static final int[] HTTP_CLIENTS = {16, 64, 256};
+	//workers cancelling and promoting on the flights of the waitlist check
+	static final int WAITLIST_CANCELLERS = 8;
+	static final int WAITLIST_PROMOTERS = 2;
+	//flights with their seats, num_sold and reserved passengers
+	static final String SOLD_CHECK = "SELECT F.fnum, P.seats, F.num_sold, "
+			+ "(SELECT COUNT(*) FROM Reservation R WHERE R.fid = F.fnum AND R.status = 'R') "
+			+ "FROM Flight F, FlightInfo FI, Plane P WHERE FI.flight_id = F.fnum AND P.id = FI.plane_id";
+	static final String FLIGHT_CAPACITY = "SELECT F.fnum, P.seats, F.num_sold FROM Flight F, FlightInfo FI, Plane P "
+			+ "WHERE FI.flight_id = F.fnum AND P.id = FI.plane_id";
+
+	private final String _dbname;
+	private final String _dbport;
+	private final String _url;
+	private final String _user;
+	private final DBproject _esql;
+	private final int _iterations;
+
+	public DBbench(String dbname, String dbport, String user, int iterations) throws SQLException {
+		this._dbname = dbname;
+		this._dbport = dbport;
+		this._url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+		this._user = user;
+		this._esql = new DBproject(dbname, dbport, user, "", ConnectionPool.DEFAULT_MAX_SIZE);
+		this._iterations = iterations;
+	}
+
+	/**
+	 * Compares the Find* lookups issued as concatenated SQL through a fresh
+	 * Statement, as the menu used to do, against the same lookups through
+	 * the cached prepared statements of DBproject.
+	 */
+	public void lookups() throws SQLException {
+		Connection plain = DriverManager.getConnection(this._url, this._user, "");
+		try{
+			for (int t = 0; t < FIND_TEMPLATES.length; ++t){
+				int rows = countRows(plain, FIND_TABLES[t]);
+				String template = FIND_TEMPLATES[t];
+				String prefix = template.substring(0, template.indexOf('?'));
+
+				//warm up both paths so the driver switches to server side statements
+				runConcatenated(plain, prefix, rows, this._iterations / 10);
+				runPrepared(template, rows, this._iterations / 10);
+
+				long concatenated = runConcatenated(plain, prefix, rows, this._iterations);
+				long prepared = runPrepared(template, rows, this._iterations);
+				report(FIND_NAMES[t] + " concatenated", concatenated, this._iterations);
+				report(FIND_NAMES[t] + " prepared", prepared, this._iterations);
+			}//end for
+		}finally{
+			plain.close();
+		}
+	}//end lookups
+
+	private long runConcatenated(Connection conn, String prefix, int rows, int iterations) throws SQLException {
+		Random random = new Random(42);
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; ++i){
+			Statement stmt = conn.createStatement();
+			ResultSet rs = stmt.executeQuery(prefix + random.nextInt(rows));
+			rs.next();
+			stmt.close();
+		}//end for
+		return System.nanoTime() - start;
+	}
+
+	private long runPrepared(String template, int rows, int iterations) throws SQLException {
+		Random random = new Random(42);
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; ++i)
+			this._esql.executeQuery(template, random.nextInt(rows));
+		return System.nanoTime() - start;
+	}
+
+	/**
+	 * Runs the concurrent booking load through a BookingService with 1, 8,
+	 * 64 and 256 workers sharing the connection pool and reports the
+	 * throughput of each run.  Bookings are committed, so this is meant for
+	 * a scratch database.
+	 */
+	public void booking() throws SQLException, InterruptedException {
+		Connection plain = DriverManager.getConnection(this._url, this._user, "");
+		int customers, flights;
+		try{
+			customers = countRows(plain, "Customer");
+			flights = countRows(plain, "Flight");
+		}finally{
+			plain.close();
+		}
+		for (int workers : BOOKING_WORKERS){
+			BookingService service = new BookingService(this._esql, workers);
+			Random random = new Random(workers);
+			List<Future<Booking>> pending = new ArrayList<Future<Booking>>(this._iterations);
+
+			long start = System.nanoTime();
+			for (int i = 0; i < this._iterations; ++i)
+				pending.add(service.book(random.nextInt(customers), random.nextInt(flights)));
+			int reserved = 0, waitlisted = 0, failed = 0;
+			for (Future<Booking> f : pending){
+				try{
+					if (f.get().isReserved()) ++reserved;
+					else ++waitlisted;
+				}catch (ExecutionException e){
+					++failed;
+				}//end try
+			}//end for
+			long elapsed = System.nanoTime() - start;
+			service.shutdown();
+
+			report("BookFlight " + workers + " workers", elapsed, this._iterations);
+			System.out.println(String.format("%-36s %10d reserved %8d waitlisted %8d failed", "", reserved, waitlisted, failed));
+		}//end for
+	}//end booking
+
+	/**
+	 * Books far more seats than are left on a handful of flights from many
+	 * workers at once, then checks that no flight went past Plane.seats and
+	 * that num_sold grew by exactly the number of reserved bookings.
+	 */
+	public boolean oversell() throws SQLException, InterruptedException {
+		Connection plain = DriverManager.getConnection(this._url, this._user, "");
+		try{
+			int customers = countRows(plain, "Customer");
+			int[][] before = flightCapacity(plain, FLIGHT_CAPACITY + " AND F.num_sold <= P.seats ORDER BY F.fnum LIMIT " + OVERSELL_FLIGHTS);
+			int[] reserved = new int[before.length];
+
+			BookingService service = new BookingService(this._esql, OVERSELL_WORKERS);
+			Random random = new Random(7);
+			List<Future<Booking>> pending = new ArrayList<Future<Booking>>(this._iterations);
+			long start = System.nanoTime();
+			for (int i = 0; i < this._iterations; ++i)
+				pending.add(service.book(random.nextInt(customers), before[i % before.length][0]));
+			int failed = 0;
+			for (int i = 0; i < pending.size(); ++i){
+				try{
+					if (pending.get(i).get().isReserved()) ++reserved[i % before.length];
+				}catch (ExecutionException e){
+					++failed;
+				}//end try
+			}//end for
+			long elapsed = System.nanoTime() - start;
+			service.shutdown();
+			report("BookFlight oversell " + OVERSELL_WORKERS + " workers", elapsed, this._iterations);
+
+			boolean ok = failed == 0;
+			int[][] after = flightCapacity(plain, FLIGHT_CAPACITY);
+			for (int f = 0; f < before.length; ++f){
+				int seats = before[f][1], soldBefore = before[f][2], soldAfter = soldBefore;
+				for (int[] row : after)
+					if (row[0] == before[f][0]) soldAfter = row[2];
+				boolean flightOk = soldAfter <= seats && soldAfter - soldBefore == reserved[f];
+				ok &= flightOk;
+				System.out.println(String.format("flight %6d seats %4d sold %4d -> %4d reserved %4d %s",
+						before[f][0], seats, soldBefore, soldAfter, reserved[f], flightOk ? "OK" : "OVERSOLD"));
+			}//end for
+			System.out.println((ok ? "PASS" : "FAIL") + " (" + failed + " failed bookings)");
+			return ok;
+		}finally{
+			plain.close();
+		}
+	}//end oversell
+
+	/**
+	 * @return fnum, seats, num_sold and reserved passengers of the flights of a SOLD_CHECK query
+	 */
+	private static int[][] soldCheck(Connection conn, String query) throws SQLException {
+		Statement stmt = conn.createStatement();
+		try{
+			ResultSet rs = stmt.executeQuery(query);
+			List<int[]> rows = new ArrayList<int[]>();
+			while (rs.next())
+				rows.add(new int[]{rs.getInt(1), rs.getInt(2), rs.getInt(3), rs.getInt(4)});
+			return rows.toArray(new int[rows.size()][]);
+		}finally{
+			stmt.close();
+		}
+	}
+
+	private static int[][] flightCapacity(Connection conn, String query) throws SQLException {
+		Statement stmt = conn.createStatement();
+		try{
+			ResultSet rs = stmt.executeQuery(query);
+			List<int[]> rows = new ArrayList<int[]>();
+			while (rs.next())
+				rows.add(new int[]{rs.getInt(1), rs.getInt(2), rs.getInt(3)});
+			return rows.toArray(new int[rows.size()][]);
+		}finally{
+			stmt.close();
+		}
+	}
+
+	/**
+	 * Compares the bytes allocated and the time taken to materialize large
+	 * results as List<List<String>> and as a typed ResultTable.
+	 */
+	public void alloc() throws SQLException {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long thread = Thread.currentThread().getId();
+		int repetitions = Math.max(1, this._iterations / 100);
+		for (String query : ALLOC_QUERIES){
+			int rows = this._esql.executeQueryAndReturnTable(query).rowCount();
+			//warm up both paths
+			for (int i = 0; i < repetitions; ++i){
+				this._esql.executeQueryAndReturnResult(query);
+				this._esql.executeQueryAndReturnTable(query);
+			}//end for
+
+			long bytes = threads.getThreadAllocatedBytes(thread);
+			long start = System.nanoTime();
+			for (int i = 0; i < repetitions; ++i)
+				this._esql.executeQueryAndReturnResult(query);
+			long listNanos = System.nanoTime() - start;
+			long listBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+			bytes = threads.getThreadAllocatedBytes(thread);
+			start = System.nanoTime();
+			for (int i = 0; i < repetitions; ++i)
+				this._esql.executeQueryAndReturnTable(query);
+			long tableNanos = System.nanoTime() - start;
+			long tableBytes = threads.getThreadAllocatedBytes(thread) - bytes;
+
+			System.out.println(query);
+			reportAlloc("  List<List<String>>", listNanos, listBytes, repetitions, rows);
+			reportAlloc("  ResultTable", tableNanos, tableBytes, repetitions, rows);
+		}//end for
+	}//end alloc
+
+	/**
+	 * Compares seat availability lookups through the original Plane, Flight,
+	 * FlightInfo and Schedule query with lookups through the seat cache.
+	 */
+	public void seats() throws SQLException {
+		Connection plain = DriverManager.getConnection(this._url, this._user, "");
+		int flights;
+		try{
+			flights = countRows(plain, "Flight");
+		}finally{
+			plain.close();
+		}
+		SeatCache cache = this._esql.getSeatCache();
+		cache.clear();
+
+		Random random = new Random(11);
+		long start = System.nanoTime();
+		for (int i = 0; i < this._iterations; ++i){
+			int fnum = random.nextInt(flights);
+			this._esql.executeQueryAndReturnTable(DBproject.SEATS_FOR_FLIGHT, fnum, fnum);
+		}//end for
+		report("seats uncached", System.nanoTime() - start, this._iterations);
+
+		//the first pass fills the cache, the second one is served from memory
+		for (int pass = 1; pass <= 2; ++pass){
+			random = new Random(11);
+			start = System.nanoTime();
+			for (int i = 0; i < this._iterations; ++i)
+				cache.remaining(random.nextInt(flights));
+			report("seats cached, pass " + pass, System.nanoTime() - start, this._iterations);
+		}//end for
+		System.out.println(cache);
+	}//end seats
+
+	/**
+	 * Compares primary key lookups of the cached tables through the query
+	 * with lookups through their entity caches after a preload, reporting
+	 * the latency distribution of the cache hits.
+	 */
+	public void entities() throws SQLException {
+		Connection plain = DriverManager.getConnection(this._url, this._user, "");
+		int[] rows = new int[FIND_TEMPLATES.length];
+		try{
+			for (int t = 0; t < FIND_TEMPLATES.length; ++t)
+				rows[t] = countRows(plain, FIND_TABLES[t]);
+		}finally{
+			plain.close();
+		}
+		for (EntityCache<Integer, ResultTable> cache : this._esql.getEntityCaches().values())
+			cache.clear();
+		long start = System.nanoTime();
+		int preloaded = this._esql.preloadEntities();
+		report("preload", System.nanoTime() - start, preloaded);
+
+		for (int t = 0; t < FIND_TEMPLATES.length; ++t){
+			String template = FIND_TEMPLATES[t];
+			if (!this._esql.getEntityCaches().containsKey(template)) continue;
+			Random random = new Random(13);
+			start = System.nanoTime();
+			for (int i = 0; i < this._iterations; ++i)
+				this._esql.executeQueryAndReturnTable(template, random.nextInt(rows[t]));
+			report(FIND_NAMES[t] + " uncached", System.nanoTime() - start, this._iterations);
+
+			LatencyHistogram latency = new LatencyHistogram();
+			random = new Random(13);
+			start = System.nanoTime();
+			for (int i = 0; i < this._iterations; ++i){
+				int id = random.nextInt(rows[t]);
+				long begin = System.nanoTime();
+				this._esql.find(template, id);
+				latency.record(System.nanoTime() - begin);
+			}//end for
+			report(FIND_NAMES[t] + " cached", System.nanoTime() - start, this._iterations);
+			System.out.println(String.format("%-36s p50 %8.0f ns p99 %8.0f ns p99.9 %8.0f ns max %8.0f ns", "",
+					(double) latency.percentile(0.50), (double) latency.percentile(0.99), (double) latency.percentile(0.999),
+					(double) latency.getMax()));
+		}//end for
+		for (EntityCache<Integer, ResultTable> cache : this._esql.getEntityCaches().values())
+			System.out.println(cache);
+	}//end entities
+
+	/**
+	 * Measures startup to the first served lookup, and to the end of a
+	 * first wave of Plane, Pilot, Technician and Customer lookups, for a
+	 * DBproject started cold and one started from a reference snapshot.
+	 * Also reports writing and refreshing the snapshot and lookups read
+	 * straight from the mapped file.
+	 */
+	public void snapshot() throws Exception {
+		File file = File.createTempFile("reference", ".snapshot");
+		file.delete();
+		try{
+			long start = System.nanoTime();
+			ReferenceSnapshot snapshot = ReferenceSnapshot.load(this._esql, file);
+			report("snapshot write", System.nanoTime() - start, 1);
+			System.out.println(snapshot);
+			start = System.nanoTime();
+			snapshot = ReferenceSnapshot.load(this._esql, file);
+			report("snapshot refresh", System.nanoTime() - start, 1);
+			System.out.println(snapshot);
+
+			for (int pass = 0; pass < 2; ++pass){
+				String name = pass == 0 ? "cold start" : "snapshot start";
+				if (pass == 0) System.clearProperty("dbproject.snapshot");
+				else System.setProperty("dbproject.snapshot", file.getPath());
+				start = System.nanoTime();
+				DBproject esql = new DBproject(this._dbname, this._dbport, this._user, "", 1);
+				try{
+					Random random = new Random(17);
+					String[] templates = esql.getEntityCaches().keySet().toArray(new String[0]);
+					int[] rows = new int[templates.length];
+					for (int t = 0; t < templates.length; ++t){
+						ReferenceSnapshot.Table table = snapshot.table(esql.getEntityCaches().get(templates[t]).getName());
+						rows[t] = Math.max(1, table.rowCount());
+					}//end for
+					esql.find(templates[0], random.nextInt(rows[0]));
+					report(name + ", first lookup", System.nanoTime() - start, 1);
+					for (int i = 1; i < this._iterations; ++i){
+						int t = random.nextInt(templates.length);
+						esql.find(templates[t], random.nextInt(rows[t]));
+					}//end for
+					report(name + ", first " + this._iterations + " lookups", System.nanoTime() - start, 1);
+				}finally{
+					esql.cleanup();
+				}
+			}//end for
+			System.clearProperty("dbproject.snapshot");
+
+			ReferenceSnapshot.Table customers = snapshot.table("Customer");
+			Random random = new Random(19);
+			long sum = 0;
+			start = System.nanoTime();
+			for (int i = 0; i < this._iterations; ++i){
+				int slot = customers.find(random.nextInt(Math.max(1, customers.rowCount())));
+				if (slot >= 0) sum += customers.getInt(slot, 0);
+			}//end for
+			report("mapped Customer lookups", System.nanoTime() - start, this._iterations);
+			if (sum < 0) System.out.println(sum);
+		}finally{
+			file.delete();
+		}
+	}//end snapshot
+
+	/**
+	 * Serves the database through an in-process HttpFrontEnd and loads it
+	 * from 16, 64 and 256 client threads with a mix of seat availability,
+	 * flight and customer lookups, reporting requests per second and the
+	 * latency distribution of each run.
+	 */
+	public void http() throws Exception {
+		Connection plain = DriverManager.getConnection(this._url, this._user, "");
+		final int flights, customers;
+		try{
+			flights = countRows(plain, "Flight");
+			customers = countRows(plain, "Customer");
+		}finally{
+			plain.close();
+		}
+		HttpFrontEnd server = new HttpFrontEnd(this._esql, 0, HttpFrontEnd.DEFAULT_MAX_QUEUED);
+		server.start();
+		final String base = "http://localhost:" + server.getPort();
+		try{
+			for (int clients : HTTP_CLIENTS){
+				final LatencyHistogram latency = new LatencyHistogram();
+				final AtomicLong failed = new AtomicLong();
+				final int perClient = Math.max(1, this._iterations / clients);
+				Thread[] threads = new Thread[clients];
+				long start = System.nanoTime();
+				for (int t = 0; t < clients; ++t){
+					final Random random = new Random(t);
+					threads[t] = new Thread(){
+						public void run() {
+							for (int i = 0; i < perClient; ++i){
+								String path;
+								switch (i % 3){
+									case 0: path = "/flights/" + random.nextInt(flights) + "/seats"; break;
+									case 1: path = "/flights/" + random.nextInt(flights); break;
+									default: path = "/customers/" + random.nextInt(customers);
+								}
+								long begin = System.nanoTime();
+								int status = get(base + path);
+								latency.record(System.nanoTime() - begin);
+								//a flight without a schedule answers 404, anything else is a failure
+								if (status != 200 && status != 404) failed.incrementAndGet();
+							}//end for
+						}
+					};
+					threads[t].start();
+				}//end for
+				for (Thread thread : threads)
+					thread.join();
+				long elapsed = System.nanoTime() - start;
+				report("HTTP " + clients + " clients", elapsed, latency.getCount());
+				System.out.println(String.format("%-36s p50 %8.2f ms p99 %8.2f ms p99.9 %8.2f ms max %8.2f ms %6d failed", "",
+						latency.percentile(0.50) / 1e6, latency.percentile(0.99) / 1e6, latency.percentile(0.999) / 1e6,
+						latency.getMax() / 1e6, failed.get()));
+			}//end for
+		}finally{
+			server.stop();
+		}
+	}//end http
+
+	/**
+	 * @return the status of a GET request, -1 when it could not be sent
+	 */
+	static int get(String url) {
+		try{
+			HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+			int status = conn.getResponseCode();
+			InputStream body = status < 400 ? conn.getInputStream() : conn.getErrorStream();
+			if (body != null){
+				//reading the body to the end lets the connection be kept alive
+				byte[] buffer = new byte[4096];
+				while (body.read(buffer) > 0);
+				body.close();
+			}//end if
+			return status;
+		}catch (IOException e){
+			return -1;
+		}//end try
+	}
+
+	/**
+	 * Books groups of GROUP_CUSTOMERS customers on GROUP_LEGS random flights
+	 * from 1, 8 and 64 workers, once seat by seat through bookFlight and
+	 * once as one group booking per group, and reports seats per second.
+	 * Bookings are committed, so this is meant for a scratch database.
+	 */
+	public void group() throws SQLException, InterruptedException {
+		Connection plain = DriverManager.getConnection(this._url, this._user, "");
+		final int customers, flights;
+		try{
+			customers = countRows(plain, "Customer");
+			flights = countRows(plain, "Flight");
+		}finally{
+			plain.close();
+		}
+		final int seats = GROUP_CUSTOMERS * GROUP_LEGS;
+		final int groups = Math.max(1, this._iterations / seats);
+		for (int workers : GROUP_WORKERS){
+			for (int variant = 0; variant < 2; ++variant){
+				final boolean grouped = variant == 1;
+				final AtomicInteger next = new AtomicInteger();
+				final AtomicInteger failed = new AtomicInteger();
+				Thread[] threads = new Thread[workers];
+				long start = System.nanoTime();
+				for (int t = 0; t < workers; ++t){
+					final Random random = new Random(t);
+					threads[t] = new Thread(){
+						public void run() {
+							while (next.getAndIncrement() < groups){
+								int[] cids = new int[seats], fnums = new int[seats];
+								for (int leg = 0, pair = 0; leg < GROUP_LEGS; ++leg){
+									int fnum = random.nextInt(flights);
+									for (int c = 0; c < GROUP_CUSTOMERS; ++c, ++pair){
+										cids[pair] = random.nextInt(customers);
+										fnums[pair] = fnum;
+									}//end for
+								}//end for
+								try{
+									if (grouped){
+										_esql.bookGroup(cids, fnums);
+									}else{
+										for (int pair = 0; pair < seats; ++pair)
+											_esql.bookFlight(cids[pair], fnums[pair]);
+									}//end if
+								}catch (SQLException e){
+									failed.incrementAndGet();
+								}//end try
+							}//end while
+						}
+					};
+					threads[t].start();
+				}//end for
+				for (Thread thread : threads)
+					thread.join();
+				long elapsed = System.nanoTime() - start;
+				report((grouped ? "BookGroup " : "BookFlight x" + seats + " ") + workers + " workers, seats", elapsed, (long) groups * seats);
+				System.out.println(String.format("%-36s %10d groups %8d failed", "", groups, failed.get()));
+			}//end for
+		}//end for
+	}//end group
+
+	/**
+	 * Times loading the flight network and route searches with up to two
+	 * connections, first on the flights in the database, then on a
+	 * generated network of ROUTE_FLIGHTS_PER_DAY flights a day between
+	 * ROUTE_AIRPORTS airports.
+	 */
+	public void routes() throws SQLException {
+		RouteGraph graph = this._esql.getRoutes();
+		long start = System.nanoTime();
+		int flights = graph.load();
+		report("route graph load, flights", System.nanoTime() - start, Math.max(1, flights));
+		System.out.println(graph);
+		ResultTable sample = this._esql.executeQueryAndReturnTable(
+				"SELECT departure_airport, arrival_airport, actual_departure_date FROM Flight ORDER BY random() LIMIT 100");
+		if (sample.rowCount() > 0){
+			Random random = new Random(23);
+			LatencyHistogram latency = new LatencyHistogram();
+			int found = 0;
+			for (int i = 0; i < this._iterations; ++i){
+				int from = random.nextInt(sample.rowCount()), to = random.nextInt(sample.rowCount());
+				long begin = System.nanoTime();
+				found += this._esql.findRoutes(sample.getString(from, 0), sample.getString(to, 1), sample.getDate(from, 2), 2, 0, 1).size();
+				latency.record(System.nanoTime() - begin);
+			}//end for
+			reportRoutes("routes, database network", latency, found);
+		}//end if
+
+		RouteGraph generated = new RouteGraph(this._esql);
+		Random random = new Random(29);
+		int today = (int) LocalDate.now().toEpochDay(), fnum = 0;
+		start = System.nanoTime();
+		for (int day = 0; day < ROUTE_DAYS; ++day){
+			for (int i = 0; i < ROUTE_FLIGHTS_PER_DAY; ++i){
+				int from = random.nextInt(ROUTE_AIRPORTS), to = (from + 1 + random.nextInt(ROUTE_AIRPORTS - 1)) % ROUTE_AIRPORTS;
+				//a quarter of the flights land the next day
+				generated.add(fnum++, "A" + from, "A" + to, today + day, today + day + (random.nextInt(4) == 0 ? 1 : 0),
+						100 + random.nextInt(900), 0, random.nextInt(50));
+			}//end for
+		}//end for
+		generated.reindex();
+		report("generated graph build, flights", System.nanoTime() - start, fnum);
+		System.out.println(generated);
+		LatencyHistogram latency = new LatencyHistogram();
+		int found = 0;
+		for (int i = 0; i < this._iterations; ++i){
+			long begin = System.nanoTime();
+			found += generated.search("A" + random.nextInt(ROUTE_AIRPORTS), "A" + random.nextInt(ROUTE_AIRPORTS),
+					LocalDate.ofEpochDay(today + random.nextInt(ROUTE_DAYS)), 2, 0, 1, 0, RouteGraph.DEFAULT_LIMIT).size();
+			latency.record(System.nanoTime() - begin);
+		}//end for
+		reportRoutes("routes, generated network", latency, found);
+	}//end routes
+
+	static void reportRoutes(String name, LatencyHistogram latency, int found) {
+		report(name, latency.getSum(), latency.getCount());
+		System.out.println(String.format("%-36s p50 %8.2f ms p99 %8.2f ms p99.9 %8.2f ms max %8.2f ms %8d routes", "",
+				latency.percentile(0.50) / 1e6, latency.percentile(0.99) / 1e6, latency.percentile(0.999) / 1e6,
+				latency.getMax() / 1e6, found));
+	}
+
+	/**
+	 * Pages through every flight leaving the busiest airport, once with the
+	 * keyset cursors of Listings and once with OFFSET, and reports the time
+	 * of the first and the last page of each: a keyset page costs the same
+	 * at any depth, an OFFSET page reads every row before it.
+	 */
+	public void listings() throws SQLException {
+		ResultTable busiest = this._esql.executeQueryAndReturnTable(
+				"SELECT departure_airport, MIN(actual_departure_date), MAX(actual_departure_date) FROM Flight " +
+				"GROUP BY departure_airport ORDER BY COUNT(*) DESC LIMIT 1");
+		if (busiest.rowCount() == 0) return;
+		String airport = busiest.getString(0, 0).trim();
+		LocalDate from = busiest.getDate(0, 1), to = busiest.getDate(0, 2);
+
+		LatencyHistogram keyset = new LatencyHistogram();
+		long first = 0, last = 0;
+		int pages = 0, rows = 0;
+		String cursor = null;
+		do{
+			long begin = System.nanoTime();
+			Listings.Page page = this._esql.getListings().flightsFrom(airport, from, to, cursor, LISTING_PAGE_SIZE);
+			last = System.nanoTime() - begin;
+			if (pages++ == 0) first = last;
+			keyset.record(last);
+			rows += page.rows.rowCount();
+			cursor = page.next;
+		}while (cursor != null);
+		report("keyset pages of " + airport, keyset.getSum(), pages);
+		System.out.println(String.format("%-36s first %8.3f ms last %8.3f ms %8d rows", "", first / 1e6, last / 1e6, rows));
+
+		LatencyHistogram offset = new LatencyHistogram();
+		for (int p = 0; p < pages; ++p){
+			long begin = System.nanoTime();
+			this._esql.executeQueryAndReturnTable(FLIGHTS_FROM_OFFSET, airport, from.toString(), to.toString(),
+					LISTING_PAGE_SIZE, p * LISTING_PAGE_SIZE);
+			last = System.nanoTime() - begin;
+			if (p == 0) first = last;
+			offset.record(last);
+		}//end for
+		report("offset pages of " + airport, offset.getSum(), pages);
+		System.out.println(String.format("%-36s first %8.3f ms last %8.3f ms", "", first / 1e6, last / 1e6));
+	}//end listings
+
+	/**
+	 * Times change notifications between two processes.  A ChangeListener
+	 * runs in a child JVM and answers every ping once the changes committed
+	 * with it are applied.  Latency: a Plane row is touched and a ping sent
+	 * in one transaction, until the pong comes back; one way is taken as
+	 * half the round trip.  Throughput: NOTIFY_BURST flights are touched in
+	 * one transaction followed by a ping, until the child applied them all.
+	 * Needs sql/create_notify.sql; rows are rewritten with their own values.
+	 */
+	public void notifications() throws Exception {
+		Process child = new ProcessBuilder(new File(System.getProperty("java.home"), "bin/java").getPath(),
+				"-cp", System.getProperty("java.class.path"), "ChangeListener", this._dbname, this._dbport, this._user)
+				.redirectErrorStream(true).start();
+		BufferedReader childOut = new BufferedReader(new InputStreamReader(child.getInputStream()));
+		Connection pong = DriverManager.getConnection(this._url, this._user, "");
+		Connection writer = DriverManager.getConnection(this._url, this._user, "");
+		try{
+			for (String line = childOut.readLine(); !"listening".equals(line); line = childOut.readLine())
+				if (line == null) throw new SQLException("change listener did not start");
+			Statement stmt = pong.createStatement();
+			stmt.execute("LISTEN " + ChangeListener.PONG_CHANNEL);
+			stmt.close();
+			PGConnection pongs = pong.unwrap(PGConnection.class);
+			writer.setAutoCommit(false);
+			PreparedStatement touchPlane = writer.prepareStatement("UPDATE Plane SET age = age WHERE id = (SELECT MIN(id) FROM Plane)");
+			PreparedStatement touchFlights = writer.prepareStatement(
+					"UPDATE Flight SET num_sold = num_sold WHERE fnum IN (SELECT fnum FROM Flight ORDER BY fnum LIMIT ?)");
+			PreparedStatement ping = writer.prepareStatement("SELECT pg_notify('" + ChangeListener.PING_CHANNEL + "', ?)");
+
+			LatencyHistogram latency = new LatencyHistogram();
+			for (int i = 0; i < this._iterations; ++i){
+				long begin = System.nanoTime();
+				touchPlane.executeUpdate();
+				ping.setString(1, Integer.toString(i));
+				ping.execute();
+				writer.commit();
+				awaitPong(pongs, Integer.toString(i));
+				latency.record(System.nanoTime() - begin);
+			}//end for
+			report("notify round trip", latency.getSum(), latency.getCount());
+			System.out.println(String.format("%-36s one way p50 %8.3f ms p99 %8.3f ms max %8.3f ms", "",
+					latency.percentile(0.50) / 2e6, latency.percentile(0.99) / 2e6, latency.getMax() / 2e6));
+
+			for (int b = 0; b < NOTIFY_BURSTS; ++b){
+				touchFlights.setInt(1, NOTIFY_BURST);
+				int events = touchFlights.executeUpdate();
+				ping.setString(1, "burst" + b);
+				ping.execute();
+				writer.commit();
+				long committed = System.nanoTime();
+				awaitPong(pongs, "burst" + b);
+				report("notify burst applied, events", System.nanoTime() - committed, Math.max(1, events));
+			}//end for
+		}finally{
+			writer.close();
+			pong.close();
+			//the child prints its listener's counters on the way out
+			child.getOutputStream().close();
+			for (String line = childOut.readLine(); line != null; line = childOut.readLine())
+				if (line.startsWith("Change listener")) System.out.println(line);
+			child.waitFor();
+		}
+	}//end notifications
+
+	static void awaitPong(PGConnection pongs, String payload) throws SQLException {
+		long deadline = System.currentTimeMillis() + PONG_TIMEOUT_MILLIS;
+		for (long left = PONG_TIMEOUT_MILLIS; left > 0; left = deadline - System.currentTimeMillis()){
+			PGNotification[] arrived = pongs.getNotifications((int) left);
+			if (arrived == null) continue;
+			for (PGNotification n : arrived)
+				if (payload.equals(n.getParameter())) return;
+		}//end for
+		throw new SQLException("no answer to ping " + payload);
+	}
+
+	/**
+	 * Runs the reports and a lookup through the replica routing, then the
+	 * same reads pinned to the primary, and prints where the reads went.
+	 * Needs replicas given with -Ddbproject.replicas=host:port,...
+	 */
+	public void replicas() throws SQLException {
+		ReplicaRouter router = this._esql.getReplicas();
+		if (router == null){
+			System.out.println("no replicas configured, start one with postgresql/startReplica.sh and pass -Ddbproject.replicas=host:port");
+			return;
+		}//end if
+		final String[] names = {"RepairsPerPlane", "RepairsPerYear", "PassengersInAllStatus", "FindFlight"};
+		final String[] reads = {DBproject.REPAIRS_PER_PLANE, DBproject.REPAIRS_PER_YEAR, DBproject.PASSENGERS_IN_ALL_STATUS, DBproject.FIND_FLIGHT};
+		int flights = this._esql.executeQueryAndReturnTable("SELECT COUNT(*) FROM Flight").getInt(0, 0);
+		for (int q = 0; q < reads.length; ++q){
+			final String read = reads[q];
+			final Random random = new Random(31);
+			final boolean lookup = read.indexOf('?') >= 0;
+			long start = System.nanoTime();
+			for (int i = 0; i < this._iterations; ++i){
+				if (lookup) this._esql.executeQueryAndReturnTable(read, random.nextInt(Math.max(1, flights)));
+				else this._esql.executeQueryAndReturnTable(read);
+			}//end for
+			report(names[q] + " routed", System.nanoTime() - start, this._iterations);
+
+			start = System.nanoTime();
+			for (int i = 0; i < this._iterations; ++i){
+				//a transaction keeps its reads on the primary
+				final int fnum = random.nextInt(Math.max(1, flights));
+				this._esql.transaction(new DBproject.Work<ResultTable>(){
+					public ResultTable run(CachedConnection conn) throws SQLException {
+						return lookup ? _esql.executeQueryAndReturnTable(read, fnum) : _esql.executeQueryAndReturnTable(read);
+					}
+				});
+			}//end for
+			report(names[q] + " primary", System.nanoTime() - start, this._iterations);
+		}//end for
+		System.out.println(router);
+	}//end replicas
+
+	/**
+	 * Promotes waitlisted passengers on every flight and reports the time
+	 * taken and the flights per second, then books, cancels and promotes on
+	 * a handful of flights at once and checks that none of them went past
+	 * Plane.seats and that num_sold changed by as much as the count of its
+	 * reserved passengers.  Everything is committed, so this is meant for a
+	 * scratch database.
+	 *
+	 * @return true when no flight was oversold or miscounted
+	 */
+	public boolean waitlist() throws SQLException, InterruptedException {
+		int flights = this._esql.executeQueryAndReturnTable(WaitlistEngine.WAITLISTED_FLIGHTS).rowCount();
+		long start = System.nanoTime();
+		int promoted = this._esql.promoteWaitlist();
+		long elapsed = System.nanoTime() - start;
+		report("promote all, flights", elapsed, Math.max(1, flights));
+		System.out.println(String.format("%-36s %10d flights with a waitlist %8d promoted %8.2f s", "",
+				flights, promoted, elapsed / 1e9));
+
+		Connection plain = DriverManager.getConnection(this._url, this._user, "");
+		try{
+			int customers = countRows(plain, "Customer");
+			int[][] busy = flightCapacity(plain, FLIGHT_CAPACITY + " AND F.num_sold <= P.seats ORDER BY F.fnum LIMIT " + OVERSELL_FLIGHTS);
+			final int[] fnums = new int[busy.length];
+			StringBuilder in = new StringBuilder();
+			for (int f = 0; f < busy.length; ++f){
+				fnums[f] = busy[f][0];
+				in.append(f == 0 ? "" : ", ").append(fnums[f]);
+			}//end for
+			//num_sold of loaded data need not match the reservations, only changes are compared
+			String soldCheck = SOLD_CHECK + " AND F.fnum IN (" + in + ") ORDER BY F.fnum";
+			int[][] before = soldCheck(plain, soldCheck);
+			//active reservations of the flights, cancelled in random order along with new ones
+			final ConcurrentLinkedQueue<Integer> active = new ConcurrentLinkedQueue<Integer>();
+			List<Integer> rnums = new ArrayList<Integer>();
+			Statement stmt = plain.createStatement();
+			try{
+				ResultSet rs = stmt.executeQuery("SELECT rnum FROM Reservation WHERE fid IN (" + in + ") AND status IN ('R', 'W')");
+				while (rs.next())
+					rnums.add(rs.getInt(1));
+			}finally{
+				stmt.close();
+			}
+			Random random = new Random(7);
+			Collections.shuffle(rnums, random);
+			active.addAll(rnums);
+
+			final AtomicInteger done = new AtomicInteger();
+			final AtomicLong cancelled = new AtomicLong(), promotions = new AtomicLong(), failed = new AtomicLong();
+			Thread[] threads = new Thread[WAITLIST_CANCELLERS + WAITLIST_PROMOTERS];
+			for (int t = 0; t < threads.length; ++t){
+				final boolean canceller = t < WAITLIST_CANCELLERS;
+				threads[t] = new Thread(){
+					public void run() {
+						while (done.get() == 0){
+							try{
+								if (!canceller) promotions.addAndGet(_esql.promoteWaitlist(fnums));
+								else{
+									Integer rnum = active.poll();
+									if (rnum == null) Thread.yield();
+									else if (_esql.cancelReservation(rnum) != null) cancelled.incrementAndGet();
+								}//end if
+							}catch (SQLException e){
+								failed.incrementAndGet();
+							}//end try
+						}//end while
+					}
+				};
+				threads[t].start();
+			}//end for
+
+			BookingService service = new BookingService(this._esql, OVERSELL_WORKERS);
+			List<Future<Booking>> pending = new ArrayList<Future<Booking>>(this._iterations);
+			start = System.nanoTime();
+			for (int i = 0; i < this._iterations; ++i)
+				pending.add(service.book(random.nextInt(customers), fnums[i % fnums.length]));
+			for (Future<Booking> booking : pending){
+				try{
+					active.add(booking.get().rnum);
+				}catch (ExecutionException e){
+					failed.incrementAndGet();
+				}//end try
+			}//end for
+			done.set(1);
+			for (Thread thread : threads)
+				thread.join();
+			elapsed = System.nanoTime() - start;
+			service.shutdown();
+			report("BookFlight with cancels and promotions", elapsed, this._iterations);
+			System.out.println(String.format("%-36s %10d cancelled %8d promoted %8d failed", "",
+					cancelled.get(), promotions.get(), failed.get()));
+
+			int violations = 0;
+			int[][] after = soldCheck(plain, soldCheck);
+			for (int f = 0; f < before.length; ++f){
+				int fnum = before[f][0], seats = before[f][1];
+				int soldBefore = before[f][2], soldAfter = after[f][2];
+				int reservedBefore = before[f][3], reservedAfter = after[f][3];
+				boolean oversold = soldAfter > seats;
+				boolean miscounted = soldAfter - soldBefore != reservedAfter - reservedBefore;
+				if (oversold || miscounted) ++violations;
+				System.out.println(String.format("flight %6d seats %4d sold %4d -> %4d reserved %4d -> %4d %s",
+						fnum, seats, soldBefore, soldAfter, reservedBefore, reservedAfter,
+						oversold ? "OVERSOLD" : miscounted ? "MISCOUNTED" : "OK"));
+			}//end for
+			System.out.println((violations == 0 ? "PASS" : "FAIL") + " (" + violations + " flights oversold or miscounted)");
+			return violations == 0;
+		}finally{
+			plain.close();
+		}
+	}//end waitlist
+
+	static void reportAlloc(String name, long nanos, long bytes, int repetitions, int rows) {
+		System.out.println(String.format("%-36s %8d rows %12.2f ms/op %14d B/op %10.1f B/row",
+				name, rows, nanos / 1e6 / repetitions, bytes / repetitions, bytes / (double) repetitions / Math.max(1, rows)));
+	}
+
+	static int countRows(Connection conn, String table) throws SQLException {
+		Statement stmt = conn.createStatement();
+		try{
+			ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM " + table);
+			rs.next();
+			return Math.max(1, rs.getInt(1));
+		}finally{
+			stmt.close();
+		}
+	}
+
+	static void report(String name, long nanos, long operations) {
+		System.out.println(String.format("%-36s %10d ops %12.2f us/op %12.0f ops/s",
+				name, operations, nanos / 1000.0 / operations, operations * 1e9 / nanos));
+	}
+
+	public void cleanup() {
+		this._esql.cleanup();
+	}
+
+	/**
+	 * The benchmark entry point
+	 *
+	 * @param args <dbname> <port> <user> <benchmark> [iterations]
+	 */
+	public static void main (String[] args) {
+		if (args.length < 4) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + DBbench.class.getName () +
+		            " <dbname> <port> <user> <lookups|booking|oversell|alloc|seats|entities|snapshot|group|routes|listings|notify|replicas|http|waitlist> [iterations]");
+			return;
+		}//end if
+
+		DBbench bench = null;
+		try{
+			Class.forName("org.postgresql.Driver");
+			int iterations = args.length > 4 ? Integer.parseInt(args[4]) : DEFAULT_ITERATIONS;
+			bench = new DBbench(args[0], args[1], args[2], iterations);
+
+			String benchmark = args[3];
+			if (benchmark.equals("lookups")) bench.lookups();
+			else if (benchmark.equals("booking")) bench.booking();
+			else if (benchmark.equals("oversell")) { if (!bench.oversell()) System.exit(1); }
+			else if (benchmark.equals("alloc")) bench.alloc();
+			else if (benchmark.equals("seats")) bench.seats();
+			else if (benchmark.equals("entities")) bench.entities();
+			else if (benchmark.equals("snapshot")) bench.snapshot();
+			else if (benchmark.equals("group")) bench.group();
+			else if (benchmark.equals("routes")) bench.routes();
+			else if (benchmark.equals("listings")) bench.listings();
+			else if (benchmark.equals("notify")) bench.notifications();
+			else if (benchmark.equals("replicas")) bench.replicas();
+			else if (benchmark.equals("http")) bench.http();
+			else if (benchmark.equals("waitlist")) { if (!bench.waitlist()) System.exit(1); }
+			else System.err.println("Unknown benchmark: " + benchmark);
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			if (bench != null) bench.cleanup();
+		}
+	}
+}
@@ -13,16 +13,26 @@
 
 import java.sql.DriverManager;
 import java.sql.Connection;
-import java.sql.Statement;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.io.File;
 import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.BufferedReader;
 import java.io.InputStreamReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDate;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 
 /**
@@ -32,148 +42,557 @@ import java.util.ArrayList;
  */
 
 public class DBproject{
-	//reference to physical database connection
-	private Connection _connection = null;
+	//SQL templates used by the menu operations
+	static final String FIND_PLANE = "SELECT * FROM Plane WHERE id = ?";
+	static final String FIND_PILOT = "SELECT * FROM Pilot WHERE id = ?";
+	static final String FIND_TECHNICIAN = "SELECT * FROM Technician WHERE id = ?";
+	static final String FIND_FLIGHT = "SELECT * FROM Flight WHERE fnum = ?";
+	static final String FIND_RESERVATION = "SELECT * FROM Reservation WHERE rnum = ?";
+	static final String FIND_CUSTOMER = "SELECT * FROM Customer WHERE id = ?";
+	static final String INSERT_PLANE = "INSERT INTO Plane VALUES(?, ?, ?, ?, ?)";
+	static final String INSERT_PILOT = "INSERT INTO Pilot VALUES(?, ?, ?)";
+	static final String INSERT_FLIGHT = "INSERT INTO Flight VALUES(?, ?, ?, ?, CAST(? AS DATE), CAST(? AS DATE), ?, ?)";
+	static final String INSERT_FLIGHT_INFO = "INSERT INTO FlightInfo VALUES(?, ?, ?, ?)";
+	static final String INSERT_SCHEDULE = "INSERT INTO Schedule VALUES(?, ?, CAST(? AS DATE), CAST(? AS DATE))";
+	static final String INSERT_TECHNICIAN = "INSERT INTO Technician VALUES(?, ?)";
+	static final String CURRVAL = "Select currval(CAST(? AS regclass))";
+	static final String SEATS_FOR_FLIGHT = "SELECT P.seats - F.num_sold AS Remaining_Seats FROM Plane P, Flight F WHERE P.id IN (SELECT FI.plane_id FROM FlightInfo FI WHERE FI.flight_id = ?) AND F.fnum IN (SELECT S.flightNum FROM Schedule S WHERE S.flightNum = ?)";
+	//reports read the summary tables of sql/create_aggregates.sql, counts that fell to zero are skipped
+	static final String REPAIRS_PER_PLANE = "SELECT P.id, P.make, A.repairs AS Repairs FROM RepairsPerPlane A, Plane P WHERE P.id = A.plane_id AND A.repairs > 0 ORDER BY A.repairs DESC";
+	static final String REPAIRS_PER_YEAR = "SELECT repairs AS repair, year FROM RepairsPerYear WHERE repairs > 0 ORDER BY repairs ASC";
+	static final String PASSENGERS_WITH_STATUS = "SELECT status, passengers AS count FROM ReservationStatusCount WHERE fid = ? AND status = ? AND passengers > 0";
+	static final String PASSENGERS_IN_ALL_STATUS = "SELECT status, SUM(passengers) AS count FROM ReservationStatusCount GROUP BY status HAVING SUM(passengers) > 0";
+	//summary rows that differ from a full recompute over Repairs and Reservation
+	static final String VERIFY_SUMMARIES =
+		"SELECT 'RepairsPerPlane' AS summary, CAST(COALESCE(S.plane_id, F.plane_id) AS TEXT) AS key, S.repairs AS stored, F.repairs AS recomputed " +
+		"FROM (SELECT plane_id, repairs FROM RepairsPerPlane WHERE repairs <> 0) S " +
+		"FULL JOIN (SELECT plane_id, COUNT(*) AS repairs FROM Repairs GROUP BY plane_id) F ON F.plane_id = S.plane_id " +
+		"WHERE S.repairs IS DISTINCT FROM F.repairs " +
+		"UNION ALL " +
+		"SELECT 'RepairsPerYear', CAST(COALESCE(S.year, F.year) AS TEXT), S.repairs, F.repairs " +
+		"FROM (SELECT year, repairs FROM RepairsPerYear WHERE repairs <> 0) S " +
+		"FULL JOIN (SELECT CAST(EXTRACT(year FROM repair_date) AS INTEGER) AS year, COUNT(*) AS repairs FROM Repairs GROUP BY 1) F ON F.year = S.year " +
+		"WHERE S.repairs IS DISTINCT FROM F.repairs " +
+		"UNION ALL " +
+		"SELECT 'ReservationStatusCount', COALESCE(S.fid, F.fid) || ' ' || COALESCE(S.status, F.status), S.passengers, F.passengers " +
+		"FROM (SELECT fid, status, passengers FROM ReservationStatusCount WHERE passengers <> 0) S " +
+		"FULL JOIN (SELECT fid, status, COUNT(*) AS passengers FROM Reservation WHERE status IS NOT NULL GROUP BY fid, status) F " +
+		"ON F.fid = S.fid AND F.status = S.status " +
+		"WHERE S.passengers IS DISTINCT FROM F.passengers";
+
+	//pool of physical database connections, each with its statement cache
+	private ConnectionPool _pool = null;
+	//sends reads to replicas, when replicas are configured
+	private ReplicaRouter _replicas = null;
+	//read-only statements that still go to the primary
+	private final Set<String> _primaryReads = Collections.newSetFromMap (new ConcurrentHashMap<String, Boolean> ());
+	//block allocator for new primary keys
+	private final IdAllocator _ids = new IdAllocator(this);
+	//single statement seat reservation
+	private final BookingEngine _booking = new BookingEngine(this);
+	//batched, transactional flight creation
+	private final FlightWriter _flights = new FlightWriter(this);
+	//cancellations and set based waitlist promotion
+	private final WaitlistEngine _waitlist = new WaitlistEngine(this);
+	//flight network for route searches, loaded on first use
+	private final RouteGraph _routes = new RouteGraph(this);
+	private final Listings _listings = new Listings(this);
+	//seat counts of recently asked about flights
+	private final SeatCache _seats = new SeatCache(this, SeatCache.DEFAULT_CAPACITY);
+	//connection of the transaction the calling thread is running, if any
+	private final ThreadLocal<CachedConnection> _pinned = new ThreadLocal<CachedConnection>();
+	//actions to run once the calling thread's transaction commits
+	private final ThreadLocal<List<Runnable>> _afterCommit = new ThreadLocal<List<Runnable>>();
+	//latency, rows and errors per SQL template and operation
+	private final QueryMetrics _metrics = QueryMetrics.fromSystemProperties();
+	//rows of the rarely changing tables by FIND_* template
+	private final Map<String, EntityCache<Integer, ResultTable>> _entities = new LinkedHashMap<String, EntityCache<Integer, ResultTable>>();
+	//memory mapped copy of the reference tables, when one is configured
+	private ReferenceSnapshot _snapshot = null;
+	//applies the changes other processes commit, when listening is enabled
+	private ChangeListener _changes = null;
 	static BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+
+	//rows fetched per round trip by streamed queries
+	static final int FETCH_SIZE = 1000;
+
+	/**
+	 * Receives the rows of a streamed query, one row at a time.
+	 */
+	public interface RowHandler{
+		void row(ResultSet rs) throws SQLException;
+	}
+
+	/**
+	 * A RowHandler that also receives the columns of the result before its
+	 * first row, even when there is none.  They are received again when a
+	 * read that failed on a replica is retried on the primary.
+	 */
+	public interface ColumnHandler extends RowHandler{
+		void columns(ResultSetMetaData rsmd) throws SQLException;
+	}
+
+	/**
+	 * A unit of work run by transaction on a single connection.
+	 */
+	public interface Work<T>{
+		T run(CachedConnection conn) throws SQLException;
+	}
 	
 	public DBproject(String dbname, String dbport, String user, String passwd) throws SQLException {
+		this(dbname, dbport, user, passwd, 1);
+	}
+
+	/**
+	 * Connects in pooled mode, so up to poolSize threads can run operations
+	 * against the database at the same time.
+	 */
+	public DBproject(String dbname, String dbport, String user, String passwd, int poolSize) throws SQLException {
+		entityCache (FIND_PLANE, "Plane");
+		entityCache (FIND_PILOT, "Pilot");
+		entityCache (FIND_TECHNICIAN, "Technician");
+		entityCache (FIND_CUSTOMER, "Customer");
+		//cached counts and flights must not go back in time by a replica's lag
+		readFromPrimary (SeatCache.LOAD_SEATS, SeatCache.LOAD_SCHEDULED, RouteGraph.LOAD_FLIGHTS, RouteGraph.LOAD_ADDED);
 		System.out.print("Connecting to database...");
 		try{
 			// constructs the connection URL
-			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname;
+			// batched inserts are rewritten into multi-row INSERTs by the driver
+			String url = "jdbc:postgresql://localhost:" + dbport + "/" + dbname + "?reWriteBatchedInserts=true";
 			System.out.println ("Connection URL: " + url + "\n");
 			
-			// obtain a physical connection
-	        this._connection = DriverManager.getConnection(url, user, passwd);
+			// obtain a physical connection up front so a bad setup fails here
+			this._pool = new ConnectionPool(url, user, passwd, poolSize);
+	        this._pool.release(this._pool.checkout());
 	        System.out.println("Done");
+
+	        //reads go to the replicas given as host:port,host:port, see ReplicaRouter
+	        String replicas = System.getProperty("dbproject.replicas", "").trim();
+	        if (!replicas.isEmpty()){
+	        	this._replicas = new ReplicaRouter(Arrays.asList(replicas.split("\\s*,\\s*")), dbname, user, passwd, poolSize,
+	        			Long.getLong("dbproject.maxReplicaLagMillis", ReplicaRouter.DEFAULT_MAX_LAG_MILLIS));
+	        	System.out.println(this._replicas);
+	        }//end if
 		}catch(Exception e){
 			System.err.println("Error - Unable to Connect to Database: " + e.getMessage());
 	        System.out.println("Make sure you started postgres on this machine");
 	        System.exit(-1);
 		}
+		//warms the entity caches from a snapshot file, written on first use
+		String snapshot = System.getProperty("dbproject.snapshot");
+		if (snapshot != null){
+			try{
+				long start = System.nanoTime();
+				int rows = loadSnapshot(new File(snapshot));
+				System.out.println(String.format("%s, %d rows cached in %.1f ms", this._snapshot, rows, (System.nanoTime() - start) / 1e6));
+			}catch(Exception e){
+				System.err.println("Snapshot " + snapshot + " not used: " + e.getMessage());
+			}
+		}//end if
+		//keeps the caches coherent with other processes, see sql/create_notify.sql
+		if (Boolean.getBoolean("dbproject.listen")){
+			try{
+				this._changes = new ChangeListener(this);
+				this._changes.start();
+			}catch(SQLException e){
+				this._changes = null;
+				System.err.println("Not listening for changes: " + e.getMessage());
+			}
+		}//end if
+	}
+
+	/**
+	 * Method to check a connection out of the pool for the calling thread.
+	 * Inside a transaction this is the connection of the transaction.
+	 *
+	 * @return a connection that must be handed back through release
+	 * @throws java.sql.SQLException when no connection could be obtained
+	 */
+	CachedConnection acquire () throws SQLException {
+		CachedConnection pinned = this._pinned.get ();
+		if (pinned != null) return pinned;
+		long start = System.nanoTime ();
+		CachedConnection conn = this._pool.checkout ();
+		this._metrics.acquired (System.nanoTime () - start);
+		return conn;
+	}
+
+	/**
+	 * Method to hand a connection obtained from acquire back to the pool.
+	 *
+	 * @param conn the connection to return
+	 */
+	void release (CachedConnection conn) {
+		if (conn != this._pinned.get ()) this._pool.release (conn);
+	}
+
+	/**
+	 * Method to run a unit of work in a single transaction.  Every helper
+	 * called by the same thread while the work runs joins the transaction.
+	 * The transaction commits when the work returns and rolls back when it
+	 * throws.  Nested calls join the outer transaction.
+	 *
+	 * @param work the statements to run
+	 * @return the value returned by the work
+	 * @throws java.sql.SQLException when the work or the commit failed
+	 */
+	public <T> T transaction (Work<T> work) throws SQLException {
+		CachedConnection outer = this._pinned.get ();
+		if (outer != null) return work.run (outer);
+
+		long start = System.nanoTime ();
+		CachedConnection conn = this._pool.checkout ();
+		this._metrics.acquired (System.nanoTime () - start);
+		Connection c = conn.getConnection ();
+		boolean committed = false;
+		List<Runnable> afterCommit = new ArrayList<Runnable> ();
+		this._pinned.set (conn);
+		this._afterCommit.set (afterCommit);
+		try{
+			c.setAutoCommit (false);
+			T result = work.run (conn);
+			c.commit ();
+			committed = true;
+			this._afterCommit.remove ();
+			for (Runnable action : afterCommit)
+				action.run ();
+			return result;
+		}finally{
+			this._pinned.remove ();
+			this._afterCommit.remove ();
+			try{
+				if (!committed) c.rollback ();
+				c.setAutoCommit (true);
+			}catch (SQLException e){
+				// the pool closes connections left in a transaction.
+			}//end try
+			this._pool.release (conn);
+			this._metrics.operation ("transaction", System.nanoTime () - start, !committed);
+		}
+	}//end transaction
+
+	/**
+	 * @return true when the calling thread is running a transaction
+	 */
+	boolean inTransaction () {
+		return this._pinned.get () != null;
 	}
+
+	/**
+	 * @return the pool backing this instance
+	 */
+	public ConnectionPool getPool () {
+		return this._pool;
+	}
+
+	/**
+	 * Method to fetch the cached prepared statement for a SQL template and
+	 * bind the given parameters to its placeholders in order.
+	 *
+	 * @param conn the connection owning the statement cache
+	 * @param sql the SQL template with '?' placeholders
+	 * @param params the values for the placeholders
+	 * @return the bound prepared statement, owned by the statement cache
+	 * @throws java.sql.SQLException when the statement can not be prepared
+	 */
+	static PreparedStatement prepare (CachedConnection conn, String sql, Object... params) throws SQLException {
+		PreparedStatement stmt = conn.prepare (sql);
+		stmt.clearParameters ();
+		for (int i = 0; i < params.length; ++i)
+			stmt.setObject (i + 1, params[i]);
+		return stmt;
+	}//end prepare
 	
 	/**
 	 * Method to execute an update SQL statement.  Update SQL instructions
 	 * includes CREATE, INSERT, UPDATE, DELETE, and DROP.
 	 * 
-	 * @param sql the input SQL string
+	 * @param sql the input SQL string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows affected
 	 * @throws java.sql.SQLException when update failed
 	 * */
-	public void executeUpdate (String sql) throws SQLException { 
-		// creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		// issues the update instruction
-		stmt.executeUpdate (sql);
+	public int executeUpdate (String sql, Object... params) throws SQLException { 
+		long start = System.nanoTime ();
+		int rowCount = -1;
+		CachedConnection conn = acquire ();
+		try{
+			// fetches the cached statement object and binds the parameters
+			PreparedStatement stmt = prepare (conn, sql, params);
 
-		// close the instruction
-	    stmt.close ();
+			// issues the update instruction
+			rowCount = stmt.executeUpdate ();
+			return rowCount;
+		}finally{
+			release (conn);
+			this._metrics.query (sql, System.nanoTime () - start, Math.max (0, rowCount), rowCount < 0, params);
+		}
 	}//end executeUpdate
 
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT) and
+	 * hand each row to a handler as it arrives.  Outside a transaction the
+	 * query runs in its own read transaction with a fetch size, so the
+	 * driver reads the rows through a server-side cursor FETCH_SIZE rows at
+	 * a time and memory use does not grow with the size of the result.
+	 * 
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param handler receives the result set positioned on each row
+	 * @param params the values bound to the placeholders
+	 * @return the number of rows returned
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public int executeQueryStreaming (String query, RowHandler handler, Object... params) throws SQLException {
+		ReplicaRouter.Replica replica = readsFromReplica (query) ? this._replicas.pick () : null;
+		if (replica == null) return executeQueryStreaming (null, query, handler, params);
+		final RowHandler inner = handler;
+		final int[] handed = new int[1];
+		try{
+			return executeQueryStreaming (replica, query, new ColumnHandler(){
+				public void columns (ResultSetMetaData rsmd) throws SQLException {
+					if (inner instanceof ColumnHandler) ((ColumnHandler) inner).columns (rsmd);
+				}
+
+				public void row (ResultSet rs) throws SQLException {
+					++handed[0];
+					inner.row (rs);
+				}
+			}, params);
+		}catch (SQLException e){
+			//rows already handed over can not be taken back
+			if (handed[0] > 0 || !ReplicaRouter.isReplicaFailure (e)) throw e;
+			replica.failed ();
+			return executeQueryStreaming (null, query, handler, params);
+		}
+	}//end executeQueryStreaming
+
+	/**
+	 * Streams the rows of a query from a replica, or from the primary when
+	 * replica is null.
+	 */
+	private int executeQueryStreaming (ReplicaRouter.Replica replica, String query, RowHandler handler, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		boolean failed = true;
+		CachedConnection conn = replica == null ? acquire () : replica.checkout ();
+		Connection c = conn.getConnection ();
+		//the driver only uses a cursor when autocommit is off
+		boolean ownTransaction = c.getAutoCommit ();
+		try{
+			if (ownTransaction) c.setAutoCommit (false);
+
+			//fetches the cached statement object and binds the parameters
+			PreparedStatement stmt = prepare (conn, query, params);
+			stmt.setFetchSize (FETCH_SIZE);
+
+			//issues the query instruction and streams the rows
+			ResultSet rs = stmt.executeQuery ();
+			try{
+				if (handler instanceof ColumnHandler) ((ColumnHandler) handler).columns (rs.getMetaData ());
+				while (rs.next()){
+					handler.row (rs);
+					++rowCount;
+				}//end while
+			}finally{
+				rs.close ();
+			}
+			if (ownTransaction) c.commit ();
+			failed = false;
+			return rowCount;
+		}finally{
+			if (ownTransaction){
+				try{
+					c.rollback ();
+					c.setAutoCommit (true);
+				}catch (SQLException e){
+					// the pool closes connections left in a transaction.
+				}//end try
+			}//end if
+			if (replica == null) release (conn);
+			else replica.release (conn, failed);
+			this._metrics.query (query, System.nanoTime () - start, rowCount, failed, params);
+		}
+	}//end executeQueryStreaming
+
+	/**
+	 * @return true when a statement goes to a replica: replicas are
+	 * configured, it is read-only, it is not part of a transaction and it
+	 * is not one of the reads kept on the primary
+	 */
+	boolean readsFromReplica (String query) {
+		return this._replicas != null && !inTransaction () && !this._primaryReads.contains (query) && ReplicaRouter.isReadOnly (query);
+	}
+
+	/**
+	 * Method to keep read-only statements on the primary, e.g. the loads of
+	 * caches that must not go back in time.
+	 *
+	 * @param queries the SQL templates
+	 */
+	void readFromPrimary (String... queries) {
+		for (String query : queries)
+			this._primaryReads.add (query);
+	}
+
+	/**
+	 * @return the replica routing, or null when every statement goes to the primary
+	 */
+	public ReplicaRouter getReplicas () {
+		return this._replicas;
+	}
+
 	/**
 	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
 	 * method issues the query to the DBMS and outputs the results to
 	 * standard out.
 	 * 
-	 * @param query the input query string
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders
 	 * @return the number of rows returned
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public int executeQueryAndPrintResult (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
-
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
+	public int executeQueryAndPrintResult (String query, Object... params) throws SQLException {
+		//iterates through the streamed rows and output them to standard out.
+		return executeQueryStreaming (query, new RowHandler(){
+			boolean outputHeader = true;
 
-		/*
-		 *  obtains the metadata object for the returned result set.  The metadata
-		 *  contains row and column info.
-		 */
-		ResultSetMetaData rsmd = rs.getMetaData ();
-		int numCol = rsmd.getColumnCount ();
-		int rowCount = 0;
-		
-		//iterates through the result set and output them to standard out.
-		boolean outputHeader = true;
-		while (rs.next()){
-			if(outputHeader){
-				for(int i = 1; i <= numCol; i++){
-					System.out.print(rsmd.getColumnName(i) + "\t");
-			    }
-			    System.out.println();
-			    outputHeader = false;
+			public void row (ResultSet rs) throws SQLException {
+				/*
+				 *  obtains the metadata object for the returned result set.  The metadata
+				 *  contains row and column info.
+				 */
+				ResultSetMetaData rsmd = rs.getMetaData ();
+				int numCol = rsmd.getColumnCount ();
+				//one print per line rather than per cell
+				StringBuilder line = new StringBuilder ();
+				if(outputHeader){
+					for(int i = 1; i <= numCol; i++){
+						line.append (rsmd.getColumnName(i)).append ('\t');
+				    }
+				    line.append ('\n');
+				    outputHeader = false;
+				}
+				for (int i=1; i<=numCol; ++i)
+					line.append (rs.getString (i)).append ('\t');
+				System.out.println (line);
 			}
-			for (int i=1; i<=numCol; ++i)
-				System.out.print (rs.getString (i) + "\t");
-			System.out.println ();
-			++rowCount;
-		}//end while
-		stmt.close ();
-		return rowCount;
+		}, params);
 	}
 	
+	/**
+	 * Method to output a table to standard out the way
+	 * executeQueryAndPrintResult outputs a query's rows.
+	 *
+	 * @param table the rows to print
+	 */
+	static void printTable (ResultTable table) {
+		if (table.rowCount () == 0) return;
+		for (int c = 0; c < table.columnCount (); ++c)
+			System.out.print (table.columnName (c) + "\t");
+		System.out.println ();
+		for (int r = 0; r < table.rowCount (); ++r){
+			for (int c = 0; c < table.columnCount (); ++c)
+				System.out.print (table.getString (r, c) + "\t");
+			System.out.println ();
+		}//end for
+	}
+
 	/**
 	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
 	 * method issues the query to the DBMS and returns the results as
 	 * a list of records. Each record in turn is a list of attribute values
 	 * 
-	 * @param query the input query string
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders
 	 * @return the query result as a list of records
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public List<List<String>> executeQueryAndReturnResult (String query) throws SQLException { 
-		//creates a statement object 
-		Statement stmt = this._connection.createStatement (); 
-		
-		//issues the query instruction 
-		ResultSet rs = stmt.executeQuery (query); 
-	 
-		/*
-		 * obtains the metadata object for the returned result set.  The metadata 
-		 * contains row and column info. 
-		*/ 
-		ResultSetMetaData rsmd = rs.getMetaData (); 
-		int numCol = rsmd.getColumnCount (); 
-		int rowCount = 0; 
-	 
-		//iterates through the result set and saves the data returned by the query. 
-		boolean outputHeader = false;
+	public List<List<String>> executeQueryAndReturnResult (String query, Object... params) throws SQLException { 
+		long start = System.nanoTime ();
 		List<List<String>> result  = new ArrayList<List<String>>(); 
-		while (rs.next()){
-			List<String> record = new ArrayList<String>(); 
-			for (int i=1; i<=numCol; ++i) 
-				record.add(rs.getString (i)); 
-			result.add(record); 
-		}//end while 
-		stmt.close (); 
-		return result; 
+		boolean failed = true;
+		CachedConnection conn = acquire (); 
+		try{
+			//fetches the cached statement object and binds the parameters 
+			PreparedStatement stmt = prepare (conn, query, params); 
+			
+			//issues the query instruction 
+			ResultSet rs = stmt.executeQuery (); 
+		 
+			/*
+			 * obtains the metadata object for the returned result set.  The metadata 
+			 * contains row and column info. 
+			*/ 
+			ResultSetMetaData rsmd = rs.getMetaData (); 
+			int numCol = rsmd.getColumnCount (); 
+		 
+			//iterates through the result set and saves the data returned by the query. 
+			while (rs.next()){
+				List<String> record = new ArrayList<String>(); 
+				for (int i=1; i<=numCol; ++i) 
+					record.add(rs.getString (i)); 
+				result.add(record); 
+			}//end while 
+			rs.close (); 
+			failed = false;
+			return result; 
+		}finally{
+			release (conn);
+			this._metrics.query (query, System.nanoTime () - start, result.size (), failed, params);
+		}
 	}//end executeQueryAndReturnResult
 	
+	/**
+	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
+	 * method issues the query to the DBMS and returns the results as a
+	 * typed, column oriented table.  Numbers and dates are kept in
+	 * primitive arrays instead of one String per cell.  A query without
+	 * rows still returns its columns.
+	 * 
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the query result as a table
+	 * @throws java.sql.SQLException when failed to execute the query
+	 */
+	public ResultTable executeQueryAndReturnTable (String query, Object... params) throws SQLException {
+		ResultTable.Builder builder = new ResultTable.Builder ();
+		executeQueryStreaming (query, builder, params);
+		return builder.build ();
+	}//end executeQueryAndReturnTable
+
 	/**
 	 * Method to execute an input query SQL instruction (i.e. SELECT).  This
 	 * method issues the query to the DBMS and returns the number of results
 	 * 
-	 * @param query the input query string
+	 * @param query the input query string, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders
 	 * @return the number of rows returned
 	 * @throws java.sql.SQLException when failed to execute the query
 	 */
-	public int executeQuery (String query) throws SQLException {
-		//creates a statement object
-		Statement stmt = this._connection.createStatement ();
+	public int executeQuery (String query, Object... params) throws SQLException {
+		long start = System.nanoTime ();
+		int rowCount = 0;
+		boolean failed = true;
+		CachedConnection conn = acquire ();
+		try{
+			//fetches the cached statement object and binds the parameters
+			PreparedStatement stmt = prepare (conn, query, params);
 
-		//issues the query instruction
-		ResultSet rs = stmt.executeQuery (query);
+			//issues the query instruction
+			ResultSet rs = stmt.executeQuery ();
 
-		int rowCount = 0;
 
-		//iterates through the result set and count nuber of results.
-		if(rs.next()){
-			rowCount++;
-		}//end while
-		stmt.close ();
-		return rowCount;
+			//iterates through the result set and count nuber of results.
+			if(rs.next()){
+				rowCount++;
+			}//end while
+			rs.close ();
+			failed = false;
+			return rowCount;
+		}finally{
+			release (conn);
+			this._metrics.query (query, System.nanoTime () - start, rowCount, failed, params);
+		}
 	}
 	
 	/**
@@ -187,24 +606,462 @@ public class DBproject{
 	 */
 	
 	public int getCurrSeqVal(String sequence) throws SQLException {
-		Statement stmt = this._connection.createStatement ();
-		
-		ResultSet rs = stmt.executeQuery (String.format("Select currval('%s')", sequence));
-		if (rs.next()) return rs.getInt(1);
-		return -1;
+		long start = System.nanoTime ();
+		boolean failed = true;
+		CachedConnection conn = acquire ();
+		try{
+			PreparedStatement stmt = prepare (conn, CURRVAL, sequence);
+			
+			ResultSet rs = stmt.executeQuery ();
+			int value = rs.next() ? rs.getInt(1) : -1;
+			rs.close ();
+			failed = false;
+			return value;
+		}finally{
+			release (conn);
+			this._metrics.query (CURRVAL, System.nanoTime () - start, 1, failed, new Object[]{sequence});
+		}
 	}
 
 	/**
-	 * Method to close the physical connection if it is open.
+	 * Method to run an action once the calling thread's transaction has
+	 * committed, e.g. to update a cache.  Outside a transaction the action
+	 * runs right away; when the transaction rolls back it never runs.
+	 *
+	 * @param action the action to run
 	 */
-	public void cleanup(){
+	public void afterCommit (Runnable action) {
+		List<Runnable> pending = this._afterCommit.get ();
+		if (pending != null) pending.add (action);
+		else action.run ();
+	}
+
+	/**
+	 * @return the seat availability cache of this instance
+	 */
+	public SeatCache getSeatCache () {
+		return this._seats;
+	}
+
+	/**
+	 * Method to find the seats left on a flight, from the seat cache when
+	 * the flight was asked about before.
+	 *
+	 * @param fnum the flight number
+	 * @return the seats left, or null when the flight has no plane or schedule
+	 * @throws java.sql.SQLException when the counts could not be loaded
+	 */
+	public Integer availableSeats (int fnum) throws SQLException {
+		long start = System.nanoTime ();
+		boolean failed = true;
 		try{
-			if (this._connection != null){
-				this._connection.close ();
-			}//end if
-		}catch (SQLException e){
-	         // ignored.
-		}//end try
+			Integer seats = this._seats.remaining (fnum);
+			failed = false;
+			return seats;
+		}finally{
+			this._metrics.operation ("availableSeats", System.nanoTime () - start, failed);
+		}
+	}
+
+	/**
+	 * Method to find the seats left on a flight departing on a given date.
+	 *
+	 * @param fnum the flight number
+	 * @param date the departure date
+	 * @return the seats left, or null when the flight does not depart that day
+	 * @throws java.sql.SQLException when the counts could not be loaded
+	 */
+	public Integer availableSeats (int fnum, String date) throws SQLException {
+		long start = System.nanoTime ();
+		boolean failed = true;
+		try{
+			Integer seats = this._seats.remaining (fnum, date);
+			failed = false;
+			return seats;
+		}finally{
+			this._metrics.operation ("availableSeatsOnDate", System.nanoTime () - start, failed);
+		}
+	}
+
+	/**
+	 * Registers the read-through cache of a table keyed by its first
+	 * column, sized by the dbproject.entityCacheSize and
+	 * dbproject.entityCacheTtlMillis system properties.
+	 */
+	private void entityCache (final String template, final String table) {
+		final String all = "SELECT * FROM " + table + " ORDER BY 1 LIMIT ?";
+		//an invalidated row is loaded again, which a lagging replica could answer with the old row
+		readFromPrimary (template, all);
+		EntityCache.Loader<Integer, ResultTable> loader = new EntityCache.Loader<Integer, ResultTable>(){
+			public ResultTable load (Integer id) throws SQLException {
+				ResultTable row = executeQueryAndReturnTable (template, id);
+				return row.rowCount () == 0 ? null : row;
+			}
+
+			public Map<Integer, ResultTable> loadAll (int limit) throws SQLException {
+				final Map<Integer, ResultTable> rows = new LinkedHashMap<Integer, ResultTable>();
+				executeQueryStreaming (all, new RowHandler(){
+					public void row (ResultSet rs) throws SQLException {
+						ResultTable.Builder builder = new ResultTable.Builder ();
+						builder.row (rs);
+						rows.put (rs.getInt (1), builder.build ());
+					}
+				}, limit);
+				return rows;
+			}
+		};
+		this._entities.put (template, new EntityCache<Integer, ResultTable>(table, loader,
+				Integer.getInteger ("dbproject.entityCacheSize", EntityCache.DEFAULT_CAPACITY),
+				Long.getLong ("dbproject.entityCacheTtlMillis", EntityCache.DEFAULT_TTL_MILLIS)));
+	}
+
+	/**
+	 * Method to look up a row by primary key with one of the FIND_*
+	 * templates.  Plane, Pilot, Technician and Customer rows come from
+	 * their entity cache; inside a transaction, and for the other tables,
+	 * the query runs every time.
+	 *
+	 * @param template one of the FIND_* templates
+	 * @param id the primary key
+	 * @return the row, or a table without rows when there is none
+	 * @throws java.sql.SQLException when the row could not be loaded
+	 */
+	public ResultTable find (String template, int id) throws SQLException {
+		EntityCache<Integer, ResultTable> cache = this._entities.get (template);
+		if (cache == null || inTransaction ()) return executeQueryAndReturnTable (template, id);
+		long start = System.nanoTime ();
+		boolean failed = true;
+		try{
+			ResultTable row = cache.get (id);
+			failed = false;
+			return row == null ? new ResultTable.Builder ().build () : row;
+		}finally{
+			this._metrics.operation ("find" + cache.getName (), System.nanoTime () - start, failed);
+		}
+	}//end find
+
+	/**
+	 * @return the entity caches of this instance, by FIND_* template
+	 */
+	public Map<String, EntityCache<Integer, ResultTable>> getEntityCaches () {
+		return this._entities;
+	}
+
+	/**
+	 * Method to fill every entity cache from its table, e.g. right after
+	 * startup so the first lookups do not go to the database.
+	 *
+	 * @return the number of rows loaded
+	 * @throws java.sql.SQLException when a table could not be read
+	 */
+	public int preloadEntities () throws SQLException {
+		int rows = 0;
+		for (EntityCache<Integer, ResultTable> cache : this._entities.values ())
+			rows += cache.preload ();
+		return rows;
+	}
+
+	/**
+	 * Method to bring a snapshot file up to date, or write it, and fill the
+	 * entity caches from it.
+	 *
+	 * @param file the snapshot file
+	 * @return the number of rows put into the entity caches
+	 * @throws java.sql.SQLException when the tables could not be read
+	 * @throws java.io.IOException when the file could not be written
+	 */
+	public int loadSnapshot (File file) throws SQLException, IOException {
+		this._snapshot = ReferenceSnapshot.load (this, file);
+		int rows = 0;
+		for (EntityCache<Integer, ResultTable> cache : this._entities.values ()){
+			ReferenceSnapshot.Table table = this._snapshot.table (cache.getName ());
+			if (table == null) continue;
+			Map<Integer, ResultTable> entities = new LinkedHashMap<Integer, ResultTable>();
+			int limit = Math.min (table.rowCount (), cache.getCapacity ());
+			for (int slot = 0; slot < limit; ++slot){
+				//records that did not fit are loaded from the database on first use
+				ResultTable row = table.row (slot);
+				if (row != null) entities.put (table.id (slot), row);
+			}//end for
+			rows += cache.preload (entities);
+		}//end for
+		return rows;
+	}
+
+	/**
+	 * @return the reference table snapshot, or null when none was loaded
+	 */
+	public ReferenceSnapshot getSnapshot () {
+		return this._snapshot;
+	}
+
+	/**
+	 * Drops a cached row once the calling thread's transaction commits.
+	 */
+	private void invalidateEntity (String template, final int id) {
+		final EntityCache<Integer, ResultTable> cache = this._entities.get (template);
+		afterCommit (new Runnable(){
+			public void run () {
+				cache.invalidate (id);
+			}
+		});
+	}
+
+	/**
+	 * Method to insert a plane.
+	 *
+	 * @return the number of rows inserted
+	 * @throws java.sql.SQLException when the plane could not be inserted
+	 */
+	public int addPlane (int id, String make, String model, int age, int seats) throws SQLException {
+		int rows = executeUpdate (INSERT_PLANE, id, make, model, age, seats);
+		invalidateEntity (FIND_PLANE, id);
+		return rows;
+	}
+
+	/**
+	 * Method to insert a pilot.
+	 *
+	 * @return the number of rows inserted
+	 * @throws java.sql.SQLException when the pilot could not be inserted
+	 */
+	public int addPilot (int id, String fullname, String nationality) throws SQLException {
+		int rows = executeUpdate (INSERT_PILOT, id, fullname, nationality);
+		invalidateEntity (FIND_PILOT, id);
+		return rows;
+	}
+
+	/**
+	 * Method to insert a technician.
+	 *
+	 * @return the number of rows inserted
+	 * @throws java.sql.SQLException when the technician could not be inserted
+	 */
+	public int addTechnician (int id, String fullname) throws SQLException {
+		int rows = executeUpdate (INSERT_TECHNICIAN, id, fullname);
+		invalidateEntity (FIND_TECHNICIAN, id);
+		return rows;
+	}
+
+	/**
+	 * Method to take a new primary key from the block id allocator.
+	 *
+	 * @param sequence one of the IdAllocator sequence names
+	 * @return an id no other caller has received
+	 * @throws java.sql.SQLException when a new block could not be reserved
+	 */
+	public int nextId (String sequence) throws SQLException {
+		return this._ids.next (sequence);
+	}
+
+	/**
+	 * @return the latency, row and error counters of this instance
+	 */
+	public QueryMetrics getMetrics () {
+		return this._metrics;
+	}
+
+	/**
+	 * @return the block id allocator of this instance
+	 */
+	public IdAllocator getIds () {
+		return this._ids;
+	}
+
+	/**
+	 * Method to create a flight with its FlightInfo and Schedule rows in
+	 * one transaction.
+	 *
+	 * @param flight the flight to create
+	 * @return the new flight number
+	 * @throws java.sql.SQLException when the flight could not be created
+	 */
+	public int addFlight (FlightWriter.NewFlight flight) throws SQLException {
+		long start = System.nanoTime ();
+		boolean failed = true;
+		try{
+			final int fnum = this._flights.addFlight (flight);
+			afterCommit (new Runnable(){
+				public void run () {
+					_routes.added (fnum);
+				}
+			});
+			failed = false;
+			return fnum;
+		}finally{
+			this._metrics.operation ("addFlight", System.nanoTime () - start, failed);
+		}
+	}
+
+	/**
+	 * Method to create many flights in one transaction, e.g. for a schedule
+	 * import.
+	 *
+	 * @param flights the flights to create
+	 * @return the new flight numbers, in the order of the given flights
+	 * @throws java.sql.SQLException when any flight could not be created, in which case none is
+	 */
+	public int[] addFlights (List<FlightWriter.NewFlight> flights) throws SQLException {
+		long start = System.nanoTime ();
+		boolean failed = true;
+		try{
+			final int[] fnums = this._flights.addFlights (flights);
+			afterCommit (new Runnable(){
+				public void run () {
+					_routes.added (fnums);
+				}
+			});
+			failed = false;
+			return fnums;
+		}finally{
+			this._metrics.operation ("addFlights", System.nanoTime () - start, failed);
+		}
+	}
+
+	/**
+	 * Method to book a seat for a customer without prompting.  The customer
+	 * gets a seat when the flight has seats left and is put on the waitlist
+	 * otherwise.
+	 *
+	 * @param cid the customer id
+	 * @param fnum the flight number
+	 * @return the booked reservation
+	 * @throws java.sql.SQLException when the booking failed
+	 */
+	public Booking bookFlight (int cid, int fnum) throws SQLException {
+		long start = System.nanoTime ();
+		boolean failed = true;
+		try{
+			//seat check, num_sold increment and insert run as one statement
+			Booking booking = this._booking.book (cid, fnum);
+			failed = false;
+			return booking;
+		}finally{
+			this._metrics.operation ("bookFlight", System.nanoTime () - start, failed);
+		}
+	}//end bookFlight
+
+	/**
+	 * Method to book seats for a group in one transaction, e.g. a family on
+	 * a trip of several legs.  On every flight the pairs get the seats left
+	 * in the order they are given and the rest is waitlisted.
+	 *
+	 * @param cids the customer ids
+	 * @param fnums the flight numbers, the i-th customer is booked on the i-th flight
+	 * @return the booked reservations, in the order of the pairs
+	 * @throws java.sql.SQLException when the booking failed, in which case nothing is booked
+	 */
+	public List<Booking> bookGroup (int[] cids, int[] fnums) throws SQLException {
+		long start = System.nanoTime ();
+		boolean failed = true;
+		try{
+			List<Booking> bookings = this._booking.bookGroup (cids, fnums);
+			failed = false;
+			return bookings;
+		}finally{
+			this._metrics.operation ("bookGroup", System.nanoTime () - start, failed);
+		}
+	}//end bookGroup
+
+	/**
+	 * Method to find routes between two airports departing on a day, direct
+	 * or with connections, ordered by arrival date, number of flights and
+	 * cost.
+	 *
+	 * @param from the departure airport code
+	 * @param to the arrival airport code
+	 * @param date the departure date
+	 * @param maxConnections the changes of flight allowed, 0 to RouteGraph.MAX_CONNECTIONS
+	 * @param minLayoverDays the days at least between two flights of a route
+	 * @param seats the seats needed on every flight, 0 to ignore seat availability
+	 * @return up to RouteGraph.DEFAULT_LIMIT routes
+	 * @throws java.sql.SQLException when the network or the seats could not be loaded
+	 */
+	public List<RouteGraph.Route> findRoutes (String from, String to, LocalDate date, int maxConnections, int minLayoverDays,
+			int seats) throws SQLException {
+		long start = System.nanoTime ();
+		boolean failed = true;
+		try{
+			List<RouteGraph.Route> routes = this._routes.search (from, to, date, maxConnections, minLayoverDays,
+					Math.max (minLayoverDays, RouteGraph.DEFAULT_MAX_LAYOVER_DAYS), seats, RouteGraph.DEFAULT_LIMIT);
+			failed = false;
+			return routes;
+		}finally{
+			this._metrics.operation ("findRoutes", System.nanoTime () - start, failed);
+		}
+	}//end findRoutes
+
+	/**
+	 * @return the flight network used by findRoutes
+	 */
+	public RouteGraph getRoutes () {
+		return this._routes;
+	}
+
+	/**
+	 * @return the listener applying other processes' changes, or null when not listening
+	 */
+	public ChangeListener getChanges () {
+		return this._changes;
+	}
+
+	/**
+	 * @return the paged listings of reservations, flights and repairs
+	 */
+	public Listings getListings () {
+		return this._listings;
+	}
+
+	/**
+	 * Method to cancel a reservation.  When it held a seat, the flight's
+	 * oldest waitlisted passenger gets it in the same transaction.
+	 *
+	 * @param rnum the reservation number
+	 * @return the cancellation, or null when the reservation is not reserved or waitlisted
+	 * @throws java.sql.SQLException when the cancellation failed
+	 */
+	public WaitlistEngine.Cancellation cancelReservation (int rnum) throws SQLException {
+		long start = System.nanoTime ();
+		boolean failed = true;
+		try{
+			WaitlistEngine.Cancellation cancellation = this._waitlist.cancel (rnum);
+			failed = false;
+			return cancellation;
+		}finally{
+			this._metrics.operation ("cancelReservation", System.nanoTime () - start, failed);
+		}
+	}//end cancelReservation
+
+	/**
+	 * Method to move waitlisted passengers into the free seats of some
+	 * flights, or of every flight when none is given.
+	 *
+	 * @param fnums the flight numbers
+	 * @return the number of passengers promoted
+	 * @throws java.sql.SQLException when a promotion batch failed
+	 */
+	public int promoteWaitlist (int... fnums) throws SQLException {
+		long start = System.nanoTime ();
+		boolean failed = true;
+		try{
+			int promoted = fnums.length == 0 ? this._waitlist.promoteAll () : this._waitlist.promote (fnums);
+			failed = false;
+			return promoted;
+		}finally{
+			this._metrics.operation ("promoteWaitlist", System.nanoTime () - start, failed);
+		}
+	}//end promoteWaitlist
+
+	/**
+	 * Method to close the physical connections if they are open.
+	 */
+	public void cleanup(){
+		if (this._changes != null) this._changes.stop ();
+		if (this._replicas != null) this._replicas.close ();
+		if (this._pool != null){
+			//closes the cached statements along with the connections
+			this._pool.close ();
+		}//end if
 	}//end cleanup
 
 	/**
@@ -213,12 +1070,13 @@ public class DBproject{
 	 * @param args the command line arguments this inclues the <mysql|pgsql> <login file>
 	 */
 	public static void main (String[] args) {
-		if (args.length != 3) {
+		if (args.length != 3 && args.length != 4) {
 			System.err.println (
 				"Usage: " + "java [-classpath <classpath>] " + DBproject.class.getName () +
-		            " <dbname> <port> <user>");
+		            " <dbname> <port> <user> [replica host:port,...]");
 			return;
 		}//end if
+		if (args.length == 4) System.setProperty ("dbproject.replicas", args[3]);
 		
 		DBproject esql = null;
 		
@@ -239,7 +1097,8 @@ public class DBproject{
 			String dbport = args[1];
 			String user = args[2];
 			
-			esql = new DBproject (dbname, dbport, user, "");
+			//the pool opens connections on demand, ExportTables uses them to export in parallel
+			esql = new DBproject (dbname, dbport, user, "", Exporter.DEFAULT_THREADS);
 			
 			boolean keepon = true;
 			while(keepon){
@@ -262,6 +1121,14 @@ public class DBproject{
 				System.out.println("15. Find Reservation");
 				System.out.println("16. Find Customer");
 				System.out.println("17. < EXIT");
+				System.out.println("18. Verify report summaries");
+				System.out.println("19. Show query metrics");
+				System.out.println("20. Cancel Reservation");
+				System.out.println("21. Promote waitlisted passengers");
+				System.out.println("22. Book a group");
+				System.out.println("23. Find routes between two airports");
+				System.out.println("24. Browse reservations, flights or repairs page by page");
+				System.out.println("25. Export tables and reports to CSV or JSON Lines");
 				
 				switch (readChoice()){
 					case 1: AddPlane(esql); break;
@@ -281,6 +1148,14 @@ public class DBproject{
 					case 15: FindReservation(esql); break;
 					case 16: FindCustomer(esql); break;
 					case 17: keepon = false; break;
+					case 18: VerifyReportSummaries(esql); break;
+					case 19: ShowQueryMetrics(esql); break;
+					case 20: CancelReservation(esql); break;
+					case 21: PromoteWaitlist(esql); break;
+					case 22: BookGroup(esql); break;
+					case 23: FindRoutes(esql); break;
+					case 24: BrowseListing(esql); break;
+					case 25: ExportTables(esql); break;
 				}
 			}
 		}catch(Exception e){
@@ -322,22 +1197,12 @@ public class DBproject{
 			System.out.print("Please enter Plane Model: ");
 			String input_pmodel = in.readLine(); //Plane model
 			System.out.print("Please enter Plane Age: ");
-			String input_page = in.readLine(); //Plane Age
+			int input_page = Integer.parseInt(in.readLine()); //Plane Age
 			System.out.print("Please enter Plane Seats: "); 
-			String input_pseats = in.readLine(); //Plane Seats
+			int input_pseats = Integer.parseInt(in.readLine()); //Plane Seats
 			
 			//Generate Plane ID			
-			String generate_plane_id = "SELECT COUNT(*) FROM Plane";
-			String last_plane_id = esql.executeQueryAndReturnResult(generate_plane_id).get(0).get(0);
-			int input_pid = Integer.parseInt(last_plane_id) + 1;
-
-			//Generate query		
-			String query = "INSERT INTO Plane VALUES(" 
-					+input_pid+ ",'" 
-					+input_pmake+ "','"  
-					+input_pmodel+ "'," 
-					+input_page+ "," 
-					+input_pseats+ ");"; 			
+			int input_pid = esql.nextId(IdAllocator.PLANE);
 			
 			//Verify user input and allow for cancelling
 			System.out.print("\n");
@@ -355,7 +1220,7 @@ public class DBproject{
 				System.out.print("\n");
 				System.out.print("Okay adding plane...\n");
 				System.out.print("Your Plane ID is: " +input_pid+ "\n");
-				esql.executeUpdate(query);
+				esql.addPlane(input_pid, input_pmake, input_pmodel, input_page, input_pseats);
 			}else{
 				System.out.print("\n");
 				System.out.print("Okay returning to main menu...\n");
@@ -374,15 +1239,7 @@ public class DBproject{
 			String input_pilot_nation = in.readLine(); // Pilot Nationality
 		
 			//Generate Pilot ID
-			String generate_pilot_id = "SELECT COUNT(*) FROM Pilot";
-			String last_pilot_id = esql.executeQueryAndReturnResult(generate_pilot_id).get(0).get(0);
-			int input_pilot_id = Integer.parseInt(last_pilot_id) + 1;
-			
-			//Generate Query
-			String query = "INSERT INTO Pilot VALUES(" 
-				+input_pilot_id+ ",'" 
-				+input_pilot_name+ "','" 
-				+input_pilot_nation+ "');";
+			int input_pilot_id = esql.nextId(IdAllocator.PILOT);
 			
 			//Verify user input and allow cancelling
 			System.out.print("\n");
@@ -396,7 +1253,7 @@ public class DBproject{
 				System.out.print("\n");
 				System.out.print("Okay adding pilot...\n");
 				System.out.print("The Pilot ID is: " +input_pilot_id+ "\n");
-				esql.executeUpdate(query);
+				esql.addPilot(input_pilot_id, input_pilot_name, input_pilot_nation);
 			}else{
 				System.out.print("\n");
 				System.out.print("Okay returning to main menu...\n");
@@ -437,53 +1294,11 @@ public class DBproject{
 			System.out.print("Please entere departure airport code: ");
 			String input_flight_departure_airport = in.readLine(); //Departure Airport
 			
-			//Generating flight number			
-			String generate_flight_num = "SELECT COUNT(*) FROM Flight";
-			String last_flight_num = esql.executeQueryAndReturnResult(generate_flight_num).get(0).get(0);
-			int input_flight_num = Integer.parseInt(last_flight_num) + 1;
-
-			//Generate query to add into Flight
-			String addFlight = "INSERT INTO Flight VALUES(" 
-					+input_flight_num+ "," 
-					+input_flight_cost+ "," 
-					+input_flight_sold+ "," 
-					+input_flight_stops+ ",'" 
-					+input_flight_departure_date+ "','" 
-					+input_flight_arrival_date+ "','" 
-					+input_flight_arrival_airport+ "','" 
-					+input_flight_departure_airport+ "');"; 
-			
-						
 			System.out.print("Please enter the Pilot ID for the flight:");
 			int input_pilot_id = Integer.parseInt(in.readLine());
 			System.out.print("Please enter the Plane ID for the flight:");
 			int input_plane_id = Integer.parseInt(in.readLine());
 
-			//Generate flight info ID	
-			String generate_info_id = "SELECT COUNT(*) FROM FlightInfo";
-			String last_info_id = esql.executeQueryAndReturnResult(generate_info_id).get(0).get(0);
-			int input_info_id = Integer.parseInt(last_info_id) + 1;
-			
-			//Generate query to add to Flight Info
-			String addFlightInfo = "INSERT INTO FlightInfo VALUES("
-						+input_info_id+ ","
-						+input_flight_num+ ","
-						+input_pilot_id+ ","
-						+input_plane_id+ ");";			
-			
-						
-			//Generate flight info ID	
-			String generate_schedule_id = "SELECT COUNT(*) FROM Schedule";
-			String last_schedule_id = esql.executeQueryAndReturnResult(generate_schedule_id).get(0).get(0);
-			int input_schedule_id = Integer.parseInt(last_schedule_id) + 1;
-			
-			//Generate query to add to Schedule	
-			String addSchedule = "INSERT INTO Schedule VALUES("
-					+input_schedule_id+ ","
-					+input_flight_num+ ",'"
-					+input_flight_departure_date+ "','"
-					+input_flight_arrival_date+ "');";
-			
 			//Verify user information and allow for cancelling		
 			System.out.print("\n");			
 			System.out.print("Does this information look correcti(Y/N)?\n");
@@ -502,10 +1317,11 @@ public class DBproject{
 			if(correct.equals("Y")|| correct.equals("y"))
 			{	
 				System.out.print("Great! Adding flight...\n");
+				//Flight, FlightInfo and Schedule rows are written in one transaction
+				int input_flight_num = esql.addFlight(new FlightWriter.NewFlight(input_flight_cost, input_flight_sold, input_flight_stops,
+						input_flight_departure_date, input_flight_arrival_date, input_flight_arrival_airport, input_flight_departure_airport,
+						input_pilot_id, input_plane_id));
 				System.out.print("The Flight Number is: " +input_flight_num+ "\n");
-				esql.executeUpdate(addFlight);
-				esql.executeUpdate(addFlightInfo);
-				esql.executeUpdate(addSchedule);
 			}else{
 				System.out.print("Returning to main menu \n");
 				return;
@@ -523,14 +1339,7 @@ public class DBproject{
 			String input_tech_name = in.readLine(); //Technician Name
 			
 			//Generate Technician ID
-			String generate_tech_id = "SELECT COUNT(*) FROM Technician";
-			String last_tech_id = esql.executeQueryAndReturnResult(generate_tech_id).get(0).get(0);
-			int input_tech_id = Integer.parseInt(last_tech_id) + 1;
-		
-			//Generate query to insert into Technician
-			String query = "INSERT INTO Technician VALUES("
-					+input_tech_id+ ",'"
-					+input_tech_name+ "');";
+			int input_tech_id = esql.nextId(IdAllocator.TECHNICIAN);
 			
 			//Verify user input and allow for cancelling
 			System.out.print("\n");
@@ -543,7 +1352,7 @@ public class DBproject{
 				System.out.print("\n");
 				System.out.print("Okay adding technician...\n)");
 				System.out.print("The Technician ID is: " +input_tech_id+ "\n");		
-				esql.executeUpdate(query);
+				esql.addTechnician(input_tech_id, input_tech_name);
 			}else{
 				System.out.print("Returning to main menu \n");
 				return;
@@ -563,38 +1372,27 @@ public class DBproject{
 			int input_flight_num = Integer.parseInt(in.readLine()); //Flight Number
 			System.out.print("Checking if there are seats available...\n");
 			
-			//This generates the reservation number
-			String reservation_generator = "SELECT COUNT(*) FROM Reservation"; 
-			String current_reservation_num = esql.executeQueryAndReturnResult(reservation_generator).get(0).get(0); //Read in how many reservations there are currently
-			int reservation_num = Integer.parseInt(current_reservation_num) + 1; //Assign current reservations + 1 as new reservation #
-
 			//Query for checking available seats on inputed flight number.
-			String seats_query = "SELECT P.seats - F.num_sold AS Remaining_Seats FROM Plane P, Flight F WHERE P.id IN (SELECT FI.plane_id FROM FlightInfo FI WHERE FI.flight_id =" +input_flight_num+ ") AND F.fnum IN (SELECT S.flightNum FROM Schedule S WHERE S.flightNum = " +input_flight_num+ ")";
-				
-			String current_seats = esql.executeQueryAndReturnResult(seats_query).get(0).get(0);//Read in current # of available seats
-			int available_seats = Integer.parseInt(current_seats); //Parsing String into Int for comparison	
+			Integer available_seats = esql.availableSeats(input_flight_num);//Read in current # of available seats from the seat cache
+			if(available_seats == null)
+			{
+				System.out.print("Sorry, flight " +input_flight_num+ " has no plane or schedule.\n");
+				return;
+			}
 			
 			//Assigning status based on whether there are seats or not on the flight
 			if(available_seats > 0)
 			{
 				System.out.print("We have " +available_seats+ " seats! \n");
 				
-				//Insert query for Reserved Reservations
-				String reserve = "INSERT INTO Reservation VALUES("
-						+reservation_num+ ","
-						+input_cust_id+ ","
-						+input_flight_num+ ", 'R')";
-				String flight_numSold = "UPDATE Flight SET num_sold = num_sold + 1 WHERE fnum =" +input_flight_num+ ";";
-				
 				System.out.print("\n");
 				System.out.print("Reserve flight? (Y/N) \n");
 				String answer = in.readLine();
 					
 				if(answer.equals("Y") || answer.equals("y"))
 				{	
-					esql.executeUpdate(reserve);
-					esql.executeUpdate(flight_numSold);
-					System.out.print("Your seat has been reserved for flight: " +input_flight_num+ " and your reservation number is: " +reservation_num+ "\n");
+					//The seats are checked again when booking, someone may have taken the last one meanwhile
+					printBooking(esql.bookFlight(input_cust_id, input_flight_num));
 				}else{
 					System.out.print("Okay cancelling reservation...\n");
 					return;
@@ -604,18 +1402,10 @@ public class DBproject{
 				System.out.print("Sorry no seats! Would you like to waitlist? (Y/N) \n");
 				String answer2 = in.readLine();
 				
-				//Insert Query for Waitlisted Reservations
-				String waitlist = "INSERT INTO Reservation VALUES("
-						+reservation_num+ ","
-						+input_cust_id+ ","
-						+input_flight_num+ ", 'W')";
-				String flight_numSold = "UPDATE Flight SET num_sold + 1 WHERE fnum =" +input_flight_num+ ";";
-				
 				if(answer2.equals("Y") || answer2.equals("y"))
 				{
-					esql.executeUpdate(flight_numSold);
-					esql.executeUpdate(waitlist);
-					System.out.print("You've been put on the waitlist for flight: " +input_flight_num+ " and your reservation number is: " +reservation_num+ "\n");
+					//Waitlisted reservations do not take a seat, so num_sold only changes if a seat opened up meanwhile
+					printBooking(esql.bookFlight(input_cust_id, input_flight_num));
 				}else{
 					System.out.print("Okay cancelling reservation...\n");
 					return;
@@ -627,19 +1417,31 @@ public class DBproject{
 	
 	}
 
+	private static void printBooking(Booking booking) {
+		if(booking.isReserved())
+		{
+			System.out.print("Your seat has been reserved for flight: " +booking.fnum+ " and your reservation number is: " +booking.rnum+ "\n");
+		}else{
+			System.out.print("You've been put on the waitlist for flight: " +booking.fnum+ " and your reservation number is: " +booking.rnum+ "\n");
+		}
+	}
+
 	public static void ListNumberOfAvailableSeats(DBproject esql) {//6
 		// For flight number and date, find the number of availalbe seats (i.e. total plane capacity minus booked seats )
 	    try{
 		System.out.print("Please enter flight number: ");
-		String input_fn = in.readLine(); // flight number
+		int input_fn = Integer.parseInt(in.readLine()); // flight number
 		System.out.print("Please enter departure date: ");
 		String input_dp = in.readLine(); // departure date	
 		// Subtracting SELECTED TOTAL SEATS - SELECTED SOLD SEATS
 		// Assumes num_sold is updated and num_sold = (num_seats_sold)
 
 		// INPUT: FlightNum: 0 >> Date: 2014-04-18
-		String query = "(SELECT P.seats - F.num_sold AS Remaining_Seats FROM Plane P, Flight F WHERE P.id IN (SELECT FI.plane_id FROM FlightInfo FI WHERE FI.flight_id = '" +input_fn+"') AND F.fnum IN (SELECT S.flightNum FROM Schedule S WHERE S.flightNum = '" +input_fn+ "' AND S.departure_time = '"+input_dp+"'))";   
-		esql.executeQueryAndPrintResult(query);
+		Integer remaining_seats = esql.availableSeats(input_fn, input_dp); // served from the seat cache after the first call
+		if (remaining_seats != null) {
+			System.out.println("remaining_seats\t");
+			System.out.println(remaining_seats + "\t");
+		}
 	    } catch(Exception e) {
 		System.err.println (e.getMessage());
 	    }
@@ -648,11 +1450,8 @@ public class DBproject{
 	public static void ListsTotalNumberOfRepairsPerPlane(DBproject esql) {//7
 		// Count number of repairs per planes and list them in descending order
 	   try{
-		// Using P.make to make tables understandable. Plane Make is matched with # of repairs.
-		List< List<String> > total_repair_list;
-		String query = "SELECT P.make, COUNT(R.rid) AS Repairs FROM Repairs R, Plane P WHERE P.id IN (SELECT R.plane_id FROM Repairs) GROUP BY P.make ORDER BY COUNT(R.rid) DESC;";
-		esql.executeQueryAndPrintResult(query);
-		total_repair_list = esql.executeQueryAndReturnResult(query);
+		// Using P.make to make tables understandable. Each plane's make is listed with its # of repairs.
+		esql.executeQueryAndPrintResult(REPAIRS_PER_PLANE);
 	   } catch(Exception e) {
 		System.err.println(e.getMessage());
 	   }
@@ -662,39 +1461,30 @@ public class DBproject{
 		// Count repairs per year and list them in ascending order
 	   try{
 		//EXTRACT year from date. Found on w3resource.com/PostgreSQL/extract-function.php
-		List< List<String> > repair_year_list;
-		String query = "SELECT COUNT(R.rid) AS repair, EXTRACT(year FROM R.repair_date) AS YEAR FROM Repairs R GROUP BY EXTRACT(year FROM R.repair_date) ORDER BY COUNT(R.rid) ASC;";
-		repair_year_list = esql.executeQueryAndReturnResult(query);
-		esql.executeQueryAndPrintResult(query);
+		esql.executeQueryAndPrintResult(REPAIRS_PER_YEAR);
 	   } catch(Exception e) {
 		System.err.println(e.getMessage());
 	   }
 	}
 	public static void FindPassengersCountWithStatus(DBproject esql) {//9
 		// Find how many passengers there are with a status (i.e. W,C,R) and list that number.
-	   List< List<String> > status_list;
 	   try{
 		System.out.print("Please enter you flight id: ");
-		String input_fn = in.readLine();
+		int input_fn = Integer.parseInt(in.readLine());
 		System.out.print("Please enter your flight status: ");
 		String input_fs = in.readLine();
 
 
 		//INPUT: R >> 1479     OUTPUT: 3
-		String query = "SELECT R.status, COUNT(R.status) FROM Reservation R WHERE R.fid = '"+input_fn+"' AND R.status = '"+input_fs+"' GROUP BY R.status;";
-		esql.executeQueryAndPrintResult(query);
-		status_list = esql.executeQueryAndReturnResult(query);
+		esql.executeQueryAndPrintResult(PASSENGERS_WITH_STATUS, input_fn, input_fs);
 	   } catch(Exception e) {
 		System.err.println(e.getMessage());
 	   }
 	}
 	public static void FindPassengersInAllStatus(DBproject esql) {//10
 		// Find how many passengers there are with a status W,C,R and list count of each.
-	   List< List<String> > total_status_list;
 	   try{
-		String query = "SELECT R.status, COUNT(R.status) FROM Reservation R GROUP BY R.status;";
-		esql.executeQueryAndPrintResult(query);
-		total_status_list = esql.executeQueryAndReturnResult(query);
+		esql.executeQueryAndPrintResult(PASSENGERS_IN_ALL_STATUS);
 	   } catch(Exception e) {
 		System.err.println(e.getMessage());
 	   }
@@ -708,8 +1498,7 @@ public class DBproject{
 		System.out.print("\n");
 			
 		//Input plane ID into query and execute.
-		String query = "SELECT * FROM Plane WHERE id =" +input_plane_id+";";
-		esql.executeQueryAndPrintResult(query);
+		printTable(esql.find(FIND_PLANE, input_plane_id));
 		System.out.print("\n");
 	   } catch(Exception e) {
 		System.err.println(e.getMessage());
@@ -724,8 +1513,7 @@ public class DBproject{
 		System.out.print("\n");
 		
 		//Input Pilot ID query and execute			
-		String query = "SELECT * FROM Pilot WHERE id =" +input_pilot_id+ ";";
-		esql.executeQueryAndPrintResult(query);
+		printTable(esql.find(FIND_PILOT, input_pilot_id));
 		System.out.print("\n");
 	   } catch(Exception e) {
 		System.err.println(e.getMessage());
@@ -740,8 +1528,7 @@ public class DBproject{
 		System.out.print("\n");
 		
 		//Input Technician ID query and execute			
-		String query = "SELECT * FROM Technician WHERE id =" +input_tech_id+ ";";
-		esql.executeQueryAndPrintResult(query);
+		printTable(esql.find(FIND_TECHNICIAN, input_tech_id));
 		System.out.print("\n");
 	   } catch(Exception e) {
 		System.err.println(e.getMessage());
@@ -756,8 +1543,7 @@ public class DBproject{
 		System.out.print("\n");
 	
 		//Input Flight Number query and execute				
-		String query = "SELECT * FROM Flight WHERE fnum =" +input_fnum+ ";";
-		esql.executeQueryAndPrintResult(query);
+		esql.executeQueryAndPrintResult(FIND_FLIGHT, input_fnum);
 		System.out.print("\n");
 	} catch(Exception e) {
 		System.err.println(e.getMessage());
@@ -772,8 +1558,7 @@ public class DBproject{
 		System.out.print("\n");
 	
 		//Input Flight Number query and execute				
-		String query = "SELECT * FROM Reservation WHERE rnum =" +input_rnum+ ";";
-		esql.executeQueryAndPrintResult(query);
+		esql.executeQueryAndPrintResult(FIND_RESERVATION, input_rnum);
 		System.out.print("\n");
 	} catch(Exception e) {
 		System.err.println(e.getMessage());
@@ -788,11 +1573,196 @@ public class DBproject{
 		System.out.print("\n");
 	
 		//Input Flight Number query and execute				
-		String query = "SELECT * FROM Customer WHERE id =" +input_cid+ ";";
-		esql.executeQueryAndPrintResult(query);
+		printTable(esql.find(FIND_CUSTOMER, input_cid));
 		System.out.print("\n");
 	} catch(Exception e) {
 		System.err.println(e.getMessage());
 	   }
 	}	
+	public static void VerifyReportSummaries(DBproject esql) {//17
+		// Check the summary tables behind options 7 to 10 against a full recount.
+	   try{
+		ResultTable diff = esql.executeQueryAndReturnTable(VERIFY_SUMMARIES);
+		if (diff.rowCount() == 0){
+			System.out.println("Report summaries match a full recompute.");
+			return;
+		}//end if
+		System.out.println("summary\tkey\tstored\trecomputed");
+		for (int r = 0; r < diff.rowCount(); ++r)
+			System.out.println(diff.getString(r, 0) + "\t" + diff.getString(r, 1) + "\t" +
+					diff.getString(r, 2) + "\t" + diff.getString(r, 3));
+		System.out.println(diff.rowCount() + " summary rows differ, rerun sql/create_aggregates.sql to rebuild them.");
+	   } catch(Exception e) {
+		System.err.println(e.getMessage());
+	   }
+	}
+	public static void ShowQueryMetrics(DBproject esql) {//18
+		// Print the latency of every operation and query since startup, optionally also as JSON.
+	   try{
+		esql.getMetrics().printReport(System.out);
+		for (EntityCache<Integer, ResultTable> cache : esql.getEntityCaches().values())
+			System.out.println(cache);
+		if (esql.getChanges() != null) System.out.println(esql.getChanges());
+		if (esql.getReplicas() != null) System.out.println(esql.getReplicas());
+		System.out.print("File to write the metrics to as JSON (empty to skip): ");
+		String file = in.readLine();
+		if (file != null && !file.trim().isEmpty()){
+			Writer out = new FileWriter(file.trim());
+			try{
+				out.write(esql.getMetrics().toJson());
+			}finally{
+				out.close();
+			}
+			System.out.println("Metrics written to " + file.trim());
+		}//end if
+	   } catch(Exception e) {
+		System.err.println(e.getMessage());
+	   }
+	}
+	public static void CancelReservation(DBproject esql) {//19
+		// Cancel a reservation; a freed seat goes to the oldest waitlisted passenger.
+	   try{
+		System.out.print("What is the Reservation Number?: ");
+		int input_rnum = Integer.parseInt(in.readLine());
+
+		WaitlistEngine.Cancellation cancellation = esql.cancelReservation(input_rnum);
+		if (cancellation == null) System.out.println("Reservation " + input_rnum + " is not reserved or waitlisted.");
+		else System.out.println(cancellation);
+	   } catch(Exception e) {
+		System.err.println(e.getMessage());
+	   }
+	}
+	public static void PromoteWaitlist(DBproject esql) {//20
+		// Move waitlisted passengers into free seats, for one flight or for all of them.
+	   try{
+		System.out.print("Please enter the flight number (empty for all flights): ");
+		String input_fn = in.readLine().trim();
+
+		long start = System.nanoTime();
+		int promoted = input_fn.isEmpty() ? esql.promoteWaitlist() : esql.promoteWaitlist(Integer.parseInt(input_fn));
+		System.out.println(String.format("%d waitlisted passenger(s) promoted in %.2f s", promoted, (System.nanoTime() - start) / 1e9));
+	   } catch(Exception e) {
+		System.err.println(e.getMessage());
+	   }
+	}
+	public static void BookGroup(DBproject esql) {//21
+		// Book every customer of a group on every flight of an itinerary, all or nothing.
+	   try{
+		System.out.print("Please enter the Customer IDs, separated by commas: ");
+		String[] input_cids = in.readLine().split(",");
+		System.out.print("Please enter the flight numbers of the itinerary, separated by commas: ");
+		String[] input_fns = in.readLine().split(",");
+
+		int[] cids = new int[input_cids.length * input_fns.length];
+		int[] fnums = new int[cids.length];
+		int pair = 0;
+		for (String fn : input_fns){
+			for (String cid : input_cids){
+				cids[pair] = Integer.parseInt(cid.trim());
+				fnums[pair++] = Integer.parseInt(fn.trim());
+			}
+		}
+		for (Booking booking : esql.bookGroup(cids, fnums))
+			System.out.println(booking);
+	   } catch(Exception e) {
+		System.err.println(e.getMessage());
+	   }
+	}
+	public static void FindRoutes(DBproject esql) {//22
+		// Find direct and connecting flights from one airport to another on a date.
+	   try{
+		System.out.print("Please enter departure airport code: ");
+		String input_from = in.readLine().trim();
+		System.out.print("Please enter arrival airport code: ");
+		String input_to = in.readLine().trim();
+		System.out.print("Please enter departure date (yyyy-mm-dd): ");
+		LocalDate input_date = LocalDate.parse(in.readLine().trim());
+		System.out.print("Please enter the most connections (0-" + RouteGraph.MAX_CONNECTIONS + "): ");
+		int input_connections = Integer.parseInt(in.readLine().trim());
+		System.out.print("Please enter the shortest layover in days: ");
+		int input_layover = Integer.parseInt(in.readLine().trim());
+		System.out.print("Please enter the number of seats needed: ");
+		int input_seats = Integer.parseInt(in.readLine().trim());
+
+		long start = System.nanoTime();
+		List<RouteGraph.Route> routes = esql.findRoutes(input_from, input_to, input_date, input_connections, input_layover, input_seats);
+		for (RouteGraph.Route route : routes)
+			System.out.println(route);
+		System.out.println(String.format("%d route(s) found in %.2f ms", routes.size(), (System.nanoTime() - start) / 1e6));
+	   } catch(Exception e) {
+		System.err.println(e.getMessage());
+	   }
+	}
+	public static void BrowseListing(DBproject esql) {//23
+		// Page through reservations of a customer or flight, flights of an airport or repairs of a plane.
+	   try{
+		System.out.println("1. Reservations of a customer");
+		System.out.println("2. Reservations of a flight");
+		System.out.println("3. Flights leaving an airport");
+		System.out.println("4. Flights arriving at an airport");
+		System.out.println("5. Repairs of a plane");
+		int input_listing = readChoice();
+		String input_key = null;
+		LocalDate input_from = null, input_to = null;
+		if (input_listing >= 1 && input_listing <= 5){
+			System.out.print(input_listing == 1 ? "Please enter customer ID: " : input_listing == 2 ? "Please enter flight number: " :
+					input_listing == 5 ? "Please enter plane ID: " : "Please enter airport code: ");
+			input_key = in.readLine().trim();
+		}//end if
+		if (input_listing >= 3 && input_listing <= 5){
+			System.out.print("Please enter the first date (yyyy-mm-dd): ");
+			input_from = LocalDate.parse(in.readLine().trim());
+			System.out.print("Please enter the last date (yyyy-mm-dd): ");
+			input_to = LocalDate.parse(in.readLine().trim());
+		}//end if
+
+		Listings listings = esql.getListings();
+		String cursor = null;
+		do{
+			Listings.Page page;
+			switch (input_listing){
+				case 1: page = listings.reservationsOfCustomer(Integer.parseInt(input_key), cursor, Listings.DEFAULT_PAGE_SIZE); break;
+				case 2: page = listings.reservationsOfFlight(Integer.parseInt(input_key), cursor, Listings.DEFAULT_PAGE_SIZE); break;
+				case 3: page = listings.flightsFrom(input_key, input_from, input_to, cursor, Listings.DEFAULT_PAGE_SIZE); break;
+				case 4: page = listings.flightsTo(input_key, input_from, input_to, cursor, Listings.DEFAULT_PAGE_SIZE); break;
+				case 5: page = listings.repairsOfPlane(Integer.parseInt(input_key), input_from, input_to, cursor, Listings.DEFAULT_PAGE_SIZE); break;
+				default: System.out.println("Unrecognized choice!"); return;
+			}
+			printTable(page.rows);
+			cursor = page.next;
+			if (cursor == null) break;
+			System.out.print("Show the next page? (y/n): ");
+		}while (in.readLine().trim().equalsIgnoreCase("y"));
+	   } catch(Exception e) {
+		System.err.println(e.getMessage());
+	   }
+	}
+	public static void ExportTables(DBproject esql) {//24
+		// Write tables and reports to files, one file per table, several at once.
+	   Exporter exporter = null;
+	   try{
+		System.out.println("Tables and reports: " + Exporter.SOURCES.keySet());
+		System.out.print("Please enter the names to export, comma separated (empty for all): ");
+		List<String> input_sources = new ArrayList<String>();
+		for (String name : in.readLine().split(","))
+			if (!name.trim().isEmpty()) input_sources.add(name.trim());
+		if (input_sources.isEmpty()) input_sources.addAll(Exporter.SOURCES.keySet());
+		System.out.print("Please enter the directory to write to: ");
+		File input_dir = new File(in.readLine().trim());
+		System.out.print("Please enter the format (" + Exporter.CSV + "/" + Exporter.JSONL + "): ");
+		String input_format = in.readLine().trim().toLowerCase();
+		System.out.print("Compress with gzip? (y/n): ");
+		boolean input_gzip = in.readLine().trim().equalsIgnoreCase("y");
+
+		if (!input_dir.isDirectory() && !input_dir.mkdirs()) throw new IOException("can not create " + input_dir);
+		exporter = new Exporter(esql, input_dir, input_format, input_gzip,
+				Math.min(input_sources.size(), esql.getPool().getMaxSize()));
+		for (Exporter.Result result : exporter.exportAll(input_sources))
+			System.out.println(result);
+	   } catch(Exception e) {
+		System.err.println(e.getMessage());
+	   } finally {
+		if (exporter != null) exporter.shutdown();
+	   }
+	}
 }
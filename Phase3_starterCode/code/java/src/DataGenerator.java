@@ -0,0 +1,625 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class writes a synthetic data set in the formats of the CSV files in
+ * code/data, ready for BulkLoader.  A scale factor from 1 to 10000 multiplies
+ * the row counts of the sample set; every key a row refers to exists.
+ *
+ * The data is skewed the way traffic is: airports and customers are drawn
+ * from Zipf distributions, so a few routes carry most flights and a few
+ * customers most reservations, flights on popular routes sell out more
+ * often, and a sold out flight puts later reservations on its waitlist.
+ * num_sold is the number of reserved seats of each flight and never exceeds
+ * the seats of its plane.
+ *
+ * Every row is drawn from a generator seeded by the seed, its table and its
+ * key, so the same seed and scale give the same files whatever the number
+ * of threads.  Tables are cut into chunks generated in parallel and written
+ * in order, with a bounded number of chunks in flight, so memory does not
+ * grow with the scale.
+ */
+
+public class DataGenerator{
+	public static final int MAX_SCALE = 10000;
+	//rows of the sample set per unit of scale
+	static final int CUSTOMERS = 250, PILOTS = 250, TECHNICIANS = 250, PLANES = 67, FLIGHTS = 2000, REPAIRS = 549;
+	//airports at scale 1, growing with the square root of the scale
+	static final int AIRPORTS = 200;
+	//five letter airport codes
+	static final long AIRPORT_CODES = 26L * 26 * 26 * 26 * 26;
+	//rows, or flights for reservations, per chunk
+	static final int CHUNK_ROWS = 8192;
+	//chunks generated ahead of the writer per thread
+	static final int CHUNKS_AHEAD = 2;
+
+	//flights depart over this many days from FIRST_DAY
+	static final LocalDate FIRST_DAY = LocalDate.of(2014, 1, 1);
+	static final int DAYS = 365;
+	//reservations per flight on an ordinary route
+	static final double MEAN_DEMAND = 3;
+	//share of the reservations made by frequent flyers, drawn from a Zipf distribution
+	static final double FREQUENT = 0.5;
+	//share of the flights of the most popular route that sell out
+	static final double SOLD_OUT = 0.05;
+	static final double CANCELLED = 0.1;
+	static final double DELAYED = 0.2;
+
+	//a generator per table, mixed into every row's seed
+	static final long CUSTOMER = 1, PILOT = 2, PLANE = 3, TECHNICIAN = 4, FLIGHT = 5, FLIGHTINFO = 6, RESERVATION = 7, REPAIR = 8;
+
+	static final String[] MALE = {"Armand", "Alberto", "Wyatt", "James", "John", "Robert", "Michael", "William", "David", "Richard",
+		"Joseph", "Thomas", "Carlos", "Daniel", "Matthew", "Anthony", "Mark", "Steven", "Paul", "Andrew", "Kenji", "Omar", "Ivan", "Luca"};
+	static final String[] FEMALE = {"Mary", "Patricia", "Jennifer", "Linda", "Elizabeth", "Barbara", "Susan", "Jessica", "Sarah", "Karen",
+		"Nancy", "Lisa", "Betty", "Margaret", "Sandra", "Ashley", "Emily", "Donna", "Michelle", "Carol", "Yuki", "Fatima", "Olga", "Giulia"};
+	static final String[] LAST = {"Enderle", "Scarlett", "Ruoff", "Smith", "Johnson", "Williams", "Brown", "Jones", "Garcia", "Miller",
+		"Davis", "Rodriguez", "Martinez", "Hernandez", "Lopez", "Gonzalez", "Wilson", "Anderson", "Taylor", "Moore", "Jackson", "Martin",
+		"Lee", "Perez", "Thompson", "White", "Harris", "Sanchez", "Clark", "Ramirez", "Lewis", "Robinson", "Walker", "Young", "Allen",
+		"King", "Wright", "Scott", "Nguyen", "Hill", "Tanaka", "Kowalski", "Rossi", "Muller", "Novak", "Silva", "Ivanov", "Chen"};
+	static final String[] STREETS = {"Chapel Drive", "Bald Hill Street", "Campfire Ave.", "Main Street", "Oak Lane", "Maple Avenue",
+		"Cedar Road", "Pine Street", "Elm Court", "Lake View Drive", "Sunset Blvd.", "River Road", "Hillside Ave.", "Park Place",
+		"Church Street", "Mill Road", "Valley Drive", "Highland Ave.", "Forest Lane", "Spring Street"};
+	//city, state and the first three digits of its zip codes
+	static final String[][] CITIES = {{"Melbourne", "FL", "329"}, {"Baton Rouge", "LA", "708"}, {"Cockeysville", "MD", "210"},
+		{"Riverside", "CA", "925"}, {"Los Angeles", "CA", "900"}, {"San Jose", "CA", "951"}, {"Seattle", "WA", "981"},
+		{"Portland", "OR", "972"}, {"Phoenix", "AZ", "850"}, {"Denver", "CO", "802"}, {"Dallas", "TX", "752"}, {"Houston", "TX", "770"},
+		{"Chicago", "IL", "606"}, {"Detroit", "MI", "482"}, {"Atlanta", "GA", "303"}, {"Miami", "FL", "331"}, {"Boston", "MA", "021"},
+		{"New York", "NY", "100"}, {"Philadelphia", "PA", "191"}, {"Columbus", "OH", "432"}};
+	static final String[] COUNTRIES = {"Argentina", "Australia", "Austria", "Belgium", "Brazil", "Canada", "China", "Colombia",
+		"Croatia", "Egypt", "France", "Germany", "Greece", "India", "Italy", "Japan", "Mexico", "Morocco", "New Zealand",
+		"South Africa", "Spain", "Turkey", "UK", "USA"};
+
+	/**
+	 * A plane model and its seats.
+	 */
+	static class Model{
+		final String make;
+		final String model;
+		final int seats;
+
+		Model(String make, String model, int seats) {
+			this.make = make;
+			this.model = model;
+			this.seats = seats;
+		}
+	}
+
+	static final Model[] MODELS = {
+		new Model("Airbus", "A319", 124), new Model("Airbus", "A320", 150), new Model("Airbus", "A321", 185),
+		new Model("Airbus", "A330-300", 277), new Model("Airbus", "A350-900", 315), new Model("Boeing", "737-700", 128),
+		new Model("Boeing", "737-800", 162), new Model("Boeing", "757-200", 200), new Model("Boeing", "767-300", 218),
+		new Model("Boeing", "777-300ER", 396), new Model("Boeing", "787-9", 290), new Model("Boeing", "747-400", 416),
+		new Model("Bombadier", "CRJ900", 76), new Model("Bombadier", "Q400", 74), new Model("Embraer", "E175", 76),
+		new Model("Embraer", "E190", 100), new Model("Comac", "C919", 158), new Model("ATR", "72-600", 70),
+	};
+
+	/**
+	 * A small, fast generator (SplitMix64), reseeded for every row.
+	 */
+	static class Rng{
+		private long _state;
+
+		Rng seed(long seed, long table, long key) {
+			this._state = mix(seed ^ mix(table * 0x9E3779B97F4A7C15L + key));
+			return this;
+		}
+
+		static long mix(long z) {
+			z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+			z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+			return z ^ (z >>> 31);
+		}
+
+		long next() {
+			return mix(this._state += 0x9E3779B97F4A7C15L);
+		}
+
+		int nextInt(int n) {
+			return (int) ((next() >>> 1) % n);
+		}
+
+		long nextLong(long n) {
+			return (next() >>> 1) % n;
+		}
+
+		double nextDouble() {
+			return (next() >>> 11) * 0x1.0p-53;
+		}
+
+		/**
+		 * @return a rank below n, rank k drawn about twice as often as rank 2k
+		 */
+		long zipf(long n) {
+			return Math.min(n - 1, (long) Math.exp(nextDouble() * Math.log(n + 1)) - 1);
+		}
+
+		/**
+		 * @return a count with a geometric distribution of the given mean
+		 */
+		int geometric(double mean) {
+			return (int) (Math.log(1 - nextDouble()) / Math.log(mean / (mean + 1)));
+		}
+	}
+
+	/**
+	 * A flight as drawn from its key, and what its reservations sold.
+	 */
+	static class Flight{
+		long departure, arrival;
+		//minutes after FIRST_DAY
+		long scheduled, duration, delay;
+		int stops, cost, pilot, plane, seats;
+		//how popular the route is, highest between the busiest airports
+		double popularity;
+		int sold, waitlisted;
+	}
+
+	/**
+	 * A CSV file, generated a chunk of keys at a time.
+	 */
+	abstract static class Table{
+		final String file;
+		final long keys;
+
+		Table(String file, long keys) {
+			this.file = file;
+			this.keys = keys;
+		}
+
+		/**
+		 * @return the rows of keys from to to, excluded
+		 */
+		long rows(long from, long to) {
+			return to - from;
+		}
+
+		/**
+		 * Appends the rows of keys from to to, excluded, numbering them from firstId.
+		 */
+		abstract void write(long from, long to, long firstId, StringBuilder out);
+	}
+
+	private final long _seed;
+	private final long _customers, _pilots, _technicians, _planes, _flights, _repairs, _airports;
+	//multipliers that scatter Zipf ranks over the keys
+	private final long _customerStride, _airportStride;
+	private final ExecutorService _workers;
+	private final int _threads;
+	private final AtomicLong _soldOut = new AtomicLong();
+	private final AtomicLong _waitlisted = new AtomicLong();
+
+	public DataGenerator(int scale, long seed, int threads) {
+		if (scale < 1 || scale > MAX_SCALE)
+			throw new IllegalArgumentException("scale must be between 1 and " + MAX_SCALE + ", not " + scale);
+		this._seed = seed;
+		this._customers = (long) CUSTOMERS * scale;
+		this._pilots = (long) PILOTS * scale;
+		this._technicians = (long) TECHNICIANS * scale;
+		this._planes = (long) PLANES * scale;
+		this._flights = (long) FLIGHTS * scale;
+		this._repairs = (long) REPAIRS * scale;
+		this._airports = Math.round(AIRPORTS * Math.sqrt(scale));
+		this._customerStride = stride(this._customers);
+		this._airportStride = stride(AIRPORT_CODES);
+		this._threads = threads;
+		this._workers = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * @return a multiplier coprime with n, which permutes 0 to n - 1
+	 */
+	static long stride(long n) {
+		long stride = (long) (n * 0.6180339887) | 1;
+		while (gcd(stride, n) != 1)
+			stride += 2;
+		return stride;
+	}
+
+	static long gcd(long a, long b) {
+		return b == 0 ? a : gcd(b, a % b);
+	}
+
+	/**
+	 * @return the tables in the order BulkLoader loads them
+	 */
+	List<Table> tables() {
+		List<Table> tables = new ArrayList<Table>();
+		tables.add(new Table("customer.csv", this._customers){
+			void write(long from, long to, long firstId, StringBuilder out) {
+				Rng r = new Rng();
+				for (long id = from; id < to; ++id)
+					customer(id, r.seed(_seed, CUSTOMER, id), out);
+			}
+		});
+		tables.add(new Table("pilots.csv", this._pilots){
+			void write(long from, long to, long firstId, StringBuilder out) {
+				Rng r = new Rng();
+				for (long id = from; id < to; ++id){
+					r.seed(_seed, PILOT, id);
+					out.append(id).append(',');
+					name(r, out).append(',').append(pick(r, COUNTRIES)).append('\n');
+				}//end for
+			}
+		});
+		tables.add(new Table("planes.csv", this._planes){
+			void write(long from, long to, long firstId, StringBuilder out) {
+				Rng r = new Rng();
+				for (long id = from; id < to; ++id){
+					Model model = model(r.seed(_seed, PLANE, id));
+					out.append(id).append(',').append(model.make).append(',').append(model.model).append(',')
+						.append(age(r)).append(',').append(model.seats).append('\n');
+				}//end for
+			}
+		});
+		tables.add(new Table("technician.csv", this._technicians){
+			void write(long from, long to, long firstId, StringBuilder out) {
+				Rng r = new Rng();
+				for (long id = from; id < to; ++id){
+					out.append(id).append(',');
+					name(r.seed(_seed, TECHNICIAN, id), out).append('\n');
+				}//end for
+			}
+		});
+		tables.add(new Table("flights.csv", this._flights){
+			void write(long from, long to, long firstId, StringBuilder out) {
+				Rng r = new Rng();
+				Flight f = new Flight();
+				long soldOut = 0, waitlisted = 0;
+				for (long fnum = from; fnum < to; ++fnum){
+					flight(fnum, r, f);
+					book(fnum, r, f, 0, null);
+					if (f.sold == f.seats) ++soldOut;
+					waitlisted += f.waitlisted;
+					out.append(fnum).append(',').append(f.cost).append(',').append(f.sold).append(',').append(f.stops).append(',');
+					minute(out, f.scheduled + f.delay).append(',');
+					minute(out, f.scheduled + f.delay + f.duration).append(',');
+					airport(out, f.arrival).append(',');
+					airport(out, f.departure).append('\n');
+				}//end for
+				_soldOut.addAndGet(soldOut);
+				_waitlisted.addAndGet(waitlisted);
+			}
+		});
+		tables.add(new Table("reservation.csv", this._flights){
+			long rows(long from, long to) {
+				Rng r = new Rng();
+				Flight f = new Flight();
+				long rows = 0;
+				for (long fnum = from; fnum < to; ++fnum){
+					flight(fnum, r, f);
+					rows += book(fnum, r, f, 0, null);
+				}//end for
+				return rows;
+			}
+
+			void write(long from, long to, long firstId, StringBuilder out) {
+				Rng r = new Rng();
+				Flight f = new Flight();
+				for (long fnum = from; fnum < to; ++fnum){
+					flight(fnum, r, f);
+					firstId += book(fnum, r, f, firstId, out);
+				}//end for
+			}
+		});
+		tables.add(new Table("flightinfo.csv", this._flights){
+			void write(long from, long to, long firstId, StringBuilder out) {
+				Rng r = new Rng();
+				Flight f = new Flight();
+				for (long fnum = from; fnum < to; ++fnum){
+					flight(fnum, r, f);
+					out.append(fnum).append(',').append(fnum).append(',').append(f.pilot).append(',').append(f.plane).append('\n');
+				}//end for
+			}
+		});
+		tables.add(new Table("repairs.csv", this._repairs){
+			void write(long from, long to, long firstId, StringBuilder out) {
+				Rng r = new Rng();
+				Rng plane = new Rng();
+				for (long rid = from; rid < to; ++rid){
+					r.seed(_seed, REPAIR, rid);
+					//older planes are repaired more often
+					long a = r.nextLong(_planes), b = r.nextLong(_planes);
+					model(plane.seed(_seed, PLANE, a));
+					int ageA = age(plane);
+					model(plane.seed(_seed, PLANE, b));
+					long planeId = ageA >= age(plane) ? a : b;
+					double code = r.nextDouble();
+					out.append(rid).append(',');
+					day(out, r.nextInt(DAYS)).append(',');
+					out.append(code < 0.15 ? "MJ" : code < 0.45 ? "MN" : "SV").append(',')
+						.append(r.nextLong(_pilots)).append(',');
+					out.append(planeId).append(',').append(r.nextLong(_technicians)).append('\n');
+				}//end for
+			}
+		});
+		tables.add(new Table("schedule.csv", this._flights){
+			void write(long from, long to, long firstId, StringBuilder out) {
+				Rng r = new Rng();
+				Flight f = new Flight();
+				for (long fnum = from; fnum < to; ++fnum){
+					flight(fnum, r, f);
+					out.append(fnum).append(',').append(fnum).append(',');
+					minute(out, f.scheduled).append(',');
+					minute(out, f.scheduled + f.duration).append('\n');
+				}//end for
+			}
+		});
+		return tables;
+	}//end tables
+
+	/**
+	 * Method to write every table into a directory.
+	 *
+	 * @throws java.lang.Exception when a file could not be written
+	 */
+	public void generate(File dir) throws Exception {
+		long start = System.nanoTime();
+		long rows = 0, bytes = 0;
+		for (Table table : tables()){
+			rows += writeTable(table, dir);
+			bytes += new File(dir, table.file).length();
+		}//end for
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-16s %12d rows %10.2f s %14.0f rows/s %10.2f MB/s",
+				"total", rows, seconds, rows / seconds, bytes / seconds / (1 << 20)));
+		System.out.println(String.format("%d of %d flights sold out, %d reservations waitlisted",
+				this._soldOut.get(), this._flights, this._waitlisted.get()));
+	}//end generate
+
+	/**
+	 * Generates the chunks of a table in parallel and writes them in order,
+	 * at most CHUNKS_AHEAD per thread ahead of the file.
+	 *
+	 * @return the number of rows written
+	 */
+	long writeTable(final Table table, File dir) throws Exception {
+		long start = System.nanoTime();
+		final long[] firstIds = firstIds(table);
+		int chunks = firstIds.length - 1;
+		File file = new File(dir, table.file);
+		OutputStream out = new FileOutputStream(file);
+		try{
+			ArrayDeque<Future<byte[]>> pending = new ArrayDeque<Future<byte[]>>();
+			for (int c = 0; c < chunks; ++c){
+				if (pending.size() == this._threads * CHUNKS_AHEAD) out.write(get(pending.poll()));
+				final long from = (long) c * CHUNK_ROWS, to = Math.min(table.keys, from + CHUNK_ROWS), firstId = firstIds[c];
+				pending.add(this._workers.submit(new Callable<byte[]>(){
+					public byte[] call() {
+						StringBuilder rows = new StringBuilder(CHUNK_ROWS * 64);
+						table.write(from, to, firstId, rows);
+						return rows.toString().getBytes(StandardCharsets.US_ASCII);
+					}
+				}));
+			}//end for
+			while (!pending.isEmpty())
+				out.write(get(pending.poll()));
+		}finally{
+			out.close();
+		}
+		long rows = firstIds[chunks];
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.out.println(String.format("%-16s %12d rows %10.2f s %14.0f rows/s %10.2f MB/s",
+				table.file, rows, seconds, rows / seconds, file.length() / seconds / (1 << 20)));
+		return rows;
+	}//end writeTable
+
+	/**
+	 * Counts the rows of every chunk of a table in parallel.
+	 *
+	 * @return the id of the first row of every chunk, then the number of rows
+	 */
+	long[] firstIds(final Table table) throws Exception {
+		int chunks = (int) ((table.keys + CHUNK_ROWS - 1) / CHUNK_ROWS);
+		List<Future<Long>> counts = new ArrayList<Future<Long>>();
+		for (int c = 0; c < chunks; ++c){
+			final long from = (long) c * CHUNK_ROWS, to = Math.min(table.keys, from + CHUNK_ROWS);
+			counts.add(this._workers.submit(new Callable<Long>(){
+				public Long call() {
+					return table.rows(from, to);
+				}
+			}));
+		}//end for
+		long[] firstIds = new long[chunks + 1];
+		for (int c = 0; c < chunks; ++c)
+			firstIds[c + 1] = firstIds[c] + get(counts.get(c));
+		//keys are INTEGER
+		if (firstIds[chunks] > Integer.MAX_VALUE)
+			throw new IllegalArgumentException(table.file + " would hold " + firstIds[chunks] + " rows, more than an INTEGER key can number");
+		return firstIds;
+	}
+
+	private static <T> T get(Future<T> future) throws Exception {
+		try{
+			return future.get();
+		}catch (ExecutionException e){
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
+		}//end try
+	}
+
+	/**
+	 * Draws a flight: its route, times and price from the flight's
+	 * generator, its pilot and plane from its flight info's.
+	 */
+	void flight(long fnum, Rng r, Flight f) {
+		r.seed(this._seed, FLIGHT, fnum);
+		f.departure = r.zipf(this._airports);
+		//as skewed as the departure, but elsewhere
+		f.arrival = r.zipf(this._airports - 1);
+		if (f.arrival >= f.departure) ++f.arrival;
+		f.popularity = 2 / (2 + Math.sqrt(f.departure) + Math.sqrt(f.arrival));
+		double stops = r.nextDouble();
+		f.stops = stops < 0.6 ? 0 : stops < 0.85 ? 1 : stops < 0.95 ? 2 : 3;
+		f.scheduled = r.nextInt(DAYS) * 24L * 60 + r.nextInt(24 * 12) * 5;
+		f.duration = 45 + r.nextInt(6 * 60) + f.stops * (45 + r.nextInt(90));
+		f.delay = r.nextDouble() < DELAYED ? 5 + r.nextInt(180) : 0;
+		f.cost = (int) (50 + f.duration / 3 + r.nextInt(200) + 200 * f.popularity);
+		r.seed(this._seed, FLIGHTINFO, fnum);
+		f.pilot = (int) r.nextLong(this._pilots);
+		f.plane = (int) r.nextLong(this._planes);
+		f.seats = model(r.seed(this._seed, PLANE, f.plane)).seats;
+	}
+
+	/**
+	 * Draws the reservations of a flight in booking order: a cancelled one
+	 * holds no seat, and once the seats are reserved the rest go on the
+	 * waitlist.  A flight that sells out takes reservations until its
+	 * waitlist is full as well.  Sets the flight's sold and waitlisted.
+	 *
+	 * @param out where the rows go, numbered from firstRnum, or null to only count them
+	 * @return the number of reservations
+	 */
+	int book(long fnum, Rng r, Flight f, long firstRnum, StringBuilder out) {
+		r.seed(this._seed, RESERVATION, fnum);
+		int waitlist = r.nextDouble() < SOLD_OUT * f.popularity ? 1 + r.nextInt(f.seats / 10 + 1) : 0;
+		int demand = waitlist > 0 ? Integer.MAX_VALUE : r.geometric(MEAN_DEMAND * (1 + 2 * f.popularity));
+		f.sold = 0;
+		f.waitlisted = 0;
+		int rows = 0;
+		for (; rows < demand && (waitlist == 0 || f.waitlisted < waitlist); ++rows){
+			long cid = r.nextDouble() < FREQUENT ? r.zipf(this._customers) * this._customerStride % this._customers
+					: r.nextLong(this._customers);
+			char status;
+			if (r.nextDouble() < CANCELLED) status = 'C';
+			else if (f.sold < f.seats){
+				status = 'R';
+				++f.sold;
+			}else{
+				status = 'W';
+				++f.waitlisted;
+			}//end if
+			if (out != null)
+				out.append(firstRnum + rows).append(',').append(cid).append(',').append(fnum).append(',').append(status).append('\n');
+		}//end for
+		return rows;
+	}//end book
+
+	void customer(long id, Rng r, StringBuilder out) {
+		boolean male = r.nextInt(2) == 0;
+		String[] city = pick(r, CITIES);
+		out.append(id).append(',').append(pick(r, male ? MALE : FEMALE)).append(',').append(pick(r, LAST)).append(',')
+			.append(male ? 'M' : 'F').append(',');
+		out.append(1 + r.nextInt(12)).append('/').append(1 + r.nextInt(28)).append('/').append(1940 + r.nextInt(60)).append(',');
+		out.append(100 + r.nextInt(9900)).append(' ').append(pick(r, STREETS)).append(' ').append(city[0]).append(',');
+		pad(out.append(2 + r.nextInt(8)), r.nextInt(1000000000), 9).append(',');
+		//the zip code column holds the state too, the way the sample splits it
+		pad(out.append(' ').append(city[1]).append(' ').append(city[2]), r.nextInt(100), 2).append('\n');
+	}
+
+	static <T> T pick(Rng r, T[] values) {
+		return values[r.nextInt(values.length)];
+	}
+
+	static StringBuilder name(Rng r, StringBuilder out) {
+		return out.append(pick(r, r.nextInt(2) == 0 ? MALE : FEMALE)).append(' ').append(pick(r, LAST));
+	}
+
+	/**
+	 * @return the model of a plane, the first draw of its generator
+	 */
+	static Model model(Rng r) {
+		return pick(r, MODELS);
+	}
+
+	/**
+	 * @return the age of a plane, the draw after its model
+	 */
+	static int age(Rng r) {
+		return r.nextInt(31);
+	}
+
+	/**
+	 * Appends the code of the airport of a rank, a distinct five letter code
+	 * for every rank.
+	 */
+	StringBuilder airport(StringBuilder out, long rank) {
+		long code = (rank * this._airportStride + AIRPORT_CODES / 3) % AIRPORT_CODES;
+		char[] letters = new char[5];
+		for (int i = letters.length - 1; i >= 0; --i){
+			letters[i] = (char) ('A' + code % 26);
+			code /= 26;
+		}//end for
+		return out.append(letters);
+	}
+
+	static StringBuilder day(StringBuilder out, long day) {
+		LocalDate date = FIRST_DAY.plusDays(day);
+		out.append(date.getYear()).append('-');
+		return pad(pad(out, date.getMonthValue(), 2).append('-'), date.getDayOfMonth(), 2);
+	}
+
+	/**
+	 * Appends a time in minutes after FIRST_DAY as yyyy-mm-dd hh:mm.
+	 */
+	static StringBuilder minute(StringBuilder out, long minute) {
+		day(out, minute / (24 * 60)).append(' ');
+		return pad(pad(out, minute / 60 % 24, 2).append(':'), minute % 60, 2);
+	}
+
+	static StringBuilder pad(StringBuilder out, long value, int width) {
+		String digits = Long.toString(value);
+		for (int i = digits.length(); i < width; ++i)
+			out.append('0');
+		return out.append(digits);
+	}
+
+	public void shutdown() {
+		this._workers.shutdownNow();
+	}
+
+	/**
+	 * The data generator entry point
+	 *
+	 * @param args <out dir> [scale] [seed] [threads]
+	 */
+	public static void main (String[] args) {
+		if (args.length < 1) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + DataGenerator.class.getName () +
+		            " <out dir> [scale 1-" + MAX_SCALE + "] [seed] [threads]");
+			return;
+		}//end if
+
+		DataGenerator generator = null;
+		try{
+			File dir = new File(args[0]);
+			int scale = args.length > 1 ? Integer.parseInt(args[1]) : 1;
+			long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+			int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+			if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("can not create " + dir);
+			generator = new DataGenerator(scale, seed, threads);
+			generator.generate(dir);
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			if (generator != null) generator.shutdown();
+		}
+	}
+}
@@ -0,0 +1,227 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class is a read-through cache of rows keyed by primary key, for
+ * tables that are read far more often than they change, such as Plane,
+ * Pilot, Technician and Customer.  A miss loads the row through the
+ * cache's Loader; keys without a row are cached as absent too, so asking
+ * for a missing id repeatedly does not reach the database either.
+ *
+ * Entries are evicted least recently used first once the cache is full
+ * and, when a time to live is set, expire that long after they were
+ * loaded.  Writes made by this process invalidate the keys they touch,
+ * and so does a ChangeListener for writes of other processes; without one
+ * the time to live bounds how stale those rows can get.
+ */
+
+public class EntityCache<K, V>{
+	//default number of entries kept per cache
+	public static final int DEFAULT_CAPACITY = 10000;
+	//default time an entry is served before it is loaded again, 0 keeps it until evicted
+	public static final long DEFAULT_TTL_MILLIS = 300000;
+
+	/**
+	 * Loads entities from the database.
+	 */
+	public interface Loader<K, V>{
+		/**
+		 * @return the entity with the given key, or null when there is none
+		 */
+		V load(K key) throws SQLException;
+
+		/**
+		 * @return up to limit entities of the table by key, for preloading
+		 */
+		Map<K, V> loadAll(int limit) throws SQLException;
+	}
+
+	/**
+	 * A cached entity, or a cached absence when value is null.
+	 */
+	private static class Entry<V>{
+		final V value;
+		final long loadedAt;
+
+		Entry(V value, long loadedAt) {
+			this.value = value;
+			this.loadedAt = loadedAt;
+		}
+	}
+
+	private final String _name;
+	private final Loader<K, V> _loader;
+	private final int _capacity;
+	private final long _ttlNanos;
+	private final LinkedHashMap<K, Entry<V>> _entries;
+	//bumped by every invalidation, a load that raced with one is not cached
+	private long _writes = 0;
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _misses = new AtomicLong();
+	private final AtomicLong _evictions = new AtomicLong();
+	private final AtomicLong _loadNanos = new AtomicLong();
+
+	/**
+	 * @param name shown in the statistics
+	 * @param capacity the number of entries kept
+	 * @param ttlMillis how long an entry is served, 0 for no limit
+	 */
+	public EntityCache(String name, Loader<K, V> loader, final int capacity, long ttlMillis) {
+		this._name = name;
+		this._loader = loader;
+		this._capacity = capacity;
+		this._ttlNanos = ttlMillis * 1000000L;
+		this._entries = new LinkedHashMap<K, Entry<V>>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+				if (size() <= capacity) return false;
+				_evictions.incrementAndGet();
+				return true;
+			}
+		};
+	}
+
+	/**
+	 * Method to look up an entity, loading it on a miss.
+	 *
+	 * @param key the primary key
+	 * @return the entity, or null when the table has no row with that key
+	 * @throws java.sql.SQLException when the entity could not be loaded
+	 */
+	public V get(K key) throws SQLException {
+		long writes;
+		synchronized (this){
+			Entry<V> entry = this._entries.get(key);
+			if (entry != null && !expired(entry)){
+				this._hits.incrementAndGet();
+				return entry.value;
+			}//end if
+			writes = this._writes;
+		}
+		this._misses.incrementAndGet();
+		long start = System.nanoTime();
+		V value = this._loader.load(key);
+		long loaded = System.nanoTime();
+		this._loadNanos.addAndGet(loaded - start);
+		synchronized (this){
+			if (writes == this._writes) this._entries.put(key, new Entry<V>(value, loaded));
+		}
+		return value;
+	}
+
+	private boolean expired(Entry<V> entry) {
+		return this._ttlNanos > 0 && System.nanoTime() - entry.loadedAt > this._ttlNanos;
+	}
+
+	/**
+	 * Method to load every entity of the table into the cache, up to its
+	 * capacity.
+	 *
+	 * @return the number of entities loaded
+	 * @throws java.sql.SQLException when the entities could not be loaded
+	 */
+	public int preload() throws SQLException {
+		long writes = writes();
+		long start = System.nanoTime();
+		Map<K, V> all = this._loader.loadAll(this._capacity);
+		this._loadNanos.addAndGet(System.nanoTime() - start);
+		return preload(all, writes);
+	}
+
+	/**
+	 * Method to fill the cache with entities read elsewhere, e.g. from a
+	 * ReferenceSnapshot that is current with the database.
+	 *
+	 * @param entities the entities by key
+	 * @return the number of entities loaded
+	 */
+	public int preload(Map<K, V> entities) {
+		return preload(entities, writes());
+	}
+
+	private synchronized int preload(Map<K, V> entities, long writes) {
+		//entities read before an invalidation may be stale
+		if (writes != this._writes) return 0;
+		long loaded = System.nanoTime();
+		for (Map.Entry<K, V> e : entities.entrySet())
+			this._entries.put(e.getKey(), new Entry<V>(e.getValue(), loaded));
+		return entities.size();
+	}
+
+	/**
+	 * Drops a key after its row was inserted, changed or deleted.
+	 */
+	public synchronized void invalidate(K key) {
+		++this._writes;
+		this._entries.remove(key);
+	}
+
+	/**
+	 * Drops every entry.
+	 */
+	public synchronized void clear() {
+		++this._writes;
+		this._entries.clear();
+	}
+
+	private synchronized long writes() {
+		return this._writes;
+	}
+
+	public String getName() {
+		return this._name;
+	}
+
+	public int getCapacity() {
+		return this._capacity;
+	}
+
+	public long getHits() {
+		return this._hits.get();
+	}
+
+	public long getMisses() {
+		return this._misses.get();
+	}
+
+	public long getEvictions() {
+		return this._evictions.get();
+	}
+
+	/**
+	 * @return the total time spent loading entities, in nanoseconds
+	 */
+	public long getLoadNanos() {
+		return this._loadNanos.get();
+	}
+
+	public double getHitRatio() {
+		long hits = getHits(), misses = getMisses();
+		return hits + misses == 0 ? 0.0 : (double) hits / (hits + misses);
+	}
+
+	public synchronized int size() {
+		return this._entries.size();
+	}
+
+	public String toString() {
+		return String.format("%s cache: %d entries, %d hits, %d misses, %.1f%% hit ratio, %d evictions, %.1f ms loading",
+				this._name, size(), getHits(), getMisses(), 100.0 * getHitRatio(), getEvictions(), getLoadNanos() / 1e6);
+	}
+}
@@ -0,0 +1,365 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.GZIPOutputStream;
+
+
+/**
+ * This class exports tables and reports to files, as CSV or as JSON Lines,
+ * optionally gzip compressed.  Rows are streamed from a server side cursor
+ * through executeQueryStreaming and written through a large buffer onto a
+ * file channel, so no result is held in memory whatever its size.  Several
+ * exports run in parallel, each on its own pooled connection, and each
+ * reports its rows/s and MB/s.
+ *
+ * CSV follows RFC 4180: a header line, fields quoted when they hold a
+ * comma, a quote or a line break, nulls as empty fields.  JSON Lines has
+ * one object per row keyed by column name, numbers unquoted.  CHAR padding
+ * is trimmed in both.
+ */
+
+public class Exporter{
+	//tables and reports exported at once when no thread count is given
+	public static final int DEFAULT_THREADS = 8;
+	//bytes buffered before they are handed to the compressor or the channel
+	static final int WRITE_BUFFER_SIZE = 1 << 16;
+
+	public static final String CSV = "csv";
+	public static final String JSONL = "jsonl";
+
+	//what can be exported by name: the tables and the summary reports
+	static final Map<String, String> SOURCES = new LinkedHashMap<String, String>();
+	static{
+		for (String table : new String[]{"Customer", "Pilot", "Plane", "Technician", "Flight",
+				"Reservation", "FlightInfo", "Repairs", "Schedule"})
+			SOURCES.put(table, "SELECT * FROM " + table);
+		SOURCES.put("RepairsPerPlane", DBproject.REPAIRS_PER_PLANE);
+		SOURCES.put("RepairsPerYear", DBproject.REPAIRS_PER_YEAR);
+		SOURCES.put("ReservationStatusCount", "SELECT * FROM ReservationStatusCount ORDER BY fid, status");
+		SOURCES.put("PassengersInAllStatus", DBproject.PASSENGERS_IN_ALL_STATUS);
+	}
+
+	/**
+	 * The outcome of one export.
+	 */
+	public static class Result{
+		public final String source;
+		public final File file;
+		public final long rows;
+		//bytes before compression and bytes in the file
+		public final long bytes;
+		public final long fileBytes;
+		public final long nanos;
+
+		Result(String source, File file, long rows, long bytes, long fileBytes, long nanos) {
+			this.source = source;
+			this.file = file;
+			this.rows = rows;
+			this.bytes = bytes;
+			this.fileBytes = fileBytes;
+			this.nanos = nanos;
+		}
+
+		public String toString() {
+			double seconds = this.nanos / 1e9;
+			return String.format("%-24s %12d rows %10.2f s %14.0f rows/s %10.2f MB/s %10.2f MB %s",
+					this.source, this.rows, seconds, this.rows / seconds, this.bytes / seconds / (1 << 20),
+					this.fileBytes / (double) (1 << 20), this.file.getName());
+		}
+	}
+
+	/**
+	 * Counts the bytes written through it.
+	 */
+	static class CountingOutputStream extends FilterOutputStream{
+		long count = 0;
+
+		CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		public void write(int b) throws IOException {
+			this.out.write(b);
+			++this.count;
+		}
+
+		public void write(byte[] b, int off, int len) throws IOException {
+			this.out.write(b, off, len);
+			this.count += len;
+		}
+	}
+
+	private final DBproject _esql;
+	private final File _dir;
+	private final String _format;
+	private final boolean _gzip;
+	private final ExecutorService _workers;
+
+	/**
+	 * @param dir the directory the files are written to
+	 * @param format CSV or JSONL
+	 * @param gzip whether the files are gzip compressed
+	 * @param threads the exports run at once, at most the size of the connection pool
+	 */
+	public Exporter(DBproject esql, File dir, String format, boolean gzip, int threads) {
+		if (!format.equals(CSV) && !format.equals(JSONL)) throw new IllegalArgumentException("unknown format: " + format);
+		this._esql = esql;
+		this._dir = dir;
+		this._format = format;
+		this._gzip = gzip;
+		this._workers = Executors.newFixedThreadPool(threads);
+	}
+
+	/**
+	 * Method to export sources in parallel, one file per source.
+	 *
+	 * @param sources names of SOURCES
+	 * @return the outcome of each export, in the order given
+	 * @throws java.lang.Exception when an export failed
+	 */
+	public List<Result> exportAll(List<String> sources) throws Exception {
+		List<Future<Result>> pending = new ArrayList<Future<Result>>();
+		for (final String source : sources){
+			if (!SOURCES.containsKey(source)) throw new IllegalArgumentException("unknown table or report: " + source);
+			pending.add(this._workers.submit(new Callable<Result>(){
+				public Result call() throws Exception {
+					return export(source, SOURCES.get(source));
+				}
+			}));
+		}//end for
+		List<Result> results = new ArrayList<Result>();
+		try{
+			for (Future<Result> f : pending)
+				results.add(f.get());
+		}catch (ExecutionException e){
+			if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+			throw e;
+		}//end try
+		return results;
+	}
+
+	/**
+	 * Method to export the rows of a query to &lt;dir&gt;/&lt;name&gt;.&lt;format&gt;[.gz].
+	 *
+	 * @param name the name of the file
+	 * @param query the query, optionally with '?' placeholders
+	 * @param params the values bound to the placeholders
+	 * @return the outcome of the export
+	 * @throws java.sql.SQLException when the query failed
+	 * @throws java.io.IOException when the file could not be written
+	 */
+	public Result export(String name, String query, Object... params) throws SQLException, IOException {
+		File file = new File(this._dir, name + "." + this._format + (this._gzip ? ".gz" : ""));
+		long start = System.nanoTime();
+		FileChannel channel = FileChannel.open(file.toPath(),
+				StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		final CountingOutputStream counted;
+		final Writer out;
+		try{
+			OutputStream stream = Channels.newOutputStream(channel);
+			stream = this._gzip ? new GZIPOutputStream(stream, WRITE_BUFFER_SIZE) : new BufferedOutputStream(stream, WRITE_BUFFER_SIZE);
+			counted = new CountingOutputStream(stream);
+			out = new BufferedWriter(new OutputStreamWriter(counted, StandardCharsets.UTF_8), WRITE_BUFFER_SIZE);
+		}catch (IOException e){
+			channel.close();
+			throw e;
+		}//end try
+		int rows;
+		try{
+			final boolean csv = this._format.equals(CSV);
+			rows = this._esql.executeQueryStreaming(query, new DBproject.ColumnHandler(){
+				String[] names;
+				boolean[] numeric;
+
+				//before the first row, so an empty result still gets its CSV header
+				public void columns(ResultSetMetaData rsmd) throws SQLException {
+					//a read retried on the primary has the same columns
+					if (this.names != null) return;
+					try{
+						init(rsmd);
+					}catch (IOException e){
+						throw new UncheckedIOException(e);
+					}//end try
+				}
+
+				public void row(ResultSet rs) throws SQLException {
+					try{
+						if (csv) csvRow(rs);
+						else jsonRow(rs);
+					}catch (IOException e){
+						throw new UncheckedIOException(e);
+					}//end try
+				}
+
+				private void init(ResultSetMetaData rsmd) throws SQLException, IOException {
+					this.names = new String[rsmd.getColumnCount()];
+					this.numeric = new boolean[this.names.length];
+					for (int c = 0; c < this.names.length; ++c){
+						this.names[c] = rsmd.getColumnName(c + 1);
+						this.numeric[c] = isNumeric(rsmd.getColumnType(c + 1));
+					}//end for
+					if (!csv) return;
+					for (int c = 0; c < this.names.length; ++c){
+						if (c > 0) out.write(',');
+						writeCsv(out, this.names[c]);
+					}//end for
+					out.write("\r\n");
+				}
+
+				private void csvRow(ResultSet rs) throws SQLException, IOException {
+					for (int c = 0; c < this.names.length; ++c){
+						if (c > 0) out.write(',');
+						String value = rs.getString(c + 1);
+						if (value != null) writeCsv(out, trimEnd(value));
+					}//end for
+					out.write("\r\n");
+				}
+
+				private void jsonRow(ResultSet rs) throws SQLException, IOException {
+					out.write('{');
+					for (int c = 0; c < this.names.length; ++c){
+						if (c > 0) out.write(',');
+						Json.quote(out, this.names[c]);
+						out.write(':');
+						String value = rs.getString(c + 1);
+						if (value == null) out.write("null");
+						else if (this.numeric[c]) out.write(value);
+						else Json.quote(out, trimEnd(value));
+					}//end for
+					out.write("}\n");
+				}
+			}, params);
+		}catch (UncheckedIOException e){
+			throw e.getCause();
+		}finally{
+			//closes the channel too, after a failure the partial file is left behind
+			out.close();
+		}
+		return new Result(name, file, rows, counted.count, file.length(), System.nanoTime() - start);
+	}//end export
+
+	static boolean isNumeric(int type) {
+		switch (type){
+			case Types.SMALLINT: case Types.INTEGER: case Types.BIGINT:
+			case Types.REAL: case Types.FLOAT: case Types.DOUBLE:
+			case Types.NUMERIC: case Types.DECIMAL:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	static String trimEnd(String value) {
+		int end = value.length();
+		while (end > 0 && value.charAt(end - 1) == ' ')
+			--end;
+		return end == value.length() ? value : value.substring(0, end);
+	}
+
+	static void writeCsv(Writer out, String value) throws IOException {
+		boolean quoted = false;
+		for (int i = 0; i < value.length() && !quoted; ++i){
+			char ch = value.charAt(i);
+			quoted = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+		}//end for
+		if (!quoted){
+			out.write(value);
+			return;
+		}//end if
+		out.write('"');
+		for (int i = 0; i < value.length(); ++i){
+			char ch = value.charAt(i);
+			if (ch == '"') out.write('"');
+			out.write(ch);
+		}//end for
+		out.write('"');
+	}
+
+	public void shutdown() {
+		this._workers.shutdown();
+	}
+
+	/**
+	 * The export entry point
+	 *
+	 * @param args <dbname> <port> <user> <dir> [csv|jsonl] [gzip] [threads] [table or report...]
+	 */
+	public static void main (String[] args) {
+		if (args.length < 4) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + Exporter.class.getName () +
+		            " <dbname> <port> <user> <dir> [csv|jsonl] [gzip] [threads] [table or report...]");
+			System.err.println ("Tables and reports: " + SOURCES.keySet ());
+			return;
+		}//end if
+
+		DBproject esql = null;
+		Exporter exporter = null;
+		try{
+			Class.forName("org.postgresql.Driver");
+			File dir = new File(args[3]);
+			String format = args.length > 4 ? args[4] : CSV;
+			boolean gzip = args.length > 5 && Boolean.parseBoolean(args[5]);
+			List<String> sources = new ArrayList<String>();
+			for (int i = 7; i < args.length; ++i)
+				sources.add(args[i]);
+			if (sources.isEmpty()) sources.addAll(SOURCES.keySet());
+			int threads = args.length > 6 ? Integer.parseInt(args[6]) : Math.min(sources.size(), DEFAULT_THREADS);
+
+			if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("can not create " + dir);
+			esql = new DBproject(args[0], args[1], args[2], "", threads);
+			exporter = new Exporter(esql, dir, format, gzip, threads);
+			long start = System.nanoTime();
+			long rows = 0, bytes = 0;
+			for (Result result : exporter.exportAll(sources)){
+				System.out.println(result);
+				rows += result.rows;
+				bytes += result.bytes;
+			}//end for
+			double seconds = (System.nanoTime() - start) / 1e9;
+			System.out.println(String.format("%-24s %12d rows %10.2f s %14.0f rows/s %10.2f MB/s",
+					"total", rows, seconds, rows / seconds, bytes / seconds / (1 << 20)));
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}finally{
+			if (exporter != null) exporter.shutdown();
+			if (esql != null) esql.cleanup();
+		}
+	}
+}
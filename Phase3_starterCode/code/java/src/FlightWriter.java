@@ -0,0 +1,140 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+
+
+/**
+ * This class creates flights.  The Flight, FlightInfo and Schedule rows of
+ * every flight are written in one transaction with JDBC batches, so either
+ * all three rows exist or none do.  A list of flights, such as a season's
+ * schedule import, costs a few round trips per BATCH_SIZE flights instead
+ * of six per flight.
+ *
+ */
+
+public class FlightWriter{
+	//flights sent to the server per executeBatch
+	static final int BATCH_SIZE = 500;
+
+	/**
+	 * The user supplied columns of a flight to create.  Dates are given as
+	 * text in any format Postgres accepts, e.g. "2014-05-01 16:45".
+	 */
+	public static class NewFlight{
+		public final int cost;
+		public final int numSold;
+		public final int numStops;
+		public final String departure;
+		public final String arrival;
+		public final String arrivalAirport;
+		public final String departureAirport;
+		public final int pilotId;
+		public final int planeId;
+
+		public NewFlight(int cost, int numSold, int numStops, String departure, String arrival,
+				String arrivalAirport, String departureAirport, int pilotId, int planeId) {
+			this.cost = cost;
+			this.numSold = numSold;
+			this.numStops = numStops;
+			this.departure = departure;
+			this.arrival = arrival;
+			this.arrivalAirport = arrivalAirport;
+			this.departureAirport = departureAirport;
+			this.pilotId = pilotId;
+			this.planeId = planeId;
+		}
+	}
+
+	private final DBproject _esql;
+
+	public FlightWriter(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to create a single flight.
+	 *
+	 * @param flight the flight to create
+	 * @return the new flight number
+	 * @throws java.sql.SQLException when the flight could not be created
+	 */
+	public int addFlight(NewFlight flight) throws SQLException {
+		return addFlights(Collections.singletonList(flight))[0];
+	}
+
+	/**
+	 * Method to create many flights in one transaction.
+	 *
+	 * @param flights the flights to create
+	 * @return the new flight numbers, in the order of the given flights
+	 * @throws java.sql.SQLException when any flight could not be created, in which case none is
+	 */
+	public int[] addFlights(final List<NewFlight> flights) throws SQLException {
+		if (flights.isEmpty()) return new int[0];
+		return this._esql.transaction(new DBproject.Work<int[]>(){
+			public int[] run(CachedConnection conn) throws SQLException {
+				int n = flights.size();
+				int[] fnums = _esql.getIds().next(IdAllocator.FLIGHT, n);
+				int[] fiids = _esql.getIds().next(IdAllocator.FLIGHT_INFO, n);
+				int[] sids = _esql.getIds().next(IdAllocator.SCHEDULE, n);
+
+				PreparedStatement flight = conn.prepare(DBproject.INSERT_FLIGHT);
+				PreparedStatement info = conn.prepare(DBproject.INSERT_FLIGHT_INFO);
+				PreparedStatement schedule = conn.prepare(DBproject.INSERT_SCHEDULE);
+				try{
+					for (int i = 0; i < n; ++i){
+						NewFlight f = flights.get(i);
+						flight.setInt(1, fnums[i]);
+						flight.setInt(2, f.cost);
+						flight.setInt(3, f.numSold);
+						flight.setInt(4, f.numStops);
+						flight.setString(5, f.departure);
+						flight.setString(6, f.arrival);
+						flight.setString(7, f.arrivalAirport);
+						flight.setString(8, f.departureAirport);
+						flight.addBatch();
+
+						info.setInt(1, fiids[i]);
+						info.setInt(2, fnums[i]);
+						info.setInt(3, f.pilotId);
+						info.setInt(4, f.planeId);
+						info.addBatch();
+
+						schedule.setInt(1, sids[i]);
+						schedule.setInt(2, fnums[i]);
+						schedule.setString(3, f.departure);
+						schedule.setString(4, f.arrival);
+						schedule.addBatch();
+
+						//Flight rows go first, FlightInfo and Schedule reference them
+						if ((i + 1) % BATCH_SIZE == 0 || i == n - 1){
+							flight.executeBatch();
+							info.executeBatch();
+							schedule.executeBatch();
+						}//end if
+					}//end for
+				}finally{
+					//a failed batch must not leak rows into the next use of the cached statements
+					flight.clearBatch();
+					info.clearBatch();
+					schedule.clearBatch();
+				}
+				return fnums;
+			}
+		});
+	}//end addFlights
+}
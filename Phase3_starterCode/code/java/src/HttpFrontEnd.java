@@ -0,0 +1,369 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+
+/**
+ * This class serves the booking, seat availability, lookup and report
+ * operations as a small HTTP/JSON API on the JDK's built-in HTTP server:
+ *
+ *   POST /bookings?cid=&fnum=            book a seat or join the waitlist
+ *   GET  /flights/{fnum}/seats[?date=]   seats left
+ *   GET  /{planes|pilots|technicians|flights|reservations|customers}/{id}
+ *   GET  /reports/repairs-per-plane, /reports/repairs-per-year
+ *   GET  /reports/passengers?fnum=&status=, /reports/passengers-by-status
+ *   GET  /{customers|flights}/{id}/reservations[?after=&limit=]
+ *   GET  /airports/{code}/{departures|arrivals}?from=&to=[&after=&limit=]
+ *   GET  /planes/{id}/repairs?from=&to=[&after=&limit=]
+ *                                        a page of rows and the cursor of the next
+ *   GET  /metrics                        the QueryMetrics of the instance
+ *
+ * Every request runs on its own virtual thread when the JVM has them and
+ * on a cached thread pool otherwise.  Requests are admitted once a
+ * connection of the pool is free for them; up to a bounded number of
+ * requests wait for one, and requests beyond that are turned away with
+ * 503 right away, so a spike queues in the server instead of piling up
+ * on Postgres.
+ */
+
+public class HttpFrontEnd{
+	public static final int DEFAULT_HTTP_PORT = 8080;
+	//requests waiting for admission before new ones are turned away
+	public static final int DEFAULT_MAX_QUEUED = 1000;
+	//longest a request waits for admission
+	static final long ADMISSION_TIMEOUT_MILLIS = 10000;
+	static final String JSON = "application/json; charset=utf-8";
+
+	//lookup endpoints by the first path segment
+	static final Map<String, String> FIND = new HashMap<String, String>();
+	static{
+		FIND.put("planes", DBproject.FIND_PLANE);
+		FIND.put("pilots", DBproject.FIND_PILOT);
+		FIND.put("technicians", DBproject.FIND_TECHNICIAN);
+		FIND.put("flights", DBproject.FIND_FLIGHT);
+		FIND.put("reservations", DBproject.FIND_RESERVATION);
+		FIND.put("customers", DBproject.FIND_CUSTOMER);
+	}
+
+	/**
+	 * A request that can not be served, with the status to answer it with.
+	 */
+	static class HttpError extends Exception{
+		private static final long serialVersionUID = 1L;
+		final int status;
+
+		HttpError(int status, String message) {
+			super(message);
+			this.status = status;
+		}
+	}
+
+	private final DBproject _esql;
+	private final HttpServer _server;
+	private final ExecutorService _executor;
+	//one permit per pooled connection
+	private final Semaphore _admission;
+	private final AtomicInteger _queued = new AtomicInteger();
+	private final int _maxQueued;
+
+	/**
+	 * @param port the HTTP port, 0 for any free port
+	 * @param maxQueued the requests that may wait for admission
+	 */
+	public HttpFrontEnd(DBproject esql, int port, int maxQueued) throws IOException {
+		this._esql = esql;
+		this._maxQueued = maxQueued;
+		this._admission = new Semaphore(esql.getPool().getMaxSize(), true);
+		this._executor = newRequestExecutor();
+		this._server = HttpServer.create(new InetSocketAddress(port), 0);
+		this._server.setExecutor(this._executor);
+		this._server.createContext("/", new HttpHandler(){
+			public void handle(HttpExchange exchange) throws IOException {
+				serve(exchange);
+			}
+		});
+	}
+
+	/**
+	 * @return a virtual thread per task executor when the JVM has one, a cached thread pool otherwise
+	 */
+	static ExecutorService newRequestExecutor() {
+		try{
+			Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+			return (ExecutorService) virtual.invoke(null);
+		}catch (ReflectiveOperationException e){
+			return Executors.newCachedThreadPool();
+		}//end try
+	}
+
+	public void start() {
+		this._server.start();
+	}
+
+	public void stop() {
+		this._server.stop(0);
+		this._executor.shutdown();
+	}
+
+	/**
+	 * @return the port the server listens on
+	 */
+	public int getPort() {
+		return this._server.getAddress().getPort();
+	}
+
+	void serve(HttpExchange exchange) throws IOException {
+		int status = 200;
+		String body;
+		try{
+			body = admitted(exchange);
+		}catch (HttpError e){
+			status = e.status;
+			body = error(e.getMessage());
+		}catch (NumberFormatException e){
+			status = 400;
+			body = error("not a number: " + e.getMessage());
+		}catch (IllegalArgumentException e){
+			status = 400;
+			body = error(e.getMessage());
+		}catch (SQLException e){
+			status = 500;
+			body = error(e.getMessage());
+		}catch (InterruptedException e){
+			Thread.currentThread().interrupt();
+			status = 503;
+			body = error("shutting down");
+		}catch (RuntimeException e){
+			status = 500;
+			body = error(e.toString());
+		}//end try
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", JSON);
+		exchange.sendResponseHeaders(status, bytes.length);
+		OutputStream out = exchange.getResponseBody();
+		try{
+			out.write(bytes);
+		}finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Waits for a free connection, turning the request away when too many
+	 * are waiting already, and routes it once admitted.
+	 */
+	private String admitted(HttpExchange exchange) throws HttpError, SQLException, IOException, InterruptedException {
+		if (!this._admission.tryAcquire()){
+			if (this._queued.incrementAndGet() > this._maxQueued){
+				this._queued.decrementAndGet();
+				throw new HttpError(503, "server busy");
+			}//end if
+			try{
+				if (!this._admission.tryAcquire(ADMISSION_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS))
+					throw new HttpError(503, "server busy");
+			}finally{
+				this._queued.decrementAndGet();
+			}
+		}//end if
+		try{
+			return route(exchange);
+		}finally{
+			this._admission.release();
+		}
+	}
+
+	String route(HttpExchange exchange) throws HttpError, SQLException, IOException {
+		String method = exchange.getRequestMethod();
+		String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/");
+		Map<String, String> params = params(exchange.getRequestURI().getRawQuery());
+
+		if (path.length == 1 && path[0].equals("bookings")){
+			if (!method.equals("POST")) throw new HttpError(405, "use POST to book");
+			params.putAll(params(body(exchange)));
+			Booking booking = this._esql.bookFlight(intParam(params, "cid"), intParam(params, "fnum"));
+			return "{\"rnum\" : " + booking.rnum + ", \"cid\" : " + booking.cid + ", \"fnum\" : " + booking.fnum +
+					", \"status\" : " + Json.quote(booking.status) + "}";
+		}//end if
+		if (!method.equals("GET")) throw new HttpError(405, method + " not allowed");
+
+		if (path.length == 3 && path[0].equals("flights") && path[2].equals("seats")){
+			int fnum = Integer.parseInt(path[1]);
+			String date = params.get("date");
+			Integer seats = date == null ? this._esql.availableSeats(fnum) : this._esql.availableSeats(fnum, date);
+			if (seats == null) throw new HttpError(404, "flight " + fnum + " is not scheduled" + (date == null ? "" : " on " + date));
+			return "{\"fnum\" : " + fnum + ", \"remaining_seats\" : " + seats + "}";
+		}//end if
+		if (path.length == 2 && FIND.containsKey(path[0])){
+			ResultTable row = this._esql.find(FIND.get(path[0]), Integer.parseInt(path[1]));
+			if (row.rowCount() == 0) throw new HttpError(404, path[0] + " " + path[1] + " not found");
+			return object(row, 0);
+		}//end if
+		if (path.length == 3){
+			Listings listings = this._esql.getListings();
+			String after = params.get("after");
+			int limit = params.containsKey("limit") ? intParam(params, "limit") : Listings.DEFAULT_PAGE_SIZE;
+			if (path[0].equals("customers") && path[2].equals("reservations"))
+				return page(listings.reservationsOfCustomer(Integer.parseInt(path[1]), after, limit));
+			if (path[0].equals("flights") && path[2].equals("reservations"))
+				return page(listings.reservationsOfFlight(Integer.parseInt(path[1]), after, limit));
+			if (path[0].equals("airports") && path[2].equals("departures"))
+				return page(listings.flightsFrom(path[1], dateParam(params, "from"), dateParam(params, "to"), after, limit));
+			if (path[0].equals("airports") && path[2].equals("arrivals"))
+				return page(listings.flightsTo(path[1], dateParam(params, "from"), dateParam(params, "to"), after, limit));
+			if (path[0].equals("planes") && path[2].equals("repairs"))
+				return page(listings.repairsOfPlane(Integer.parseInt(path[1]), dateParam(params, "from"), dateParam(params, "to"), after, limit));
+		}//end if
+		if (path.length == 2 && path[0].equals("reports")){
+			if (path[1].equals("repairs-per-plane")) return array(this._esql.executeQueryAndReturnTable(DBproject.REPAIRS_PER_PLANE));
+			if (path[1].equals("repairs-per-year")) return array(this._esql.executeQueryAndReturnTable(DBproject.REPAIRS_PER_YEAR));
+			if (path[1].equals("passengers-by-status")) return array(this._esql.executeQueryAndReturnTable(DBproject.PASSENGERS_IN_ALL_STATUS));
+			if (path[1].equals("passengers"))
+				return array(this._esql.executeQueryAndReturnTable(DBproject.PASSENGERS_WITH_STATUS,
+						intParam(params, "fnum"), stringParam(params, "status")));
+		}//end if
+		if (path.length == 1 && path[0].equals("metrics")) return this._esql.getMetrics().toJson();
+		throw new HttpError(404, "no such resource: " + exchange.getRequestURI().getPath());
+	}//end route
+
+	static Map<String, String> params(String query) throws UnsupportedEncodingException {
+		Map<String, String> params = new HashMap<String, String>();
+		if (query == null || query.isEmpty()) return params;
+		for (String pair : query.split("&")){
+			int eq = pair.indexOf('=');
+			if (eq < 0) params.put(URLDecoder.decode(pair, "UTF-8"), "");
+			else params.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+		}//end for
+		return params;
+	}
+
+	static String body(HttpExchange exchange) throws IOException {
+		InputStream in = exchange.getRequestBody();
+		try{
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			for (int n = in.read(buffer); n > 0; n = in.read(buffer))
+				out.write(buffer, 0, n);
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}finally{
+			in.close();
+		}
+	}
+
+	static String stringParam(Map<String, String> params, String name) throws HttpError {
+		String value = params.get(name);
+		if (value == null || value.isEmpty()) throw new HttpError(400, "missing parameter " + name);
+		return value;
+	}
+
+	static int intParam(Map<String, String> params, String name) throws HttpError {
+		return Integer.parseInt(stringParam(params, name));
+	}
+
+	static LocalDate dateParam(Map<String, String> params, String name) throws HttpError {
+		String value = stringParam(params, name);
+		try{
+			return LocalDate.parse(value);
+		}catch (DateTimeParseException e){
+			throw new HttpError(400, "not a date: " + value);
+		}//end try
+	}
+
+	/**
+	 * @return a row as a JSON object keyed by column name; numbers stay numbers, CHAR padding is trimmed
+	 */
+	static String object(ResultTable table, int row) {
+		StringBuilder json = new StringBuilder("{");
+		for (int c = 0; c < table.columnCount(); ++c){
+			if (c > 0) json.append(", ");
+			json.append(Json.quote(table.columnName(c))).append(" : ");
+			String value = table.getString(row, c);
+			int kind = table.kind(c);
+			if (value == null) json.append("null");
+			else if (kind == ResultTable.INT || kind == ResultTable.LONG || kind == ResultTable.DOUBLE) json.append(value);
+			else json.append(Json.quote(value.trim()));
+		}//end for
+		return json.append("}").toString();
+	}
+
+	static String array(ResultTable table) {
+		StringBuilder json = new StringBuilder("[");
+		for (int r = 0; r < table.rowCount(); ++r)
+			json.append(r == 0 ? "\n  " : ",\n  ").append(object(table, r));
+		return json.append(table.rowCount() == 0 ? "]" : "\n]").toString();
+	}
+
+	static String page(Listings.Page page) {
+		return "{\"rows\" : " + array(page.rows) + ",\n\"next\" : " + (page.next == null ? "null" : Json.quote(page.next)) + "}";
+	}
+
+	static String error(String message) {
+		return "{\"error\" : " + Json.quote(String.valueOf(message)) + "}";
+	}
+
+	/**
+	 * The HTTP server entry point
+	 *
+	 * @param args <dbname> <port> <user> [http port] [pool size] [max queued]
+	 */
+	public static void main (String[] args) {
+		if (args.length < 3) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + HttpFrontEnd.class.getName () +
+		            " <dbname> <port> <user> [http port] [pool size] [max queued]");
+			return;
+		}//end if
+
+		try{
+			Class.forName("org.postgresql.Driver");
+			int httpPort = args.length > 3 ? Integer.parseInt(args[3]) : DEFAULT_HTTP_PORT;
+			int poolSize = args.length > 4 ? Integer.parseInt(args[4]) : ConnectionPool.DEFAULT_MAX_SIZE;
+			int maxQueued = args.length > 5 ? Integer.parseInt(args[5]) : DEFAULT_MAX_QUEUED;
+
+			final DBproject esql = new DBproject(args[0], args[1], args[2], "", poolSize);
+			final HttpFrontEnd server = new HttpFrontEnd(esql, httpPort, maxQueued);
+			Runtime.getRuntime().addShutdownHook(new Thread(){
+				public void run() {
+					server.stop();
+					esql.cleanup();
+				}
+			});
+			server.start();
+			System.out.println("Serving on http://localhost:" + server.getPort() + "/");
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+		}
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * This class hands out primary keys from Postgres sequences in blocks
+ * (hi/lo).  Every sequence is created with INCREMENT BY BLOCK_SIZE, so one
+ * nextval call reserves BLOCK_SIZE consecutive ids for this process and the
+ * following inserts take their keys from memory.  Ids are never handed out
+ * twice, neither between threads nor between processes, but ids of a block
+ * that is not used up before shutdown are skipped.
+ *
+ * New blocks are reserved without holding the sequence's lock: a caller
+ * inside a transaction may be waiting for the lock while holding a pooled
+ * connection, which the round trip of a caller outside one could need.
+ * When two callers reserve a block at once, the second block is kept for
+ * later calls.
+ *
+ * The sequences are created and seeded by sql/create_sequences.sql.
+ */
+
+public class IdAllocator{
+	//must match INCREMENT BY in sql/create_sequences.sql
+	public static final int BLOCK_SIZE = 50;
+
+	public static final String PLANE = "plane_id_seq";
+	public static final String PILOT = "pilot_id_seq";
+	public static final String TECHNICIAN = "technician_id_seq";
+	public static final String FLIGHT = "flight_fnum_seq";
+	public static final String FLIGHT_INFO = "flightinfo_fiid_seq";
+	public static final String SCHEDULE = "schedule_id_seq";
+	public static final String RESERVATION = "reservation_rnum_seq";
+
+	static final String NEXT_BLOCK = "SELECT nextval(CAST(? AS regclass))";
+	static final String NEXT_BLOCKS = "SELECT nextval(CAST(? AS regclass)) FROM generate_series(1, ?)";
+
+	/**
+	 * The ranges of reserved ids left for one sequence: the one ids are
+	 * taken from, and blocks reserved while it still had ids.
+	 */
+	private static class Block{
+		int next = 0;
+		int limit = 0;
+		final ArrayDeque<int[]> spare = new ArrayDeque<int[]>();
+
+		/**
+		 * @return the next id, or -1 when every range is used up
+		 */
+		int take() {
+			while (this.next >= this.limit && !this.spare.isEmpty()){
+				int[] range = this.spare.poll();
+				this.next = range[0];
+				this.limit = range[1];
+			}//end while
+			return this.next < this.limit ? this.next++ : -1;
+		}
+
+		void add(int next, int limit) {
+			if (next >= limit) return;
+			if (this.next >= this.limit){
+				this.next = next;
+				this.limit = limit;
+			}else
+				this.spare.add(new int[]{next, limit});
+		}
+	}
+
+	private final DBproject _esql;
+	private final ConcurrentHashMap<String, Block> _blocks = new ConcurrentHashMap<String, Block>();
+
+	public IdAllocator(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to take the next id of a sequence.  Only the first call of
+	 * every block goes to the database.
+	 *
+	 * @param sequence one of the sequence names defined in this class
+	 * @return an id no other caller has received
+	 * @throws java.sql.SQLException when a new block could not be reserved
+	 */
+	public int next(String sequence) throws SQLException {
+		Block block = block(sequence);
+		while (true){
+			synchronized (block){
+				int id = block.take();
+				if (id >= 0) return id;
+			}
+			int hi = this._esql.executeQueryAndReturnTable(NEXT_BLOCK, sequence).getInt(0, 0);
+			synchronized (block){
+				block.add(hi, hi + BLOCK_SIZE);
+			}
+		}//end while
+	}//end next
+
+	/**
+	 * Method to take many ids of a sequence at once, for bulk inserts.  The
+	 * ids left in reserved blocks are used first and all further blocks
+	 * are reserved with a single round trip.  The ids are unique but not
+	 * necessarily consecutive.
+	 *
+	 * @param sequence one of the sequence names defined in this class
+	 * @param count the number of ids wanted
+	 * @return count ids no other caller has received
+	 * @throws java.sql.SQLException when new blocks could not be reserved
+	 */
+	public int[] next(String sequence, int count) throws SQLException {
+		int[] ids = new int[count];
+		Block block = block(sequence);
+		int taken = 0;
+		synchronized (block){
+			int id;
+			while (taken < count && (id = block.take()) >= 0)
+				ids[taken++] = id;
+		}
+		if (taken == count) return ids;
+
+		int blocks = (count - taken + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		ResultTable his = this._esql.executeQueryAndReturnTable(NEXT_BLOCKS, sequence, blocks);
+		for (int row = 0; row < his.rowCount(); ++row){
+			int hi = his.getInt(row, 0);
+			int id = hi;
+			while (taken < count && id < hi + BLOCK_SIZE)
+				ids[taken++] = id++;
+			//keeps the rest of the last block for the following calls
+			synchronized (block){
+				block.add(id, hi + BLOCK_SIZE);
+			}
+		}//end for
+		return ids;
+	}//end next
+
+	private Block block(String sequence) {
+		Block block = this._blocks.get(sequence);
+		if (block == null){
+			Block created = new Block();
+			block = this._blocks.putIfAbsent(sequence, created);
+			if (block == null) block = created;
+		}//end if
+		return block;
+	}
+}
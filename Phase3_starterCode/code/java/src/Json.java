@@ -0,0 +1,56 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.IOException;
+
+
+/**
+ * This class quotes strings for the JSON written by QueryMetrics, the HTTP
+ * front end, the exporter and the benchmarks: quotes and backslashes are
+ * escaped, other control characters written as unicode escapes.
+ */
+
+public class Json{
+	private Json() {
+	}
+
+	/**
+	 * @return the value as a JSON string
+	 */
+	public static String quote(String value) {
+		StringBuilder s = new StringBuilder(value.length() + 2);
+		try{
+			quote(s, value);
+		}catch (IOException e){
+			//a StringBuilder does not throw
+			throw new IllegalStateException(e);
+		}//end try
+		return s.toString();
+	}
+
+	/**
+	 * Method to write a value as a JSON string.
+	 *
+	 * @throws java.io.IOException when the output could not be written
+	 */
+	public static void quote(Appendable out, String value) throws IOException {
+		out.append('"');
+		for (int i = 0; i < value.length(); ++i){
+			char ch = value.charAt(i);
+			if (ch == '"' || ch == '\\') out.append('\\').append(ch);
+			else if (ch < 0x20) out.append(String.format("\\u%04x", (int) ch));
+			else out.append(ch);
+		}//end for
+		out.append('"');
+	}
+}
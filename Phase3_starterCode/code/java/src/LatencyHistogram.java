@@ -0,0 +1,119 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * This class counts latencies in a fixed set of log-linear buckets, so
+ * recording a value is a few shifts and one atomic increment and the
+ * memory used does not depend on how many values are recorded.  Every
+ * power of two is split into SUB_BUCKETS buckets, which keeps percentiles
+ * within about 6% of the recorded value.
+ *
+ * Values are nanoseconds, but any non-negative long can be recorded.
+ */
+
+public class LatencyHistogram{
+	//buckets per power of two, as a number of bits
+	static final int SUB_BUCKET_BITS = 4;
+	static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	//values below SUB_BUCKETS get a bucket each, then SUB_BUCKETS per power of two up to 2^63
+	static final int BUCKETS = SUB_BUCKETS + (63 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+	private final AtomicLongArray _counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLong _count = new AtomicLong();
+	private final AtomicLong _sum = new AtomicLong();
+	private final AtomicLong _max = new AtomicLong();
+
+	/**
+	 * Method to count one value.
+	 *
+	 * @param value the latency in nanoseconds; negative values count as 0
+	 */
+	public void record(long value) {
+		if (value < 0) value = 0;
+		this._counts.incrementAndGet(bucket(value));
+		this._count.incrementAndGet();
+		this._sum.addAndGet(value);
+		long max = this._max.get();
+		while (value > max && !this._max.compareAndSet(max, value))
+			max = this._max.get();
+	}
+
+	static int bucket(long value) {
+		if (value < SUB_BUCKETS) return (int) value;
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		int sub = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+		return SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + sub;
+	}
+
+	/**
+	 * @return the largest value that falls into a bucket
+	 */
+	static long highestValue(int bucket) {
+		if (bucket < SUB_BUCKETS) return bucket;
+		int shift = (bucket - SUB_BUCKETS) / SUB_BUCKETS;
+		long sub = (bucket - SUB_BUCKETS) % SUB_BUCKETS;
+		return ((SUB_BUCKETS + sub + 1) << shift) - 1;
+	}
+
+	public long getCount() {
+		return this._count.get();
+	}
+
+	public long getSum() {
+		return this._sum.get();
+	}
+
+	public long getMax() {
+		return this._max.get();
+	}
+
+	public double getMean() {
+		long count = getCount();
+		return count == 0 ? 0.0 : (double) getSum() / count;
+	}
+
+	/**
+	 * Method to find the value below which a fraction of the recorded values
+	 * fall.  Values recorded while this runs may or may not be seen.
+	 *
+	 * @param quantile the fraction, e.g. 0.99 for the 99th percentile
+	 * @return the upper end of the bucket holding the quantile, at most the maximum; 0 when empty
+	 */
+	public long percentile(double quantile) {
+		long count = getCount();
+		if (count == 0) return 0;
+		long rank = Math.max(1, (long) Math.ceil(quantile * count));
+		long seen = 0;
+		for (int b = 0; b < BUCKETS; ++b){
+			seen += this._counts.get(b);
+			if (seen >= rank) return Math.min(highestValue(b), getMax());
+		}//end for
+		return getMax();
+	}
+
+	/**
+	 * Method to forget every recorded value.  Values recorded while this runs
+	 * may be partly kept.
+	 */
+	public void reset() {
+		for (int b = 0; b < BUCKETS; ++b)
+			this._counts.set(b, 0);
+		this._count.set(0);
+		this._sum.set(0);
+		this._max.set(0);
+	}
+}
@@ -0,0 +1,230 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+
+
+/**
+ * This class pages through the rows of a customer, a flight, an airport or
+ * a plane: reservations by customer or flight, flights leaving or arriving
+ * at an airport in a window of days, and repairs of a plane in a window of
+ * days.
+ *
+ * Pages are read with keyset pagination: every listing is ordered by a
+ * unique key, and a page's cursor is the key of its last row, so the next
+ * page starts with an index seek past it instead of skipping rows with
+ * OFFSET.  A page deep into a listing costs the same as the first one, and
+ * rows inserted or deleted before the cursor do not shift the pages after
+ * it.  The indexes the seeks use are in sql/create_indexes.sql.
+ */
+
+public class Listings{
+	public static final int DEFAULT_PAGE_SIZE = 50;
+	public static final int MAX_PAGE_SIZE = 1000;
+
+	//airports are CHAR(5), the cast keeps the comparison on the index
+	static final String RESERVATIONS_OF_CUSTOMER =
+		"SELECT * FROM Reservation WHERE cid = ? AND rnum > ? ORDER BY rnum LIMIT ?";
+	static final String RESERVATIONS_OF_FLIGHT =
+		"SELECT * FROM Reservation WHERE fid = ? AND rnum > ? ORDER BY rnum LIMIT ?";
+	static final String FLIGHTS_FROM =
+		"SELECT * FROM Flight WHERE departure_airport = CAST(? AS CHAR(5)) " +
+		"AND (actual_departure_date, fnum) > (CAST(? AS DATE), ?) AND actual_departure_date <= CAST(? AS DATE) " +
+		"ORDER BY actual_departure_date, fnum LIMIT ?";
+	static final String FLIGHTS_TO =
+		"SELECT * FROM Flight WHERE arrival_airport = CAST(? AS CHAR(5)) " +
+		"AND (actual_arrival_date, fnum) > (CAST(? AS DATE), ?) AND actual_arrival_date <= CAST(? AS DATE) " +
+		"ORDER BY actual_arrival_date, fnum LIMIT ?";
+	static final String REPAIRS_OF_PLANE =
+		"SELECT * FROM Repairs WHERE plane_id = ? " +
+		"AND (repair_date, rid) > (CAST(? AS DATE), ?) AND repair_date <= CAST(? AS DATE) " +
+		"ORDER BY repair_date, rid LIMIT ?";
+
+	/**
+	 * One page of a listing.
+	 */
+	public static class Page{
+		public final ResultTable rows;
+		//cursor of the page after this one, null on the last page
+		public final String next;
+
+		Page(ResultTable rows, String next) {
+			this.rows = rows;
+			this.next = next;
+		}
+	}
+
+	/**
+	 * The key a listing is ordered by: an id, or a date and an id.
+	 */
+	static class Cursor{
+		final LocalDate date;
+		final int id;
+
+		Cursor(LocalDate date, int id) {
+			this.date = date;
+			this.id = id;
+		}
+
+		/**
+		 * @param cursor "id" or "yyyy-mm-dd:id" as returned in Page.next, null for the first page
+		 * @param first the date a dated listing starts at
+		 */
+		static Cursor parse(String cursor, LocalDate first) {
+			if (cursor == null || cursor.isEmpty()) return new Cursor(first, Integer.MIN_VALUE);
+			try{
+				int colon = cursor.indexOf(':');
+				if (first == null && colon < 0) return new Cursor(null, Integer.parseInt(cursor));
+				if (first != null && colon > 0)
+					return new Cursor(LocalDate.parse(cursor.substring(0, colon)), Integer.parseInt(cursor.substring(colon + 1)));
+			}catch(RuntimeException e){
+				//reported below
+			}
+			throw new IllegalArgumentException("bad cursor: " + cursor);
+		}
+
+		public String toString() {
+			return this.date == null ? Integer.toString(this.id) : this.date + ":" + this.id;
+		}
+	}
+
+	private final DBproject _esql;
+
+	public Listings(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to list the reservations of a customer by reservation number.
+	 *
+	 * @param cid the customer id
+	 * @param cursor the cursor of the page to read, null for the first page
+	 * @param limit the rows per page, at most MAX_PAGE_SIZE
+	 * @return the page
+	 * @throws java.sql.SQLException when the page could not be read
+	 */
+	public Page reservationsOfCustomer(int cid, String cursor, int limit) throws SQLException {
+		Cursor after = Cursor.parse(cursor, null);
+		return page("listCustomerReservations", RESERVATIONS_OF_CUSTOMER, limit, null, "rnum", cid, after.id, limit + 1);
+	}
+
+	/**
+	 * Method to list the passengers of a flight by reservation number.
+	 *
+	 * @param fnum the flight number
+	 * @param cursor the cursor of the page to read, null for the first page
+	 * @param limit the rows per page, at most MAX_PAGE_SIZE
+	 * @return the page
+	 * @throws java.sql.SQLException when the page could not be read
+	 */
+	public Page reservationsOfFlight(int fnum, String cursor, int limit) throws SQLException {
+		Cursor after = Cursor.parse(cursor, null);
+		return page("listFlightReservations", RESERVATIONS_OF_FLIGHT, limit, null, "rnum", fnum, after.id, limit + 1);
+	}
+
+	/**
+	 * Method to list the flights leaving an airport from one day to another,
+	 * both included, by departure date and flight number.
+	 *
+	 * @param airport the airport code
+	 * @param from the first day
+	 * @param to the last day
+	 * @param cursor the cursor of the page to read, null for the first page
+	 * @param limit the rows per page, at most MAX_PAGE_SIZE
+	 * @return the page
+	 * @throws java.sql.SQLException when the page could not be read
+	 */
+	public Page flightsFrom(String airport, LocalDate from, LocalDate to, String cursor, int limit) throws SQLException {
+		Cursor after = Cursor.parse(cursor, from);
+		return page("listFlightsFrom", FLIGHTS_FROM, limit, "actual_departure_date", "fnum",
+				airport, after.date.toString(), after.id, to.toString(), limit + 1);
+	}
+
+	/**
+	 * Method to list the flights arriving at an airport from one day to
+	 * another, both included, by arrival date and flight number.
+	 *
+	 * @param airport the airport code
+	 * @param from the first day
+	 * @param to the last day
+	 * @param cursor the cursor of the page to read, null for the first page
+	 * @param limit the rows per page, at most MAX_PAGE_SIZE
+	 * @return the page
+	 * @throws java.sql.SQLException when the page could not be read
+	 */
+	public Page flightsTo(String airport, LocalDate from, LocalDate to, String cursor, int limit) throws SQLException {
+		Cursor after = Cursor.parse(cursor, from);
+		return page("listFlightsTo", FLIGHTS_TO, limit, "actual_arrival_date", "fnum",
+				airport, after.date.toString(), after.id, to.toString(), limit + 1);
+	}
+
+	/**
+	 * Method to list the repairs of a plane from one day to another, both
+	 * included, by repair date and repair id.
+	 *
+	 * @param planeId the plane id
+	 * @param from the first day
+	 * @param to the last day
+	 * @param cursor the cursor of the page to read, null for the first page
+	 * @param limit the rows per page, at most MAX_PAGE_SIZE
+	 * @return the page
+	 * @throws java.sql.SQLException when the page could not be read
+	 */
+	public Page repairsOfPlane(int planeId, LocalDate from, LocalDate to, String cursor, int limit) throws SQLException {
+		Cursor after = Cursor.parse(cursor, from);
+		return page("listPlaneRepairs", REPAIRS_OF_PLANE, limit, "repair_date", "rid",
+				planeId, after.date.toString(), after.id, to.toString(), limit + 1);
+	}
+
+	/**
+	 * Reads one row more than the page holds, which tells whether there is
+	 * a next page without another query.
+	 */
+	private Page page(String name, String sql, final int limit, final String dateColumn, final String idColumn,
+			Object... params) throws SQLException {
+		if (limit < 1 || limit > MAX_PAGE_SIZE)
+			throw new IllegalArgumentException("page size must be between 1 and " + MAX_PAGE_SIZE + ", not " + limit);
+		long start = System.nanoTime();
+		boolean failed = true;
+		try{
+			final ResultTable.Builder rows = new ResultTable.Builder();
+			final Cursor[] last = new Cursor[1];
+			final boolean[] more = new boolean[1];
+			this._esql.executeQueryStreaming(sql, new DBproject.ColumnHandler(){
+				int count = 0;
+
+				public void columns(ResultSetMetaData rsmd) throws SQLException {
+					rows.columns(rsmd);
+				}
+
+				public void row(ResultSet rs) throws SQLException {
+					if (this.count++ == limit){
+						more[0] = true;
+						return;
+					}//end if
+					rows.row(rs);
+					Date date = dateColumn == null ? null : rs.getDate(dateColumn);
+					last[0] = new Cursor(date == null ? null : date.toLocalDate(), rs.getInt(idColumn));
+				}
+			}, params);
+			failed = false;
+			return new Page(rows.build(), more[0] ? last[0].toString() : null);
+		}finally{
+			this._esql.getMetrics().operation(name, System.nanoTime() - start, failed);
+		}
+	}
+}
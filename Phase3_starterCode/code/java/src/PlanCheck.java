@@ -0,0 +1,402 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeSet;
+
+
+/**
+ * This class checks the query plans of the application's SQL.  It runs
+ * EXPLAIN (ANALYZE, BUFFERS) for every query DBproject and its helpers
+ * issue, with sample parameters, inside a transaction that is rolled back,
+ * so the data modifying booking statement can be planned too.
+ *
+ * In record mode the plans are saved as a baseline file.  In check mode
+ * they are compared with the baseline, and the check fails when a query
+ * now sequentially scans a table it did not scan before, its estimated
+ * cost grew past the baseline times a factor, or it has no baseline.
+ * Both modes print planning and execution times and buffer usage, so
+ * recording before and checking after an index change gives the
+ * before/after timings of that change.
+ */
+
+public class PlanCheck{
+	//cost growth tolerated by check mode when no factor is given
+	static final double DEFAULT_COST_FACTOR = 2.0;
+	static final String DEFAULT_BASELINE = "plan_baseline.txt";
+	static final String EXPLAIN = "EXPLAIN (ANALYZE, BUFFERS, FORMAT JSON) ";
+
+	/**
+	 * A query of the workload with the parameters it is planned with.
+	 */
+	static class Query{
+		final String name;
+		final String sql;
+		final Object[] params;
+
+		Query(String name, String sql, Object... params) {
+			this.name = name;
+			this.sql = sql;
+			this.params = params;
+		}
+	}
+
+	/**
+	 * What is kept of a plan: its estimated cost, timings, the tables it
+	 * scans sequentially and its shape.
+	 */
+	static class Plan{
+		double cost;
+		double planningMs;
+		double executionMs;
+		long sharedHit;
+		long sharedRead;
+		TreeSet<String> seqScans = new TreeSet<String>();
+		String shape;
+
+		String toLine(String name) {
+			return name + "\t" + String.format(Locale.ROOT, "%.2f\t%.3f", this.cost, this.executionMs) + "\t" +
+					String.join(",", this.seqScans) + "\t" + this.shape;
+		}
+
+		static Plan fromLine(String[] fields) {
+			Plan plan = new Plan();
+			plan.cost = Double.parseDouble(fields[1]);
+			plan.executionMs = Double.parseDouble(fields[2]);
+			if (!fields[3].isEmpty())
+				for (String table : fields[3].split(","))
+					plan.seqScans.add(table);
+			plan.shape = fields[4];
+			return plan;
+		}
+	}
+
+	//sample keys the workload is planned with, present in code/data
+	static final int FLIGHT = 1, PLANE = 1, CUSTOMER = 1;
+	static final String AIRPORT = "TDOBK";
+
+	/**
+	 * @return every query the application issues, with sample parameters
+	 */
+	static List<Query> workload() {
+		List<Query> queries = new ArrayList<Query>();
+		queries.add(new Query("FindPlane", DBproject.FIND_PLANE, PLANE));
+		queries.add(new Query("FindPilot", DBproject.FIND_PILOT, 1));
+		queries.add(new Query("FindTechnician", DBproject.FIND_TECHNICIAN, 1));
+		queries.add(new Query("FindFlight", DBproject.FIND_FLIGHT, FLIGHT));
+		queries.add(new Query("FindReservation", DBproject.FIND_RESERVATION, 1));
+		queries.add(new Query("FindCustomer", DBproject.FIND_CUSTOMER, CUSTOMER));
+		queries.add(new Query("SeatsForFlight", DBproject.SEATS_FOR_FLIGHT, FLIGHT, FLIGHT));
+		queries.add(new Query("LoadSeats", SeatCache.LOAD_SEATS, FLIGHT));
+		queries.add(new Query("LoadScheduled", SeatCache.LOAD_SCHEDULED, FLIGHT, "2014-05-01"));
+		//a rnum no row has, the insert is rolled back
+		queries.add(new Query("BookSeat", BookingEngine.BOOK_SEAT, FLIGHT, FLIGHT, Integer.MAX_VALUE, CUSTOMER, FLIGHT));
+		queries.add(new Query("CancelReservation", WaitlistEngine.CANCEL, 1));
+		queries.add(new Query("RepairsPerPlane", DBproject.REPAIRS_PER_PLANE));
+		queries.add(new Query("RepairsPerYear", DBproject.REPAIRS_PER_YEAR));
+		queries.add(new Query("PassengersWithStatus", DBproject.PASSENGERS_WITH_STATUS, FLIGHT, "R"));
+		queries.add(new Query("PassengersInAllStatus", DBproject.PASSENGERS_IN_ALL_STATUS));
+		queries.add(new Query("VerifySummaries", DBproject.VERIFY_SUMMARIES));
+		//first pages of the keyset listings
+		queries.add(new Query("CustomerReservations", Listings.RESERVATIONS_OF_CUSTOMER, CUSTOMER, Integer.MIN_VALUE, Listings.DEFAULT_PAGE_SIZE + 1));
+		queries.add(new Query("FlightReservations", Listings.RESERVATIONS_OF_FLIGHT, FLIGHT, Integer.MIN_VALUE, Listings.DEFAULT_PAGE_SIZE + 1));
+		queries.add(new Query("FlightsFrom", Listings.FLIGHTS_FROM, AIRPORT, "2014-05-01", Integer.MIN_VALUE, "2014-05-31", Listings.DEFAULT_PAGE_SIZE + 1));
+		queries.add(new Query("FlightsTo", Listings.FLIGHTS_TO, AIRPORT, "2014-05-01", Integer.MIN_VALUE, "2014-05-31", Listings.DEFAULT_PAGE_SIZE + 1));
+		queries.add(new Query("PlaneRepairs", Listings.REPAIRS_OF_PLANE, PLANE, "2010-01-01", Integer.MIN_VALUE, "2019-12-31", Listings.DEFAULT_PAGE_SIZE + 1));
+		return queries;
+	}
+
+	private final DBproject _esql;
+
+	public PlanCheck(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to plan and run one query and roll back whatever it changed.
+	 *
+	 * @return the plan, as far as it is kept
+	 * @throws java.sql.SQLException when the query could not be explained
+	 */
+	Plan explain(Query query) throws SQLException {
+		CachedConnection conn = this._esql.acquire();
+		Connection c = conn.getConnection();
+		try{
+			c.setAutoCommit(false);
+			PreparedStatement stmt = c.prepareStatement(EXPLAIN + query.sql);
+			try{
+				for (int i = 0; i < query.params.length; ++i)
+					stmt.setObject(i + 1, query.params[i]);
+				ResultSet rs = stmt.executeQuery();
+				rs.next();
+				return toPlan(rs.getString(1));
+			}finally{
+				stmt.close();
+			}
+		}finally{
+			try{
+				c.rollback();
+				c.setAutoCommit(true);
+			}catch (SQLException e){
+				// the pool closes connections left in a transaction.
+			}//end try
+			this._esql.release(conn);
+		}
+	}//end explain
+
+	@SuppressWarnings("unchecked")
+	static Plan toPlan(String json) {
+		Map<String, Object> root = (Map<String, Object>) ((List<Object>) new PlanJson(json).value()).get(0);
+		Map<String, Object> top = (Map<String, Object>) root.get("Plan");
+		Plan plan = new Plan();
+		plan.cost = number(top, "Total Cost");
+		plan.planningMs = number(root, "Planning Time");
+		plan.executionMs = number(root, "Execution Time");
+		plan.sharedHit = (long) number(top, "Shared Hit Blocks");
+		plan.sharedRead = (long) number(top, "Shared Read Blocks");
+		StringBuilder shape = new StringBuilder();
+		walk(top, plan, shape);
+		plan.shape = shape.toString();
+		return plan;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static void walk(Map<String, Object> node, Plan plan, StringBuilder shape) {
+		String type = (String) node.get("Node Type");
+		String relation = (String) node.get("Relation Name");
+		shape.append(type);
+		if (relation != null) shape.append(" on ").append(relation);
+		if (node.get("Index Name") != null) shape.append(" using ").append(node.get("Index Name"));
+		if ("Seq Scan".equals(type) && relation != null) plan.seqScans.add(relation.toLowerCase());
+		List<Object> children = (List<Object>) node.get("Plans");
+		if (children != null && !children.isEmpty()){
+			shape.append("(");
+			for (int i = 0; i < children.size(); ++i){
+				if (i > 0) shape.append(", ");
+				walk((Map<String, Object>) children.get(i), plan, shape);
+			}//end for
+			shape.append(")");
+		}//end if
+	}
+
+	private static double number(Map<String, Object> node, String key) {
+		Object value = node.get(key);
+		return value instanceof Double ? (Double) value : 0.0;
+	}
+
+	/**
+	 * Method to plan every query and save the plans as the baseline.
+	 */
+	public void record(File baseline) throws SQLException, IOException {
+		Writer out = new FileWriter(baseline);
+		try{
+			out.write("# query\tcost\texecution ms\tsequential scans\tshape\n");
+			for (Query query : workload()){
+				Plan plan = explain(query);
+				print(query.name, plan, null, "recorded");
+				out.write(plan.toLine(query.name) + "\n");
+			}//end for
+		}finally{
+			out.close();
+		}
+	}
+
+	/**
+	 * Method to plan every query and compare the plans with the baseline.
+	 *
+	 * @return true when no query regressed
+	 */
+	public boolean check(File baseline, double costFactor) throws SQLException, IOException {
+		Map<String, Plan> baselines = new LinkedHashMap<String, Plan>();
+		BufferedReader in = new BufferedReader(new FileReader(baseline));
+		try{
+			for (String line = in.readLine(); line != null; line = in.readLine()){
+				if (line.startsWith("#") || line.trim().isEmpty()) continue;
+				String[] fields = line.split("\t", -1);
+				baselines.put(fields[0], Plan.fromLine(fields));
+			}//end for
+		}finally{
+			in.close();
+		}
+
+		boolean ok = true;
+		for (Query query : workload()){
+			Plan plan = explain(query);
+			Plan before = baselines.get(query.name);
+			List<String> problems = new ArrayList<String>();
+			if (before == null){
+				problems.add("no baseline, record one");
+			}else{
+				for (String table : plan.seqScans)
+					if (!before.seqScans.contains(table)) problems.add("new sequential scan on " + table);
+				if (plan.cost > before.cost * costFactor)
+					problems.add(String.format(Locale.ROOT, "cost %.2f over %.1fx baseline %.2f", plan.cost, costFactor, before.cost));
+			}//end if
+			//a query without a baseline fails too, so a new slow query can not pass unchecked
+			boolean regressed = before != null && !problems.isEmpty();
+			ok &= problems.isEmpty();
+			print(query.name, plan, before, problems.isEmpty() ? "OK" : (regressed ? "REGRESSED: " : "MISSING: ") + String.join("; ", problems));
+			if (regressed){
+				System.out.println("    before: " + before.shape);
+				System.out.println("    now:    " + plan.shape);
+			}//end if
+		}//end for
+		System.out.println(ok ? "PASS" : "FAIL");
+		return ok;
+	}
+
+	private static void print(String name, Plan plan, Plan before, String verdict) {
+		String timing = before == null ? String.format(Locale.ROOT, "%10.3f ms", plan.executionMs)
+				: String.format(Locale.ROOT, "%10.3f ms (was %.3f)", plan.executionMs, before.executionMs);
+		System.out.println(String.format(Locale.ROOT, "%-24s cost %10.2f plan %7.3f ms exec %s buffers hit %6d read %6d  %s",
+				name, plan.cost, plan.planningMs, timing, plan.sharedHit, plan.sharedRead, verdict));
+	}
+
+	/**
+	 * A minimal JSON reader for EXPLAIN output: objects become maps, arrays
+	 * lists and numbers doubles.
+	 */
+	static class PlanJson{
+		private final String s;
+		private int i = 0;
+
+		PlanJson(String text) {
+			this.s = text;
+		}
+
+		Object value() {
+			skip();
+			char ch = this.s.charAt(this.i);
+			if (ch == '{'){
+				Map<String, Object> map = new LinkedHashMap<String, Object>();
+				++this.i;
+				skip();
+				if (this.s.charAt(this.i) == '}'){ ++this.i; return map; }
+				while (true){
+					skip();
+					String key = string();
+					skip();
+					expect(':');
+					map.put(key, value());
+					skip();
+					if (this.s.charAt(this.i++) == '}') return map;
+				}//end while
+			}else if (ch == '['){
+				List<Object> list = new ArrayList<Object>();
+				++this.i;
+				skip();
+				if (this.s.charAt(this.i) == ']'){ ++this.i; return list; }
+				while (true){
+					list.add(value());
+					skip();
+					if (this.s.charAt(this.i++) == ']') return list;
+				}//end while
+			}else if (ch == '"'){
+				return string();
+			}else if (this.s.startsWith("true", this.i)){
+				this.i += 4;
+				return Boolean.TRUE;
+			}else if (this.s.startsWith("false", this.i)){
+				this.i += 5;
+				return Boolean.FALSE;
+			}else if (this.s.startsWith("null", this.i)){
+				this.i += 4;
+				return null;
+			}//end if
+			int start = this.i;
+			while (this.i < this.s.length() && "+-.eE0123456789".indexOf(this.s.charAt(this.i)) >= 0)
+				++this.i;
+			return Double.parseDouble(this.s.substring(start, this.i));
+		}
+
+		private String string() {
+			expect('"');
+			StringBuilder out = new StringBuilder();
+			for (char ch = this.s.charAt(this.i++); ch != '"'; ch = this.s.charAt(this.i++)){
+				if (ch == '\\'){
+					char esc = this.s.charAt(this.i++);
+					switch (esc){
+						case 'n': out.append('\n'); break;
+						case 't': out.append('\t'); break;
+						case 'r': out.append('\r'); break;
+						case 'b': out.append('\b'); break;
+						case 'f': out.append('\f'); break;
+						case 'u': out.append((char) Integer.parseInt(this.s.substring(this.i, this.i + 4), 16)); this.i += 4; break;
+						default: out.append(esc);
+					}
+				}else{
+					out.append(ch);
+				}//end if
+			}//end for
+			return out.toString();
+		}
+
+		private void expect(char ch) {
+			if (this.s.charAt(this.i) != ch)
+				throw new IllegalArgumentException("expected " + ch + " at " + this.i + " in plan JSON");
+			++this.i;
+		}
+
+		private void skip() {
+			while (this.i < this.s.length() && Character.isWhitespace(this.s.charAt(this.i)))
+				++this.i;
+		}
+	}
+
+	/**
+	 * The plan check entry point
+	 *
+	 * @param args <dbname> <port> <user> <record|check> [baseline file] [cost factor]
+	 */
+	public static void main (String[] args) {
+		if (args.length < 4) {
+			System.err.println (
+				"Usage: " + "java [-classpath <classpath>] " + PlanCheck.class.getName () +
+		            " <dbname> <port> <user> <record|check> [baseline file] [cost factor]");
+			return;
+		}//end if
+
+		DBproject esql = null;
+		boolean ok = true;
+		try{
+			Class.forName("org.postgresql.Driver");
+			File baseline = new File(args.length > 4 ? args[4] : DEFAULT_BASELINE);
+			double factor = args.length > 5 ? Double.parseDouble(args[5]) : DEFAULT_COST_FACTOR;
+			esql = new DBproject(args[0], args[1], args[2], "");
+			PlanCheck planCheck = new PlanCheck(esql);
+			if (args[3].equals("record")) planCheck.record(baseline);
+			else if (args[3].equals("check")) ok = planCheck.check(baseline, factor);
+			else System.err.println("Unknown mode: " + args[3]);
+		}catch(Exception e){
+			System.err.println (e.getMessage ());
+			ok = false;
+		}finally{
+			if (esql != null) esql.cleanup();
+		}
+		if (!ok) System.exit(1);
+	}
+}
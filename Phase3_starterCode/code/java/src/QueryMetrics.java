@@ -0,0 +1,225 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class collects the latency of every SQL template and operation run
+ * through DBproject, the rows they fetched or changed, their errors and
+ * the time spent waiting for a pooled connection.  Recording is a map
+ * lookup on the template and a few atomic increments, so it is always on.
+ *
+ * Queries slower than the slow query threshold are logged with their
+ * template and bind values.  The threshold and log file are read from the
+ * dbproject.slowQueryMillis and dbproject.slowQueryLog system properties;
+ * a negative threshold turns the log off, and without a file it goes to
+ * standard error.
+ */
+
+public class QueryMetrics{
+	//queries taking at least this long are logged when nothing else is set
+	public static final long DEFAULT_SLOW_QUERY_MILLIS = 200;
+	//length of a template in the printed report
+	static final int TEMPLATE_WIDTH = 60;
+
+	/**
+	 * Counters of one SQL template or operation.
+	 */
+	static class Stats{
+		final LatencyHistogram latency = new LatencyHistogram();
+		final AtomicLong rows = new AtomicLong();
+		final AtomicLong errors = new AtomicLong();
+	}
+
+	private final ConcurrentHashMap<String, Stats> _queries = new ConcurrentHashMap<String, Stats>();
+	private final ConcurrentHashMap<String, Stats> _operations = new ConcurrentHashMap<String, Stats>();
+	private final LatencyHistogram _acquire = new LatencyHistogram();
+	private final AtomicLong _slowQueries = new AtomicLong();
+	private volatile long _slowNanos;
+	private volatile PrintStream _slowLog = System.err;
+
+	public QueryMetrics() {
+		setSlowQueryThreshold(DEFAULT_SLOW_QUERY_MILLIS);
+	}
+
+	/**
+	 * @return metrics configured from the dbproject.slowQueryMillis and dbproject.slowQueryLog properties
+	 */
+	public static QueryMetrics fromSystemProperties() {
+		QueryMetrics metrics = new QueryMetrics();
+		metrics.setSlowQueryThreshold(Long.getLong("dbproject.slowQueryMillis", DEFAULT_SLOW_QUERY_MILLIS));
+		String log = System.getProperty("dbproject.slowQueryLog");
+		if (log != null){
+			try{
+				metrics.setSlowQueryLog(new PrintStream(new FileOutputStream(log, true), true));
+			}catch (IOException e){
+				System.err.println("slow query log " + log + ": " + e.getMessage() + ", using standard error");
+			}//end try
+		}//end if
+		return metrics;
+	}
+
+	/**
+	 * @param millis the latency from which queries are logged, negative to turn the log off
+	 */
+	public void setSlowQueryThreshold(long millis) {
+		this._slowNanos = millis < 0 ? Long.MAX_VALUE : millis * 1000000L;
+	}
+
+	public void setSlowQueryLog(PrintStream log) {
+		this._slowLog = log;
+	}
+
+	private static Stats stats(ConcurrentHashMap<String, Stats> map, String key) {
+		Stats stats = map.get(key);
+		if (stats == null){
+			Stats created = new Stats();
+			stats = map.putIfAbsent(key, created);
+			if (stats == null) stats = created;
+		}//end if
+		return stats;
+	}
+
+	/**
+	 * Method to record one execution of a SQL template.
+	 *
+	 * @param sql the template as passed to the helper
+	 * @param nanos the time from the call to the last row
+	 * @param rows the rows fetched or changed
+	 * @param failed true when the statement threw
+	 * @param params the bind values, only read for the slow query log
+	 */
+	public void query(String sql, long nanos, long rows, boolean failed, Object[] params) {
+		Stats stats = stats(this._queries, sql);
+		stats.latency.record(nanos);
+		stats.rows.addAndGet(rows);
+		if (failed) stats.errors.incrementAndGet();
+		if (nanos >= this._slowNanos){
+			this._slowQueries.incrementAndGet();
+			this._slowLog.println(String.format(Locale.ROOT, "%tFT%<tT.%<tL slow query %.1f ms %d rows%s: %s %s",
+					System.currentTimeMillis(), nanos / 1e6, rows, failed ? " failed" : "", sql, Arrays.deepToString(params)));
+		}//end if
+	}
+
+	/**
+	 * Method to record one run of an operation, e.g. a booking.
+	 */
+	public void operation(String name, long nanos, boolean failed) {
+		Stats stats = stats(this._operations, name);
+		stats.latency.record(nanos);
+		if (failed) stats.errors.incrementAndGet();
+	}
+
+	/**
+	 * Method to record the wait for a connection from the pool.
+	 */
+	public void acquired(long nanos) {
+		this._acquire.record(nanos);
+	}
+
+	public long getSlowQueries() {
+		return this._slowQueries.get();
+	}
+
+	/**
+	 * Method to forget everything recorded so far.
+	 */
+	public void reset() {
+		this._queries.clear();
+		this._operations.clear();
+		this._acquire.reset();
+		this._slowQueries.set(0);
+	}
+
+	/**
+	 * Method to print the metrics as a table, operations and queries each
+	 * sorted by name.
+	 */
+	public void printReport(PrintStream out) {
+		String header = String.format("%-" + TEMPLATE_WIDTH + "s %10s %8s %10s %10s %10s %10s %10s", "", "count", "errors", "rows",
+				"mean ms", "p50 ms", "p99 ms", "p99.9 ms");
+		out.println("operations");
+		out.println(header);
+		for (Map.Entry<String, Stats> entry : sorted(this._operations).entrySet())
+			printLine(out, entry.getKey(), entry.getValue().latency, entry.getValue().errors.get(), entry.getValue().rows.get());
+		out.println("queries");
+		out.println(header);
+		for (Map.Entry<String, Stats> entry : sorted(this._queries).entrySet())
+			printLine(out, entry.getKey(), entry.getValue().latency, entry.getValue().errors.get(), entry.getValue().rows.get());
+		out.println("connections");
+		printLine(out, "acquire", this._acquire, 0, 0);
+		out.println(getSlowQueries() + " slow queries");
+	}
+
+	private static void printLine(PrintStream out, String name, LatencyHistogram h, long errors, long rows) {
+		name = name.replaceAll("\\s+", " ");
+		if (name.length() > TEMPLATE_WIDTH) name = name.substring(0, TEMPLATE_WIDTH - 3) + "...";
+		out.println(String.format(Locale.ROOT, "%-" + TEMPLATE_WIDTH + "s %10d %8d %10d %10.2f %10.2f %10.2f %10.2f",
+				name, h.getCount(), errors, rows, h.getMean() / 1e6,
+				h.percentile(0.50) / 1e6, h.percentile(0.99) / 1e6, h.percentile(0.999) / 1e6));
+	}
+
+	private static TreeMap<String, Stats> sorted(Map<String, Stats> map) {
+		return new TreeMap<String, Stats>(map);
+	}
+
+	/**
+	 * @return the metrics as a JSON object, latencies in nanoseconds
+	 */
+	public String toJson() {
+		StringBuilder json = new StringBuilder("{\n");
+		json.append("  \"operations\" : ");
+		appendStats(json, this._operations);
+		json.append(",\n  \"queries\" : ");
+		appendStats(json, this._queries);
+		json.append(",\n  \"acquire\" : ");
+		appendHistogram(json, this._acquire);
+		json.append(",\n  \"slowQueries\" : ").append(getSlowQueries());
+		json.append("\n}\n");
+		return json.toString();
+	}
+
+	private static void appendStats(StringBuilder json, Map<String, Stats> map) {
+		json.append("[");
+		int i = 0;
+		for (Map.Entry<String, Stats> entry : sorted(map).entrySet()){
+			Stats s = entry.getValue();
+			json.append(i++ == 0 ? "\n" : ",\n");
+			json.append("    {\"name\" : ").append(Json.quote(entry.getKey()));
+			json.append(", \"rows\" : ").append(s.rows.get());
+			json.append(", \"errors\" : ").append(s.errors.get());
+			json.append(", \"latency\" : ");
+			appendHistogram(json, s.latency);
+			json.append("}");
+		}//end for
+		json.append(i == 0 ? "]" : "\n  ]");
+	}
+
+	private static void appendHistogram(StringBuilder json, LatencyHistogram h) {
+		json.append("{\"count\" : ").append(h.getCount());
+		json.append(", \"mean\" : ").append(Math.round(h.getMean()));
+		json.append(", \"p50\" : ").append(h.percentile(0.50));
+		json.append(", \"p99\" : ").append(h.percentile(0.99));
+		json.append(", \"p999\" : ").append(h.percentile(0.999));
+		json.append(", \"max\" : ").append(h.getMax()).append("}");
+	}
+}
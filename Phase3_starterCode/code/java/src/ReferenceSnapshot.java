@@ -0,0 +1,627 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+
+/**
+ * This class keeps the Plane, Pilot, Technician, Customer and Flight tables
+ * in a binary file of fixed width records sorted by primary key, which is
+ * memory mapped and read in place: a lookup by id is an offset computation
+ * (or a binary search when the ids have gaps) on the mapped file, without
+ * copying the table onto the heap.  Warming the entity caches from the
+ * file takes milliseconds where loading them from the database takes a
+ * round trip per batch of rows.
+ *
+ * The file records the WAL position and the oldest running transaction id
+ * at the time it was written.  When the WAL has not moved since, the file
+ * is current.  Otherwise only the rows written by transactions from that
+ * id on are fetched and merged into a new file; a table whose row count
+ * then differs from the database, i.e. that had deletes, is read whole.
+ * Flight rows carry num_sold as of the snapshot.
+ *
+ * Layout: a header (magic, format, WAL position, transaction id), the
+ * records of every table and a directory of the tables and their columns,
+ * whose offset is the last 8 bytes of the file.  A record is a null mask
+ * followed by its columns: INTEGER and DATE (as epoch day) take 4 bytes,
+ * CHAR(n) takes n bytes of UTF-8.
+ */
+
+public class ReferenceSnapshot{
+	static final int MAGIC = 0x44425331;
+	//bumped whenever the layout changes, older files are rewritten
+	static final int FORMAT = 1;
+	public static final String[] TABLES = {"Plane", "Pilot", "Technician", "Customer", "Flight"};
+	//fixed size of table and column names in the directory
+	static final int NAME_BYTES = 32;
+	//how a column is stored in a record
+	static final int S_INT = 0;
+	static final int S_DATE = 1;
+	static final int S_CHAR = 2;
+	//null mask bit of a record whose text did not fit its column width
+	static final int OVERFLOW = 1 << 31;
+	static final int MAX_COLUMNS = 31;
+	static final int BUFFER_SIZE = 1 << 16;
+
+	//WAL position and oldest running transaction, taken before any row is read
+	static final String MARKER =
+		"SELECT CAST(pg_current_wal_lsn() - CAST('0/0' AS pg_lsn) AS bigint), txid_snapshot_xmin(txid_current_snapshot())";
+	//the same for servers before 10
+	static final String MARKER_9 =
+		"SELECT CAST(pg_current_xlog_location() - CAST('0/0' AS pg_lsn) AS bigint), txid_snapshot_xmin(txid_current_snapshot())";
+	static final String ALL_ROWS = "SELECT * FROM %s ORDER BY 1";
+	//rows inserted or updated by transactions from the given id on
+	static final String CHANGED_ROWS = "SELECT * FROM %s WHERE CAST(CAST(xmin AS text) AS bigint) >= ? ORDER BY 1";
+	static final String COUNT_ROWS = "SELECT COUNT(*) FROM %s";
+
+	/**
+	 * One table of the snapshot, read from the mapped file.
+	 */
+	public static class Table{
+		private final String _name;
+		private final String[] _columns;
+		private final int[] _storage;
+		private final int[] _widths;
+		private final int[] _offsets;
+		//ResultTable kind of every column
+		private final int[] _kinds;
+		private final int _recordWidth;
+		private final int _rowCount;
+		private final int _dataOffset;
+		private final int _minId;
+		private final int _maxId;
+		private ByteBuffer _buf;
+
+		Table(String name, String[] columns, int[] storage, int[] widths, int[] kinds, int rowCount, int dataOffset, int minId, int maxId) {
+			this._name = name;
+			this._columns = columns;
+			this._storage = storage;
+			this._widths = widths;
+			this._kinds = kinds;
+			this._offsets = new int[widths.length];
+			int offset = 4;
+			for (int c = 0; c < widths.length; ++c){
+				this._offsets[c] = offset;
+				offset += widths[c];
+			}//end for
+			this._recordWidth = offset;
+			this._rowCount = rowCount;
+			this._dataOffset = dataOffset;
+			this._minId = minId;
+			this._maxId = maxId;
+		}
+
+		public String getName() {
+			return this._name;
+		}
+
+		public int rowCount() {
+			return this._rowCount;
+		}
+
+		public int columnCount() {
+			return this._columns.length;
+		}
+
+		public String columnName(int col) {
+			return this._columns[col];
+		}
+
+		/**
+		 * @return the slot of the record with the given id, -1 when there is none
+		 */
+		public int find(int id) {
+			if (this._rowCount == 0 || id < this._minId || id > this._maxId) return -1;
+			//ids without gaps are their own index
+			if (this._maxId - this._minId + 1 == this._rowCount) return id - this._minId;
+			int low = 0, high = this._rowCount - 1;
+			while (low <= high){
+				int mid = (low + high) >>> 1;
+				int key = id(mid);
+				if (key < id) low = mid + 1;
+				else if (key > id) high = mid - 1;
+				else return mid;
+			}//end while
+			return -1;
+		}
+
+		public int id(int slot) {
+			return getInt(slot, 0);
+		}
+
+		private int base(int slot) {
+			return this._dataOffset + slot * this._recordWidth;
+		}
+
+		public boolean isNull(int slot, int col) {
+			return (this._buf.getInt(base(slot)) & (1 << col)) != 0;
+		}
+
+		/**
+		 * @return false when a text of the record did not fit its column and the record has to be read from the database
+		 */
+		public boolean isComplete(int slot) {
+			return (this._buf.getInt(base(slot)) & OVERFLOW) == 0;
+		}
+
+		/**
+		 * @return the value of an INTEGER column, or the epoch day of a DATE column
+		 */
+		public int getInt(int slot, int col) {
+			return this._buf.getInt(base(slot) + this._offsets[col]);
+		}
+
+		public LocalDate getDate(int slot, int col) {
+			return isNull(slot, col) ? null : LocalDate.ofEpochDay(getInt(slot, col));
+		}
+
+		public String getString(int slot, int col) {
+			if (isNull(slot, col)) return null;
+			switch (this._storage[col]){
+				case S_INT: return Integer.toString(getInt(slot, col));
+				case S_DATE: return getDate(slot, col).toString();
+				default:
+					int at = base(slot) + this._offsets[col];
+					int length = 0;
+					while (length < this._widths[col] && this._buf.get(at + length) != 0)
+						++length;
+					byte[] bytes = new byte[length];
+					for (int i = 0; i < length; ++i)
+						bytes[i] = this._buf.get(at + i);
+					return new String(bytes, StandardCharsets.UTF_8);
+			}
+		}
+
+		/**
+		 * @return the record as a one row table, as FIND_* would return it, or null when it is not complete
+		 */
+		public ResultTable row(int slot) {
+			if (!isComplete(slot)) return null;
+			int numCol = this._columns.length;
+			Object[] data = new Object[numCol];
+			BitSet[] nulls = new BitSet[numCol];
+			List<List<String>> dictionaries = new ArrayList<List<String>>(numCol);
+			for (int c = 0; c < numCol; ++c){
+				List<String> dictionary = null;
+				boolean isNull = isNull(slot, c);
+				switch (this._kinds[c]){
+					case ResultTable.CODE:
+						dictionary = new ArrayList<String>(1);
+						if (!isNull) dictionary.add(getString(slot, c));
+						data[c] = new int[1];
+						break;
+					case ResultTable.TEXT:
+						data[c] = new String[]{getString(slot, c)};
+						break;
+					default:
+						data[c] = new int[]{isNull ? 0 : getInt(slot, c)};
+				}
+				if (isNull){
+					nulls[c] = new BitSet();
+					nulls[c].set(0);
+				}//end if
+				dictionaries.add(dictionary);
+			}//end for
+			return new ResultTable(this._columns, this._kinds, data, dictionaries, nulls, 1);
+		}
+
+		/**
+		 * @return true when rows of the given result can be stored with this table's layout
+		 */
+		boolean sameLayout(ResultSetMetaData rsmd) throws SQLException {
+			if (rsmd.getColumnCount() != this._columns.length) return false;
+			for (int c = 0; c < this._columns.length; ++c){
+				if (!rsmd.getColumnName(c + 1).equals(this._columns[c]) || storageOf(rsmd, c + 1) != this._storage[c]
+						|| widthOf(rsmd, c + 1) != this._widths[c]) return false;
+			}//end for
+			return true;
+		}
+
+		/**
+		 * Copies a record as it is into a new file.
+		 */
+		void copy(int slot, Out out) throws IOException {
+			int at = base(slot);
+			for (int i = 0; i < this._recordWidth; ++i)
+				out.put(this._buf.get(at + i));
+		}
+	}
+
+	/**
+	 * Writes a snapshot file through a buffer, and can go back to an
+	 * earlier position to write a table again.
+	 */
+	static class Out{
+		private final FileChannel _channel;
+		private final ByteBuffer _buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		private long _flushed = 0;
+
+		Out(FileChannel channel) {
+			this._channel = channel;
+		}
+
+		long position() {
+			return this._flushed + this._buffer.position();
+		}
+
+		private void room(int bytes) throws IOException {
+			if (this._buffer.remaining() < bytes) flush();
+		}
+
+		void put(byte b) throws IOException {
+			room(1);
+			this._buffer.put(b);
+		}
+
+		void putInt(int value) throws IOException {
+			room(4);
+			this._buffer.putInt(value);
+		}
+
+		void putLong(long value) throws IOException {
+			room(8);
+			this._buffer.putLong(value);
+		}
+
+		/**
+		 * Writes exactly width bytes, padded with zeros.
+		 */
+		void putBytes(byte[] bytes, int width) throws IOException {
+			for (int i = 0; i < width; ++i)
+				put(i < bytes.length ? bytes[i] : 0);
+		}
+
+		void putName(String name) throws IOException {
+			putBytes(name.getBytes(StandardCharsets.UTF_8), NAME_BYTES);
+		}
+
+		/**
+		 * Discards everything written from the given position on.
+		 */
+		void rewind(long position) throws IOException {
+			flush();
+			this._channel.truncate(position);
+			this._channel.position(position);
+			this._flushed = position;
+		}
+
+		void flush() throws IOException {
+			this._buffer.flip();
+			while (this._buffer.hasRemaining())
+				this._flushed += this._channel.write(this._buffer);
+			this._buffer.clear();
+		}
+	}
+
+	private final File _file;
+	private final long _lsn;
+	private final long _txid;
+	private final Map<String, Table> _tables = new LinkedHashMap<String, Table>();
+	//rows read from the database to bring the file up to date
+	private int _fetched = 0;
+	//"current", "refreshed" or "written"
+	private String _status = "current";
+
+	private ReferenceSnapshot(File file, long lsn, long txid) {
+		this._file = file;
+		this._lsn = lsn;
+		this._txid = txid;
+	}
+
+	/**
+	 * Method to open a snapshot file and bring it up to date with the
+	 * database, writing it from scratch when it is missing, unreadable or
+	 * of an older format.
+	 *
+	 * @param esql the database to read from
+	 * @param file the snapshot file
+	 * @return the current snapshot
+	 * @throws java.sql.SQLException when the tables could not be read
+	 * @throws java.io.IOException when the file could not be written
+	 */
+	public static ReferenceSnapshot load(final DBproject esql, final File file) throws SQLException, IOException {
+		final ReferenceSnapshot old = file.exists() ? open(file) : null;
+		final File tmp = new File(file.getPath() + ".tmp");
+		final int[] fetched = new int[1];
+		//set when the file was current and nothing was written
+		final boolean[] current = new boolean[1];
+		esql.transaction(new DBproject.Work<Void>(){
+			public Void run(CachedConnection conn) throws SQLException {
+				String marker = conn.getConnection().getMetaData().getDatabaseMajorVersion() >= 10 ? MARKER : MARKER_9;
+				ResultTable mark = esql.executeQueryAndReturnTable(marker);
+				long lsn = mark.getLong(0, 0), txid = mark.getLong(0, 1);
+				if (old != null && old._lsn == lsn){
+					current[0] = true;
+					return null;
+				}//end if
+				//xmin holds the low 32 bits of a transaction id, rows of another epoch can not be told apart
+				boolean incremental = old != null && (old._txid >>> 32) == (txid >>> 32);
+				try{
+					RandomAccessFile raf = new RandomAccessFile(tmp, "rw");
+					try{
+						raf.setLength(0);
+						Out out = new Out(raf.getChannel());
+						out.putInt(MAGIC);
+						out.putInt(FORMAT);
+						out.putLong(lsn);
+						out.putLong(txid);
+						List<Table> tables = new ArrayList<Table>();
+						for (String name : TABLES){
+							Table previous = incremental ? old._tables.get(name) : null;
+							tables.add(writeTable(conn, name, previous, previous == null ? 0 : old._txid & 0xFFFFFFFFL, out, fetched));
+						}//end for
+						long directory = out.position();
+						out.putInt(tables.size());
+						for (Table t : tables)
+							writeDirectory(t, out);
+						out.putLong(directory);
+						out.flush();
+						raf.getChannel().force(true);
+					}finally{
+						raf.close();
+					}
+				}catch (IOException e){
+					throw new SQLException("could not write snapshot " + tmp + ": " + e.getMessage(), e);
+				}//end try
+				return null;
+			}
+		});
+		if (current[0]) return old;
+		Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		ReferenceSnapshot snapshot = open(file);
+		if (snapshot == null) throw new IOException("snapshot " + file + " could not be read back");
+		snapshot._fetched = fetched[0];
+		snapshot._status = old == null ? "written" : "refreshed";
+		return snapshot;
+	}//end load
+
+	/**
+	 * Writes the records of a table, merging the rows changed since the
+	 * previous snapshot into its records when there is one.
+	 */
+	private static Table writeTable(CachedConnection conn, String name, Table previous, long xmin, Out out, int[] fetched) throws SQLException, IOException {
+		long start = out.position();
+		if (previous != null){
+			Table merged = writeRows(conn, name, previous, String.format(CHANGED_ROWS, name), start, out, fetched, xmin);
+			if (merged != null){
+				int rows;
+				ResultSet count = DBproject.prepare(conn, String.format(COUNT_ROWS, name)).executeQuery();
+				try{
+					rows = count.next() ? count.getInt(1) : -1;
+				}finally{
+					count.close();
+				}
+				if (rows == merged.rowCount()) return merged;
+			}//end if
+			//rows were deleted or the columns changed
+			out.rewind(start);
+		}//end if
+		return writeRows(conn, name, null, String.format(ALL_ROWS, name), start, out, fetched);
+	}
+
+	/**
+	 * Streams the rows of a query into records, merged by id with the
+	 * records of previous when it is given.
+	 *
+	 * @return the table written, or null when the rows do not fit the layout of previous
+	 */
+	private static Table writeRows(CachedConnection conn, String name, Table previous, String sql, long start, Out out,
+			int[] fetched, Object... params) throws SQLException, IOException {
+		PreparedStatement stmt = DBproject.prepare(conn, sql, params);
+		stmt.setFetchSize(DBproject.FETCH_SIZE);
+		ResultSet rs = stmt.executeQuery();
+		try{
+			ResultSetMetaData rsmd = rs.getMetaData();
+			if (previous != null && !previous.sameLayout(rsmd)) return null;
+			int numCol = rsmd.getColumnCount();
+			if (numCol > MAX_COLUMNS) throw new SQLException(name + " has more than " + MAX_COLUMNS + " columns");
+			String[] columns = new String[numCol];
+			int[] storage = new int[numCol], widths = new int[numCol], kinds = new int[numCol];
+			for (int c = 0; c < numCol; ++c){
+				columns[c] = rsmd.getColumnName(c + 1);
+				storage[c] = storageOf(rsmd, c + 1);
+				widths[c] = widthOf(rsmd, c + 1);
+				kinds[c] = ResultTable.kindOf(rsmd, c + 1);
+			}//end for
+			if (storage[0] != S_INT) throw new SQLException("the first column of " + name + " is not an integer key");
+
+			int rows = 0, minId = 0, maxId = 0, slot = 0;
+			int oldRows = previous == null ? 0 : previous.rowCount();
+			boolean more = rs.next();
+			while (more || slot < oldRows){
+				int id;
+				if (more && (slot >= oldRows || rs.getInt(1) <= previous.id(slot))){
+					id = rs.getInt(1);
+					//a changed row replaces its old record
+					if (slot < oldRows && previous.id(slot) == id) ++slot;
+					writeRecord(rs, storage, widths, out);
+					++fetched[0];
+					more = rs.next();
+				}else{
+					id = previous.id(slot);
+					previous.copy(slot++, out);
+				}//end if
+				if (rows == 0) minId = id;
+				maxId = id;
+				++rows;
+			}//end while
+			return new Table(name, columns, storage, widths, kinds, rows, (int) start, minId, maxId);
+		}finally{
+			rs.close();
+		}
+	}
+
+	private static void writeRecord(ResultSet rs, int[] storage, int[] widths, Out out) throws SQLException, IOException {
+		int mask = 0;
+		int[] ints = new int[storage.length];
+		byte[][] texts = new byte[storage.length][];
+		for (int c = 0; c < storage.length; ++c){
+			int i = c + 1;
+			switch (storage[c]){
+				case S_INT:
+					ints[c] = rs.getInt(i);
+					break;
+				case S_DATE:
+					Date date = rs.getDate(i);
+					if (date != null) ints[c] = (int) date.toLocalDate().toEpochDay();
+					break;
+				default:
+					String text = rs.getString(i);
+					if (text != null){
+						texts[c] = text.getBytes(StandardCharsets.UTF_8);
+						if (texts[c].length > widths[c]) mask |= OVERFLOW;
+					}//end if
+			}
+			if (rs.wasNull()) mask |= 1 << c;
+		}//end for
+		out.putInt(mask);
+		for (int c = 0; c < storage.length; ++c){
+			if (storage[c] == S_CHAR) out.putBytes(texts[c] == null ? new byte[0] : texts[c], widths[c]);
+			else out.putInt(ints[c]);
+		}//end for
+	}
+
+	private static void writeDirectory(Table t, Out out) throws IOException {
+		out.putName(t._name);
+		out.putInt(t._columns.length);
+		out.putInt(t._rowCount);
+		out.putLong(t._dataOffset);
+		out.putInt(t._minId);
+		out.putInt(t._maxId);
+		for (int c = 0; c < t._columns.length; ++c){
+			out.putName(t._columns[c]);
+			out.putInt(t._storage[c]);
+			out.putInt(t._widths[c]);
+			out.putInt(t._kinds[c]);
+		}//end for
+	}
+
+	static int storageOf(ResultSetMetaData rsmd, int col) throws SQLException {
+		switch (rsmd.getColumnType(col)){
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				return S_INT;
+			case Types.DATE:
+				return S_DATE;
+			case Types.CHAR:
+			case Types.VARCHAR:
+				//unbounded text has no fixed width
+				if (rsmd.getPrecision(col) > 0 && rsmd.getPrecision(col) < Integer.MAX_VALUE) return S_CHAR;
+				break;
+		}
+		throw new SQLException("column " + rsmd.getColumnName(col) + " has no fixed width");
+	}
+
+	static int widthOf(ResultSetMetaData rsmd, int col) throws SQLException {
+		return storageOf(rsmd, col) == S_CHAR ? rsmd.getPrecision(col) : 4;
+	}
+
+	/**
+	 * Maps a snapshot file.
+	 *
+	 * @return the snapshot, or null when the file is not a snapshot of the current format
+	 */
+	static ReferenceSnapshot open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try{
+			long size = raf.length();
+			if (size < 32 || size > Integer.MAX_VALUE) return null;
+			//the mapping stays valid after the channel is closed
+			MappedByteBuffer buf = raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, size);
+			if (buf.getInt(0) != MAGIC || buf.getInt(4) != FORMAT) return null;
+			ReferenceSnapshot snapshot = new ReferenceSnapshot(file, buf.getLong(8), buf.getLong(16));
+			buf.position((int) buf.getLong((int) size - 8));
+			int tables = buf.getInt();
+			for (int t = 0; t < tables; ++t){
+				String name = readName(buf);
+				int numCol = buf.getInt();
+				int rows = buf.getInt();
+				int dataOffset = (int) buf.getLong();
+				int minId = buf.getInt(), maxId = buf.getInt();
+				String[] columns = new String[numCol];
+				int[] storage = new int[numCol], widths = new int[numCol], kinds = new int[numCol];
+				for (int c = 0; c < numCol; ++c){
+					columns[c] = readName(buf);
+					storage[c] = buf.getInt();
+					widths[c] = buf.getInt();
+					kinds[c] = buf.getInt();
+				}//end for
+				Table table = new Table(name, columns, storage, widths, kinds, rows, dataOffset, minId, maxId);
+				table._buf = buf;
+				snapshot._tables.put(name, table);
+			}//end for
+			return snapshot;
+		}finally{
+			raf.close();
+		}
+	}
+
+	private static String readName(ByteBuffer buf) {
+		byte[] bytes = new byte[NAME_BYTES];
+		buf.get(bytes);
+		int length = 0;
+		while (length < NAME_BYTES && bytes[length] != 0)
+			++length;
+		return new String(bytes, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @return the table with the given name, e.g. "Plane", or null when the snapshot does not hold it
+	 */
+	public Table table(String name) {
+		return this._tables.get(name);
+	}
+
+	/**
+	 * @return the WAL position the snapshot is current with
+	 */
+	public long getLsn() {
+		return this._lsn;
+	}
+
+	/**
+	 * @return the rows read from the database by load
+	 */
+	public int getFetched() {
+		return this._fetched;
+	}
+
+	public String toString() {
+		int rows = 0;
+		for (Table t : this._tables.values())
+			rows += t.rowCount();
+		return String.format("snapshot %s: %d tables, %d rows, %.1f MB, %s at WAL position %d, %d rows fetched",
+				this._file, this._tables.size(), rows, this._file.length() / 1e6, this._status, this._lsn, this._fetched);
+	}
+}
@@ -0,0 +1,263 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+
+/**
+ * This class spreads read-only statements over streaming replicas of the
+ * database, round robin.  A statement is read-only when it is a SELECT or
+ * a WITH query that neither writes rows, locks them nor calls a function
+ * with side effects; everything else, and every statement of a
+ * transaction, stays on the primary.
+ *
+ * A background thread checks every replica at a fixed interval: a replica
+ * that can not be reached, or whose replay lags the WAL it received or its
+ * last received change by more than the threshold, gets no reads until a
+ * later check finds it caught up.  A read that fails on a replica before
+ * any row was handed over is retried on the primary, which also catches a
+ * write classified as a read.
+ *
+ * Reads from a replica may miss the primary's last commits by up to the
+ * threshold, so DBproject keeps the loads of its caches on the primary.
+ */
+
+public class ReplicaRouter{
+	//replay lag past which a replica gets no reads
+	public static final long DEFAULT_MAX_LAG_MILLIS = 1000;
+	//time between two checks of every replica
+	static final long CHECK_INTERVAL_MILLIS = 500;
+	static final int CONNECT_TIMEOUT_SECONDS = 2;
+
+	static final Pattern QUERY = Pattern.compile("^\\s*(SELECT|WITH)\\b", Pattern.CASE_INSENSITIVE);
+	static final Pattern WRITES = Pattern.compile(
+			"\\b(INSERT|UPDATE|DELETE|MERGE|nextval|currval|setval|lastval|pg_notify|txid_current|" +
+			"pg_current_wal_lsn|pg_current_xlog_location|pg_advisory_\\w+)\\b|\\bFOR\\s+(NO\\s+KEY\\s+)?(UPDATE|SHARE|KEY\\s+SHARE)\\b",
+			Pattern.CASE_INSENSITIVE);
+
+	//replay lag in milliseconds; none while replay keeps up with a streaming WAL receiver
+	static final String LAG =
+		"SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+		"WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() " +
+		"AND EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN 0 " +
+		"ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+	//the same before Postgres 10
+	static final String LAG_9 =
+		"SELECT CASE WHEN NOT pg_is_in_recovery() THEN 0 " +
+		"WHEN pg_last_xlog_receive_location() = pg_last_xlog_replay_location() " +
+		"AND EXISTS (SELECT 1 FROM pg_stat_wal_receiver WHERE status = 'streaming') THEN 0 " +
+		"ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()) * 1000, 0) END";
+
+	//read-only or not, by SQL template
+	private static final Map<String, Boolean> _readOnly = new ConcurrentHashMap<String, Boolean>();
+
+	/**
+	 * One replica endpoint and its pool.
+	 */
+	public static class Replica{
+		public final String endpoint;
+		final ConnectionPool pool;
+		//unreachable or lagging, set by the checks and by failed reads
+		volatile boolean down = true;
+		volatile long lagMillis = -1;
+		final AtomicLong reads = new AtomicLong();
+		final AtomicLong failures = new AtomicLong();
+
+		Replica(String endpoint, ConnectionPool pool) {
+			this.endpoint = endpoint;
+			this.pool = pool;
+		}
+
+		CachedConnection checkout() throws SQLException {
+			return this.pool.checkout();
+		}
+
+		void release(CachedConnection conn, boolean failed) {
+			this.pool.release(conn, failed);
+		}
+
+		/**
+		 * Takes the replica out of rotation until the next check succeeds.
+		 */
+		void failed() {
+			this.failures.incrementAndGet();
+			this.down = true;
+		}
+
+		public String toString() {
+			return String.format("replica %s: %s, lag %d ms, %d reads, %d failures",
+					this.endpoint, this.down ? "down" : "up", this.lagMillis, this.reads.get(), this.failures.get());
+		}
+	}
+
+	private final Replica[] _replicas;
+	private final long _maxLagMillis;
+	private final AtomicInteger _next = new AtomicInteger();
+	//reads routed to the primary because no replica was up
+	private final AtomicLong _fallbacks = new AtomicLong();
+	private final Thread _checker;
+	private volatile boolean _closed = false;
+
+	/**
+	 * @param endpoints the replicas as host:port, serving the same database as the primary
+	 * @param poolSize connections kept per replica
+	 * @param maxLagMillis the replay lag past which a replica gets no reads
+	 */
+	public ReplicaRouter(List<String> endpoints, String dbname, String user, String passwd, int poolSize, long maxLagMillis) {
+		if (endpoints.isEmpty()) throw new IllegalArgumentException("no replica endpoints");
+		this._replicas = new Replica[endpoints.size()];
+		for (int i = 0; i < this._replicas.length; ++i){
+			//a replica that is down should not hold up the checks for long
+			String url = "jdbc:postgresql://" + endpoints.get(i) + "/" + dbname + "?connectTimeout=" + CONNECT_TIMEOUT_SECONDS;
+			this._replicas[i] = new Replica(endpoints.get(i), new ConnectionPool(url, user, passwd, poolSize));
+		}//end for
+		this._maxLagMillis = maxLagMillis;
+		//replicas take reads once the first check passed
+		checkAll();
+		this._checker = new Thread(new Runnable(){
+			public void run() {
+				checkLoop();
+			}
+		}, "replica-checker");
+		this._checker.setDaemon(true);
+		this._checker.start();
+	}
+
+	/**
+	 * @return true when a statement can run on a replica
+	 */
+	public static boolean isReadOnly(String sql) {
+		Boolean readOnly = _readOnly.get(sql);
+		if (readOnly == null){
+			readOnly = QUERY.matcher(sql).find() && !WRITES.matcher(sql).find();
+			_readOnly.put(sql, readOnly);
+		}//end if
+		return readOnly;
+	}
+
+	/**
+	 * @return true when a failed read is worth retrying on the primary: the
+	 * replica is unreachable or shutting down, replay cancelled the query,
+	 * or the statement was not read-only after all
+	 */
+	public static boolean isReplicaFailure(SQLException e) {
+		String state = e.getSQLState();
+		return state == null || state.startsWith("08") || state.startsWith("57P") || state.equals("40001") || state.equals("25006");
+	}
+
+	/**
+	 * Method to pick the next replica that is up, round robin.
+	 *
+	 * @return the replica, or null when none is up
+	 */
+	public Replica pick() {
+		int start = this._next.getAndIncrement() & Integer.MAX_VALUE;
+		for (int i = 0; i < this._replicas.length; ++i){
+			Replica replica = this._replicas[(start + i) % this._replicas.length];
+			if (!replica.down){
+				replica.reads.incrementAndGet();
+				return replica;
+			}//end if
+		}//end for
+		this._fallbacks.incrementAndGet();
+		return null;
+	}
+
+	private void checkLoop() {
+		while (!this._closed){
+			try{
+				Thread.sleep(CHECK_INTERVAL_MILLIS);
+			}catch (InterruptedException e){
+				return;
+			}//end try
+			checkAll();
+		}//end while
+	}
+
+	void checkAll() {
+		for (Replica replica : this._replicas)
+			check(replica);
+	}
+
+	/**
+	 * Measures a replica's lag and takes it in or out of rotation.
+	 */
+	private void check(Replica replica) {
+		CachedConnection conn = null;
+		boolean failed = true;
+		try{
+			conn = replica.checkout();
+			Connection c = conn.getConnection();
+			String lag = c.getMetaData().getDatabaseMajorVersion() >= 10 ? LAG : LAG_9;
+			ResultSet rs = conn.prepare(lag).executeQuery();
+			try{
+				rs.next();
+				replica.lagMillis = (long) rs.getDouble(1);
+			}finally{
+				rs.close();
+			}
+			failed = false;
+			replica.down = replica.lagMillis > this._maxLagMillis;
+		}catch (SQLException e){
+			replica.lagMillis = -1;
+			replica.down = true;
+		}finally{
+			if (conn != null) replica.release(conn, failed);
+		}
+	}
+
+	/**
+	 * @return the replicas, in the order given
+	 */
+	public List<Replica> getReplicas() {
+		List<Replica> replicas = new ArrayList<Replica>();
+		for (Replica replica : this._replicas)
+			replicas.add(replica);
+		return replicas;
+	}
+
+	public long getMaxLagMillis() {
+		return this._maxLagMillis;
+	}
+
+	public long getFallbacks() {
+		return this._fallbacks.get();
+	}
+
+	/**
+	 * Method to stop the checks and close every replica's pool.
+	 */
+	public void close() {
+		this._closed = true;
+		this._checker.interrupt();
+		for (Replica replica : this._replicas)
+			replica.pool.close();
+	}
+
+	public String toString() {
+		StringBuilder s = new StringBuilder(String.format("Replica routing: max lag %d ms, %d reads on the primary for want of a replica",
+				this._maxLagMillis, getFallbacks()));
+		for (Replica replica : this._replicas)
+			s.append('\n').append(replica);
+		return s.toString();
+	}
+}
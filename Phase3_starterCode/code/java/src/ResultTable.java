@@ -0,0 +1,303 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+
+/**
+ * This class holds a query result column by column in primitive arrays
+ * instead of one String per cell.  Integer columns are kept as int[] or
+ * long[], dates as int[] epoch days and short CHAR columns such as airport
+ * codes or reservation status as int[] indexes into a per-column
+ * dictionary.  Only long text columns keep one String per cell.
+ *
+ * A ResultTable is filled through its Builder, which is a
+ * DBproject.RowHandler and so can be fed by executeQueryStreaming.
+ */
+
+public class ResultTable{
+	//how a column is stored
+	public static final int INT = 0;
+	public static final int LONG = 1;
+	public static final int DOUBLE = 2;
+	public static final int DATE = 3;
+	public static final int CODE = 4;
+	public static final int TEXT = 5;
+
+	//CHAR columns up to this length are dictionary encoded
+	static final int MAX_CODE_LENGTH = 8;
+	static final int INITIAL_CAPACITY = 16;
+
+	private final String[] _names;
+	private final int[] _kinds;
+	//one array per column, its type depends on the column kind
+	private final Object[] _data;
+	//per column dictionary of CODE columns
+	private final List<List<String>> _dictionaries;
+	//null cells per column, null when the column has none
+	private final BitSet[] _nulls;
+	private final int _rowCount;
+
+	ResultTable(String[] names, int[] kinds, Object[] data, List<List<String>> dictionaries, BitSet[] nulls, int rowCount) {
+		this._names = names;
+		this._kinds = kinds;
+		this._data = data;
+		this._dictionaries = dictionaries;
+		this._nulls = nulls;
+		this._rowCount = rowCount;
+	}
+
+	public int rowCount() {
+		return this._rowCount;
+	}
+
+	public int columnCount() {
+		return this._names.length;
+	}
+
+	public String columnName(int col) {
+		return this._names[col];
+	}
+
+	/**
+	 * @return one of INT, LONG, DOUBLE, DATE, CODE or TEXT
+	 */
+	public int kind(int col) {
+		return this._kinds[col];
+	}
+
+	public boolean isNull(int row, int col) {
+		return this._nulls[col] != null && this._nulls[col].get(row);
+	}
+
+	/**
+	 * @return the value of an INT column, or of a LONG column that fits
+	 */
+	public int getInt(int row, int col) {
+		switch (this._kinds[col]){
+			case INT: return ((int[]) this._data[col])[row];
+			case LONG: return Math.toIntExact(((long[]) this._data[col])[row]);
+			case DOUBLE: return (int) ((double[]) this._data[col])[row];
+			default: return Integer.parseInt(getString(row, col).trim());
+		}
+	}
+
+	public long getLong(int row, int col) {
+		switch (this._kinds[col]){
+			case INT: return ((int[]) this._data[col])[row];
+			case LONG: return ((long[]) this._data[col])[row];
+			case DOUBLE: return (long) ((double[]) this._data[col])[row];
+			default: return Long.parseLong(getString(row, col).trim());
+		}
+	}
+
+	public double getDouble(int row, int col) {
+		switch (this._kinds[col]){
+			case INT: return ((int[]) this._data[col])[row];
+			case LONG: return ((long[]) this._data[col])[row];
+			case DOUBLE: return ((double[]) this._data[col])[row];
+			default: return Double.parseDouble(getString(row, col).trim());
+		}
+	}
+
+	/**
+	 * @return the value of a DATE column as days since 1970-01-01
+	 */
+	public int getEpochDay(int row, int col) {
+		if (this._kinds[col] != DATE) throw new IllegalArgumentException("not a date column: " + this._names[col]);
+		return ((int[]) this._data[col])[row];
+	}
+
+	public LocalDate getDate(int row, int col) {
+		return isNull(row, col) ? null : LocalDate.ofEpochDay(getEpochDay(row, col));
+	}
+
+	/**
+	 * @return the dictionary index of a CODE column; equal codes have equal indexes
+	 */
+	public int getCode(int row, int col) {
+		if (this._kinds[col] != CODE) throw new IllegalArgumentException("not a code column: " + this._names[col]);
+		return ((int[]) this._data[col])[row];
+	}
+
+	/**
+	 * @return the distinct values of a CODE column, indexed by getCode
+	 */
+	public List<String> dictionary(int col) {
+		return this._dictionaries.get(col);
+	}
+
+	/**
+	 * @return the value of any column as text, or null for a null cell
+	 */
+	public String getString(int row, int col) {
+		if (isNull(row, col)) return null;
+		switch (this._kinds[col]){
+			case INT: return Integer.toString(((int[]) this._data[col])[row]);
+			case LONG: return Long.toString(((long[]) this._data[col])[row]);
+			case DOUBLE: return Double.toString(((double[]) this._data[col])[row]);
+			case DATE: return LocalDate.ofEpochDay(((int[]) this._data[col])[row]).toString();
+			case CODE: return this._dictionaries.get(col).get(((int[]) this._data[col])[row]);
+			default: return ((String[]) this._data[col])[row];
+		}
+	}
+
+	/**
+	 * Fills a ResultTable from the rows of a result set.  Streamed, it gets
+	 * the columns up front, so a result without rows keeps them too.
+	 */
+	public static class Builder implements DBproject.ColumnHandler{
+		private String[] names;
+		private int[] kinds;
+		private Object[] data;
+		private List<List<String>> dictionaries;
+		private List<HashMap<String, Integer>> codes;
+		private BitSet[] nulls;
+		private int rows = 0;
+		private int capacity = INITIAL_CAPACITY;
+
+		public void columns(ResultSetMetaData rsmd) throws SQLException {
+			//a read retried on the primary has the same columns
+			if (this.names == null) init(rsmd);
+		}
+
+		public void row(ResultSet rs) throws SQLException {
+			if (this.names == null) init(rs.getMetaData());
+			if (this.rows == this.capacity) grow();
+			for (int c = 0; c < this.kinds.length; ++c){
+				int i = c + 1;
+				switch (this.kinds[c]){
+					case INT:
+						((int[]) this.data[c])[this.rows] = rs.getInt(i);
+						break;
+					case LONG:
+						((long[]) this.data[c])[this.rows] = rs.getLong(i);
+						break;
+					case DOUBLE:
+						((double[]) this.data[c])[this.rows] = rs.getDouble(i);
+						break;
+					case DATE:
+						Date date = rs.getDate(i);
+						if (date != null) ((int[]) this.data[c])[this.rows] = (int) date.toLocalDate().toEpochDay();
+						break;
+					case CODE:
+						String code = rs.getString(i);
+						if (code != null) ((int[]) this.data[c])[this.rows] = encode(c, code);
+						break;
+					default:
+						((String[]) this.data[c])[this.rows] = rs.getString(i);
+				}
+				if (rs.wasNull()){
+					if (this.nulls[c] == null) this.nulls[c] = new BitSet();
+					this.nulls[c].set(this.rows);
+				}//end if
+			}//end for
+			++this.rows;
+		}
+
+		private void init(ResultSetMetaData rsmd) throws SQLException {
+			int numCol = rsmd.getColumnCount();
+			this.names = new String[numCol];
+			this.kinds = new int[numCol];
+			this.data = new Object[numCol];
+			this.nulls = new BitSet[numCol];
+			this.dictionaries = new ArrayList<List<String>>(numCol);
+			this.codes = new ArrayList<HashMap<String, Integer>>(numCol);
+			for (int c = 0; c < numCol; ++c){
+				this.names[c] = rsmd.getColumnName(c + 1);
+				this.kinds[c] = kindOf(rsmd, c + 1);
+				this.data[c] = allocate(this.kinds[c], this.capacity);
+				boolean code = this.kinds[c] == CODE;
+				this.dictionaries.add(code ? new ArrayList<String>() : null);
+				this.codes.add(code ? new HashMap<String, Integer>() : null);
+			}//end for
+		}
+
+		private int encode(int col, String value) {
+			HashMap<String, Integer> index = this.codes.get(col);
+			Integer code = index.get(value);
+			if (code == null){
+				List<String> dictionary = this.dictionaries.get(col);
+				code = dictionary.size();
+				dictionary.add(value);
+				index.put(value, code);
+			}//end if
+			return code;
+		}
+
+		private void grow() {
+			this.capacity *= 2;
+			for (int c = 0; c < this.data.length; ++c)
+				this.data[c] = resize(this.data[c], this.capacity);
+		}
+
+		public ResultTable build() {
+			if (this.names == null)
+				return new ResultTable(new String[0], new int[0], new Object[0], new ArrayList<List<String>>(), new BitSet[0], 0);
+			for (int c = 0; c < this.data.length; ++c)
+				this.data[c] = resize(this.data[c], this.rows);
+			return new ResultTable(this.names, this.kinds, this.data, this.dictionaries, this.nulls, this.rows);
+		}
+	}
+
+	static int kindOf(ResultSetMetaData rsmd, int col) throws SQLException {
+		switch (rsmd.getColumnType(col)){
+			case Types.INTEGER:
+			case Types.SMALLINT:
+			case Types.TINYINT:
+				return INT;
+			case Types.BIGINT:
+				return LONG;
+			case Types.NUMERIC:
+			case Types.DECIMAL:
+				//unconstrained numeric reports precision 0
+				return rsmd.getScale(col) == 0 && rsmd.getPrecision(col) > 0 && rsmd.getPrecision(col) <= 18 ? LONG : DOUBLE;
+			case Types.REAL:
+			case Types.FLOAT:
+			case Types.DOUBLE:
+				return DOUBLE;
+			case Types.DATE:
+				return DATE;
+			case Types.CHAR:
+				return rsmd.getPrecision(col) <= MAX_CODE_LENGTH ? CODE : TEXT;
+			default:
+				return TEXT;
+		}
+	}
+
+	static Object allocate(int kind, int capacity) {
+		switch (kind){
+			case LONG: return new long[capacity];
+			case DOUBLE: return new double[capacity];
+			case TEXT: return new String[capacity];
+			default: return new int[capacity];
+		}
+	}
+
+	static Object resize(Object array, int length) {
+		if (array instanceof int[]) return Arrays.copyOf((int[]) array, length);
+		if (array instanceof long[]) return Arrays.copyOf((long[]) array, length);
+		if (array instanceof double[]) return Arrays.copyOf((double[]) array, length);
+		return Arrays.copyOf((String[]) array, length);
+	}
+}
@@ -0,0 +1,589 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+
+/**
+ * This class answers "how do I get from A to B on day D" from an in-memory
+ * copy of the flight network.  Flights are kept column by column in int
+ * arrays, airports as int ids, and two compressed adjacency lists index
+ * them: the flights leaving each airport and the flights arriving at each
+ * airport, both sorted by departure day, so the flights of an airport on a
+ * range of days are found with a binary search.
+ *
+ * Flights added after the adjacency lists were built are kept in an
+ * unindexed tail that every search scans; the lists are rebuilt in memory
+ * once the tail grows past a fraction of the network.  Flight only stores
+ * dates, so layovers are counted in days.
+ *
+ * Seats left are kept per flight and filter the candidates when seats are
+ * asked for.  Flights noted as changed are re-read before the next search,
+ * and a change of planes re-reads the seats of every flight; other changes
+ * only show after a reload.  The routes returned are checked against the
+ * seat cache, so seats sold since are never offered.
+ */
+
+public class RouteGraph{
+	//longest layover considered, in days
+	public static final int DEFAULT_MAX_LAYOVER_DAYS = 1;
+	//routes returned by a search when no limit is given
+	public static final int DEFAULT_LIMIT = 20;
+	public static final int MAX_CONNECTIONS = 2;
+	//the tail is indexed once it holds this share of the flights
+	static final int REINDEX_FRACTION = 16;
+	static final int MIN_REINDEX = 1024;
+	static final int INITIAL_CAPACITY = 1024;
+
+	//a flight without a plane has no seats, rather than fewer than none
+	static final String SEATS_LEFT =
+		"GREATEST(COALESCE((SELECT P.seats FROM FlightInfo FI, Plane P WHERE FI.flight_id = F.fnum AND P.id = FI.plane_id LIMIT 1), 0) - F.num_sold, 0)";
+	static final String LOAD_FLIGHTS =
+		"SELECT F.fnum, F.departure_airport, F.arrival_airport, F.actual_departure_date, F.actual_arrival_date, F.cost, F.num_stops, " +
+		SEATS_LEFT + " FROM Flight F";
+	static final String LOAD_ADDED = LOAD_FLIGHTS + " WHERE F.fnum = ANY (?)";
+	static final String LOAD_SEATS = "SELECT F.fnum, " + SEATS_LEFT + " FROM Flight F";
+
+	/**
+	 * One way from an airport to another: one to three flights.
+	 */
+	public static class Route{
+		public final int[] fnums;
+		//departure airport followed by the arrival airport of every leg
+		public final String[] airports;
+		public final LocalDate departure;
+		public final LocalDate arrival;
+		public final int cost;
+
+		Route(int[] fnums, String[] airports, LocalDate departure, LocalDate arrival, int cost) {
+			this.fnums = fnums;
+			this.airports = airports;
+			this.departure = departure;
+			this.arrival = arrival;
+			this.cost = cost;
+		}
+
+		public int connections() {
+			return this.fnums.length - 1;
+		}
+
+		public String toString() {
+			StringBuilder s = new StringBuilder();
+			for (int i = 0; i < this.airports.length; ++i)
+				s.append(i == 0 ? "" : " -> ").append(this.airports[i]);
+			s.append(": flight");
+			for (int i = 0; i < this.fnums.length; ++i)
+				s.append(i == 0 ? " " : ", ").append(this.fnums[i]);
+			return s.append(", departs ").append(this.departure).append(", arrives ").append(this.arrival)
+					.append(", cost ").append(this.cost).toString();
+		}
+	}
+
+	/**
+	 * The flights as seen by searches.  Columns are only appended to, so a
+	 * network stays valid for its count while later flights are added.
+	 */
+	private static class Network{
+		final int count;
+		final int[] fnum, from, to, dep, arr, cost, stops, seats;
+		final String[] codes;
+		//days the longest flight takes
+		final int longest;
+		//flights [0, indexed) are in the adjacency lists
+		final int indexed;
+		//flights of airport a are out[outStart[a] .. outStart[a + 1]), sorted by departure day
+		final int[] outStart, out;
+		final int[] inStart, in;
+
+		Network(int count, int[][] columns, String[] codes, int longest, int indexed, int[] outStart, int[] out, int[] inStart, int[] in) {
+			this.count = count;
+			this.fnum = columns[0];
+			this.from = columns[1];
+			this.to = columns[2];
+			this.dep = columns[3];
+			this.arr = columns[4];
+			this.cost = columns[5];
+			this.stops = columns[6];
+			this.seats = columns[7];
+			this.codes = codes;
+			this.longest = longest;
+			this.indexed = indexed;
+			this.outStart = outStart;
+			this.out = out;
+			this.inStart = inStart;
+			this.in = in;
+		}
+
+		int[][] columns() {
+			return new int[][]{this.fnum, this.from, this.to, this.dep, this.arr, this.cost, this.stops, this.seats};
+		}
+
+		/**
+		 * @return true when the adjacency lists have an entry for the airport
+		 */
+		boolean listed(int airport) {
+			return airport + 1 < this.outStart.length;
+		}
+
+		/**
+		 * @return the first position of adjacency list entries of an airport departing on or after a day
+		 */
+		int first(int[] start, int[] list, int airport, int day) {
+			int low = start[airport], high = start[airport + 1];
+			while (low < high){
+				int mid = (low + high) >>> 1;
+				if (this.dep[list[mid]] < day) low = mid + 1;
+				else high = mid;
+			}//end while
+			return low;
+		}
+	}
+
+	private final DBproject _esql;
+	private final Map<String, Integer> _airports = new ConcurrentHashMap<String, Integer>();
+	private volatile Network _network = null;
+	//flights added or changed and not yet fetched
+	private final List<Integer> _added = new ArrayList<Integer>();
+	//position of every fnum in the network, a flight noted twice is only added once
+	private final Map<Integer, Integer> _positions = new HashMap<Integer, Integer>();
+	//the seats of every flight are re-read before the next search
+	private volatile boolean _planesChanged = false;
+
+	public RouteGraph(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to read the whole flight network from the database, replacing
+	 * what was loaded before.
+	 *
+	 * @return the number of flights loaded
+	 * @throws java.sql.SQLException when the flights could not be read
+	 */
+	public int load() throws SQLException {
+		synchronized (this._added){
+			this._added.clear();
+		}
+		synchronized (this){
+			this._network = null;
+			this._airports.clear();
+			this._positions.clear();
+			this._planesChanged = false;
+			fetch(LOAD_FLIGHTS);
+			reindex();
+			return size();
+		}
+	}
+
+	/**
+	 * Method to note flights created by this process once they are
+	 * committed, or by other processes as reported by ChangeListener.
+	 * They are fetched before the next search.
+	 */
+	public void added(int... fnums) {
+		synchronized (this._added){
+			for (int fnum : fnums)
+				this._added.add(fnum);
+		}
+	}
+
+	/**
+	 * Method to note flights whose num_sold or plane changed.  Their seats
+	 * left are re-read before the next search.
+	 */
+	public void changed(int... fnums) {
+		added(fnums);
+	}
+
+	/**
+	 * Method to note that planes changed, which may change the seats of any
+	 * flight.  Every flight's seats left are re-read before the next search.
+	 */
+	public void planesChanged() {
+		this._planesChanged = true;
+	}
+
+	/**
+	 * Fetches the flights noted by added and changed, or loads the network
+	 * on first use.
+	 */
+	private void refresh() throws SQLException {
+		if (this._network == null){
+			synchronized (this){
+				if (this._network == null) load();
+			}
+			return;
+		}//end if
+		if (this._planesChanged){
+			this._planesChanged = false;
+			this._esql.executeQueryStreaming(LOAD_SEATS, new DBproject.RowHandler(){
+				public void row(ResultSet rs) throws SQLException {
+					seatsLeft(rs.getInt(1), rs.getInt(2));
+				}
+			});
+		}//end if
+		Integer[] fnums;
+		synchronized (this._added){
+			if (this._added.isEmpty()) return;
+			fnums = this._added.toArray(new Integer[0]);
+			this._added.clear();
+		}
+		Array array;
+		CachedConnection conn = this._esql.acquire();
+		try{
+			array = conn.getConnection().createArrayOf("integer", fnums);
+		}finally{
+			this._esql.release(conn);
+		}
+		synchronized (this){
+			fetch(LOAD_ADDED, array);
+			Network n = this._network;
+			if (n.count - n.indexed >= Math.max(MIN_REINDEX, n.count / REINDEX_FRACTION)) reindex();
+		}
+	}
+
+	private void fetch(String sql, Object... params) throws SQLException {
+		this._esql.executeQueryStreaming(sql, new DBproject.RowHandler(){
+			public void row(ResultSet rs) throws SQLException {
+				add(rs.getInt(1), rs.getString(2).trim(), rs.getString(3).trim(), (int) rs.getDate(4).toLocalDate().toEpochDay(),
+						(int) rs.getDate(5).toLocalDate().toEpochDay(), rs.getInt(6), rs.getInt(7), rs.getInt(8));
+			}
+		}, params);
+	}
+
+	/**
+	 * Updates the seats left of a flight in the network, in place: searches
+	 * see either count.
+	 */
+	private synchronized void seatsLeft(int fnum, int seats) {
+		Integer position = this._positions.get(fnum);
+		if (position != null) this._network.seats[position] = seats;
+	}
+
+	/**
+	 * Method to add a flight to the unindexed tail of the network.  A flight
+	 * in the network already only has its seats left updated.
+	 *
+	 * @param from the departure airport code
+	 * @param to the arrival airport code
+	 * @param depDay the departure date as days since 1970-01-01
+	 * @param arrDay the arrival date as days since 1970-01-01
+	 * @param seats the seats left
+	 */
+	public synchronized void add(int fnum, String from, String to, int depDay, int arrDay, int cost, int stops, int seats) {
+		Network n = this._network;
+		int count = n == null ? 0 : n.count;
+		if (fnum >= 0){
+			Integer position = this._positions.get(fnum);
+			if (position != null){
+				n.seats[position] = seats;
+				return;
+			}//end if
+			this._positions.put(fnum, count);
+		}//end if
+		int[][] columns = n == null ? new int[8][INITIAL_CAPACITY] : n.columns();
+		if (count == columns[0].length){
+			//searches keep reading the old arrays up to their count
+			for (int c = 0; c < columns.length; ++c)
+				columns[c] = Arrays.copyOf(columns[c], count * 2);
+		}//end if
+		int[] row = {fnum, airport(from), airport(to), depDay, arrDay, cost, stops, seats};
+		for (int c = 0; c < columns.length; ++c)
+			columns[c][count] = row[c];
+		String[] codes = codes(n);
+		int longest = Math.max(n == null ? 0 : n.longest, arrDay - depDay);
+		this._network = n == null ? new Network(count + 1, columns, codes, longest, 0, new int[1], new int[0], new int[1], new int[0])
+				: new Network(count + 1, columns, codes, longest, n.indexed, n.outStart, n.out, n.inStart, n.in);
+	}
+
+	private int airport(String code) {
+		Integer id = this._airports.get(code);
+		if (id == null){
+			id = this._airports.size();
+			this._airports.put(code, id);
+		}//end if
+		return id;
+	}
+
+	private String[] codes(Network n) {
+		if (n != null && n.codes.length == this._airports.size()) return n.codes;
+		String[] codes = new String[this._airports.size()];
+		for (Map.Entry<String, Integer> e : this._airports.entrySet())
+			codes[e.getValue()] = e.getKey();
+		return codes;
+	}
+
+	/**
+	 * Method to rebuild the adjacency lists over every flight, including the
+	 * tail.
+	 */
+	public synchronized void reindex() {
+		Network n = this._network;
+		if (n == null) return;
+		int airports = n.codes.length;
+		int[] outStart = new int[airports + 1], inStart = new int[airports + 1];
+		for (int f = 0; f < n.count; ++f){
+			++outStart[n.from[f] + 1];
+			++inStart[n.to[f] + 1];
+		}//end for
+		for (int a = 0; a < airports; ++a){
+			outStart[a + 1] += outStart[a];
+			inStart[a + 1] += inStart[a];
+		}//end for
+		this._network = new Network(n.count, n.columns(), n.codes, n.longest, n.count, outStart, sortedList(n, n.from, outStart),
+				inStart, sortedList(n, n.to, inStart));
+	}
+
+	/**
+	 * Buckets the flights by airport and sorts every bucket by departure day.
+	 */
+	private static int[] sortedList(final Network n, int[] airport, int[] start) {
+		int[] list = new int[n.count];
+		int[] fill = Arrays.copyOf(start, start.length - 1);
+		for (int f = 0; f < n.count; ++f)
+			list[fill[airport[f]]++] = f;
+		//counting sort by day would need the day range, flights per airport are few enough to sort
+		for (int a = 0; a + 1 < start.length; ++a){
+			int from = start[a], to = start[a + 1];
+			if (to - from < 2) continue;
+			long[] keys = new long[to - from];
+			for (int i = from; i < to; ++i)
+				keys[i - from] = ((long) n.dep[list[i]] << 32) | list[i];
+			Arrays.sort(keys);
+			for (int i = from; i < to; ++i)
+				list[i] = (int) keys[i - from];
+		}//end for
+		return list;
+	}
+
+	/**
+	 * @return the number of flights in the network
+	 */
+	public int size() {
+		Network n = this._network;
+		return n == null ? 0 : n.count;
+	}
+
+	/**
+	 * Method to find routes from one airport to another departing on a
+	 * given day, with up to maxConnections changes of flight.  Routes are
+	 * ordered by arrival date, then number of flights, then cost.
+	 *
+	 * @param from the departure airport code
+	 * @param to the arrival airport code
+	 * @param date the departure date
+	 * @param maxConnections 0 for direct flights only, at most MAX_CONNECTIONS
+	 * @param minLayoverDays the days at least between arriving and taking the next flight
+	 * @param maxLayoverDays the days at most between arriving and taking the next flight
+	 * @param seats the seats needed on every flight, 0 to ignore seat availability
+	 * @param limit the most routes returned
+	 * @return the routes found
+	 * @throws java.sql.SQLException when the network or the seats could not be loaded
+	 */
+	public List<Route> search(String from, String to, LocalDate date, int maxConnections, int minLayoverDays, int maxLayoverDays,
+			int seats, int limit) throws SQLException {
+		if (maxConnections < 0 || maxConnections > MAX_CONNECTIONS)
+			throw new IllegalArgumentException("connections must be between 0 and " + MAX_CONNECTIONS);
+		if (minLayoverDays < 0 || maxLayoverDays < minLayoverDays)
+			throw new IllegalArgumentException("invalid layover range " + minLayoverDays + " to " + maxLayoverDays);
+		refresh();
+		Network n = this._network;
+		Candidates candidates = candidates(n, from.trim(), to.trim(), (int) date.toEpochDay(), maxConnections, minLayoverDays, maxLayoverDays, seats);
+		return routes(n, candidates, seats, limit);
+	}//end search
+
+	/**
+	 * Flight sequences of the routes found, with a sort key each: arrival
+	 * day, number of flights and cost, packed into a long.
+	 */
+	private static class Candidates{
+		int[] legs = new int[3 * 64];
+		long[] keys = new long[64];
+		int size = 0;
+
+		void add(Network n, int day, int first, int second, int third) {
+			if (this.size == this.keys.length){
+				this.keys = Arrays.copyOf(this.keys, this.size * 2);
+				this.legs = Arrays.copyOf(this.legs, this.size * 6);
+			}//end if
+			int last = third >= 0 ? third : second >= 0 ? second : first;
+			int count = third >= 0 ? 3 : second >= 0 ? 2 : 1;
+			long cost = n.cost[first] + (second >= 0 ? n.cost[second] : 0) + (third >= 0 ? n.cost[third] : 0);
+			long arrival = Math.min(127, Math.max(0, n.arr[last] - day));
+			this.keys[this.size] = arrival << 56 | (long) count << 54 | Math.min(cost, (1 << 22) - 1) << 32 | this.size;
+			this.legs[3 * this.size] = first;
+			this.legs[3 * this.size + 1] = second;
+			this.legs[3 * this.size + 2] = third;
+			++this.size;
+		}
+
+		/**
+		 * @return the flights of the i-th candidate in sorted order, after sort
+		 */
+		int[] route(int i) {
+			int c = (int) this.keys[i];
+			int count = this.legs[3 * c + 2] >= 0 ? 3 : this.legs[3 * c + 1] >= 0 ? 2 : 1;
+			return Arrays.copyOfRange(this.legs, 3 * c, 3 * c + count);
+		}
+
+		void sort() {
+			Arrays.sort(this.keys, 0, this.size);
+		}
+	}
+
+	/**
+	 * Collects the flight sequences of every route, filtered by the seats
+	 * left as loaded.  The last legs into the destination are gathered
+	 * first, per departure airport, so the search only expands one or two
+	 * legs out of the origin and then looks up how to finish.
+	 */
+	private Candidates candidates(Network n, String fromCode, String toCode, int day, int maxConnections,
+			int minLayover, int maxLayover, int seats) {
+		Candidates found = new Candidates();
+		if (n == null) return found;
+		int a = indexOf(n, fromCode), b = indexOf(n, toCode);
+		if (a < 0 || b < 0 || a == b) return found;
+		int lastDay = day + maxConnections * (maxLayover + n.longest);
+
+		//last legs: flights into b departing by lastDay, chained per departure airport
+		int[] head = new int[n.codes.length];
+		Arrays.fill(head, -1);
+		int[] next = new int[16], legs = new int[16];
+		int lastLegs = 0;
+		if (maxConnections > 0){
+			int listed = n.listed(b) ? n.inStart[b + 1] - n.first(n.inStart, n.in, b, day) : 0;
+			for (int i = 0; i < listed + n.count - n.indexed; ++i){
+				int f = i < listed ? n.in[n.inStart[b + 1] - listed + i] : n.indexed + i - listed;
+				if (n.to[f] != b || n.dep[f] < day || (seats > 0 && n.seats[f] < seats)) continue;
+				//the listed flights are sorted, the tail is not
+				if (n.dep[f] > lastDay){
+					if (i < listed) i = listed - 1;
+					continue;
+				}//end if
+				if (lastLegs == legs.length){
+					legs = Arrays.copyOf(legs, lastLegs * 2);
+					next = Arrays.copyOf(next, lastLegs * 2);
+				}//end if
+				legs[lastLegs] = f;
+				next[lastLegs] = head[n.from[f]];
+				head[n.from[f]] = lastLegs++;
+			}//end for
+		}//end if
+
+		int[] firsts = departing(n, a, day, day, seats);
+		for (int first : firsts){
+			int x = n.to[first];
+			if (x == b){
+				found.add(n, day, first, -1, -1);
+				continue;
+			}//end if
+			if (maxConnections == 0 || x == a) continue;
+			int earliest = n.arr[first] + minLayover, latest = n.arr[first] + maxLayover;
+			for (int l = head[x]; l >= 0; l = next[l]){
+				int second = legs[l];
+				if (n.dep[second] >= earliest && n.dep[second] <= latest) found.add(n, day, first, second, -1);
+			}//end for
+			if (maxConnections < 2) continue;
+			for (int second : departing(n, x, earliest, latest, seats)){
+				int y = n.to[second];
+				if (y == a || y == b) continue;
+				int earliest2 = n.arr[second] + minLayover, latest2 = n.arr[second] + maxLayover;
+				for (int l = head[y]; l >= 0; l = next[l]){
+					int third = legs[l];
+					if (n.dep[third] >= earliest2 && n.dep[third] <= latest2) found.add(n, day, first, second, third);
+				}//end for
+			}//end for
+		}//end for
+		return found;
+	}
+
+	/**
+	 * @return the id of an airport in the network, -1 when it has no flights
+	 */
+	private int indexOf(Network n, String code) {
+		Integer id = this._airports.get(code);
+		//airports of flights added after n was taken, or of a reload, are not in it
+		return id == null || id >= n.codes.length || !n.codes[id].equals(code) ? -1 : id;
+	}
+
+	/**
+	 * @return the flights leaving an airport between two days with enough seats left
+	 */
+	private static int[] departing(Network n, int airport, int firstDay, int lastDay, int seats) {
+		int[] flights = new int[16];
+		int count = 0;
+		int from = n.listed(airport) ? n.first(n.outStart, n.out, airport, firstDay) : 0;
+		int to = n.listed(airport) ? n.outStart[airport + 1] : 0;
+		for (int i = from; i < to + n.count - n.indexed; ++i){
+			int f = i < to ? n.out[i] : n.indexed + i - to;
+			if (i < to && n.dep[f] > lastDay){
+				//the listed flights are sorted, the tail is not
+				i = to - 1;
+				continue;
+			}//end if
+			if (n.from[f] != airport || n.dep[f] < firstDay || n.dep[f] > lastDay || (seats > 0 && n.seats[f] < seats)) continue;
+			if (count == flights.length) flights = Arrays.copyOf(flights, count * 2);
+			flights[count++] = f;
+		}//end for
+		return Arrays.copyOf(flights, count);
+	}
+
+	/**
+	 * Orders the candidates and keeps the first limit whose flights still
+	 * have the seats according to the seat cache.
+	 */
+	private List<Route> routes(Network n, Candidates candidates, int seats, int limit) throws SQLException {
+		candidates.sort();
+		List<Route> routes = new ArrayList<Route>();
+		for (int c = 0; c < candidates.size && routes.size() < limit; ++c){
+			int[] legs = candidates.route(c);
+			int[] fnums = new int[legs.length];
+			String[] airports = new String[legs.length + 1];
+			airports[0] = n.codes[n.from[legs[0]]];
+			boolean available = true;
+			for (int i = 0; i < legs.length; ++i){
+				fnums[i] = n.fnum[legs[i]];
+				airports[i + 1] = n.codes[n.to[legs[i]]];
+				if (seats > 0 && available){
+					Integer left = this._esql.availableSeats(fnums[i]);
+					available = left != null && left >= seats;
+				}//end if
+			}//end for
+			if (available)
+				routes.add(new Route(fnums, airports, LocalDate.ofEpochDay(n.dep[legs[0]]), LocalDate.ofEpochDay(n.arr[legs[legs.length - 1]]), cost(n, legs)));
+		}//end for
+		return routes;
+	}
+
+	static int cost(Network n, int[] legs) {
+		int cost = 0;
+		for (int f : legs)
+			cost += n.cost[f];
+		return cost;
+	}
+
+	public String toString() {
+		Network n = this._network;
+		return n == null ? "route graph: not loaded"
+				: String.format("route graph: %d flights, %d airports, %d not indexed", n.count, n.codes.length, n.count - n.indexed);
+	}
+}
@@ -0,0 +1,214 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+/**
+ * This class caches the seat counts of recently asked about flights, so
+ * the seat availability check does not have to run the Plane, Flight,
+ * FlightInfo and Schedule query every time.  Entries are evicted least
+ * recently used first.
+ *
+ * The booking path writes the num_sold value returned by the database
+ * through to the cache, and every other change made by this process
+ * invalidates the flight, so cached counts stay exact as long as no other
+ * process writes to the same flights; a ChangeListener applies the counts
+ * other processes commit.  Counts read inside a transaction may include
+ * its uncommitted writes and are not cached.
+ */
+
+public class SeatCache{
+	//default number of flights kept
+	public static final int DEFAULT_CAPACITY = 10000;
+
+	static final String LOAD_SEATS =
+		"SELECT P.seats, F.num_sold FROM Flight F, FlightInfo FI, Plane P " +
+		"WHERE F.fnum = ? AND FI.flight_id = F.fnum AND P.id = FI.plane_id " +
+		"AND EXISTS (SELECT 1 FROM Schedule S WHERE S.flightNum = F.fnum) LIMIT 1";
+	static final String LOAD_SCHEDULED =
+		"SELECT 1 FROM Schedule S WHERE S.flightNum = ? AND S.departure_time = CAST(? AS DATE) LIMIT 1";
+
+	/**
+	 * The cached seat counts of one flight.
+	 */
+	private static class Seats{
+		final int capacity;
+		int sold;
+		//departure dates already checked against Schedule
+		Map<String, Boolean> scheduled;
+
+		Seats(int capacity, int sold) {
+			this.capacity = capacity;
+			this.sold = sold;
+		}
+	}
+
+	private final DBproject _esql;
+	private final LinkedHashMap<Integer, Seats> _flights;
+	//bumped by writes to flights that are not cached, a load that raced with one is not cached
+	private long _writes = 0;
+	private final AtomicLong _hits = new AtomicLong();
+	private final AtomicLong _misses = new AtomicLong();
+
+	public SeatCache(DBproject esql, final int capacity) {
+		this._esql = esql;
+		this._flights = new LinkedHashMap<Integer, Seats>(16, 0.75f, true){
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Seats> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Method to find the seats left on a flight.
+	 *
+	 * @param fnum the flight number
+	 * @return the seats left, or null when the flight has no plane or schedule
+	 * @throws java.sql.SQLException when the counts could not be loaded
+	 */
+	public Integer remaining(int fnum) throws SQLException {
+		Seats seats = seats(fnum);
+		if (seats == null) return null;
+		synchronized (this){
+			return seats.capacity - seats.sold;
+		}
+	}
+
+	/**
+	 * Method to find the seats left on a flight departing on a given date.
+	 *
+	 * @param fnum the flight number
+	 * @param date the departure date as entered
+	 * @return the seats left, or null when the flight does not depart that day
+	 * @throws java.sql.SQLException when the counts could not be loaded
+	 */
+	public Integer remaining(int fnum, String date) throws SQLException {
+		Seats seats = seats(fnum);
+		if (seats == null) return null;
+		Boolean scheduled;
+		synchronized (this){
+			scheduled = seats.scheduled == null ? null : seats.scheduled.get(date);
+		}
+		if (scheduled == null){
+			long writes = writes();
+			boolean cacheable = !this._esql.inTransaction();
+			scheduled = this._esql.executeQuery(LOAD_SCHEDULED, fnum, date) > 0;
+			synchronized (this){
+				if (cacheable && writes == this._writes){
+					if (seats.scheduled == null) seats.scheduled = new HashMap<String, Boolean>();
+					seats.scheduled.put(date, scheduled);
+				}//end if
+			}
+		}//end if
+		if (!scheduled) return null;
+		synchronized (this){
+			return seats.capacity - seats.sold;
+		}
+	}
+
+	private Seats seats(int fnum) throws SQLException {
+		long writes;
+		synchronized (this){
+			Seats seats = this._flights.get(fnum);
+			if (seats != null){
+				this._hits.incrementAndGet();
+				return seats;
+			}//end if
+			writes = this._writes;
+		}
+		this._misses.incrementAndGet();
+		boolean cacheable = !this._esql.inTransaction();
+		ResultTable row = this._esql.executeQueryAndReturnTable(LOAD_SEATS, fnum);
+		if (row.rowCount() == 0) return null;
+		Seats seats = new Seats(row.getInt(0, 0), row.getInt(0, 1));
+		synchronized (this){
+			if (cacheable && writes == this._writes) this._flights.put(fnum, seats);
+		}
+		return seats;
+	}
+
+	/**
+	 * Writes a committed booking through to the cache.
+	 *
+	 * @param fnum the flight number
+	 * @param sold num_sold as returned by the booking
+	 */
+	public synchronized void reserved(int fnum, int sold) {
+		Seats seats = this._flights.get(fnum);
+		if (seats == null){
+			//a load of this flight may be running, keep it from caching the old count
+			++this._writes;
+		}else if (sold > seats.sold){
+			//concurrent bookings may report back out of order, num_sold only grows
+			seats.sold = sold;
+		}//end if
+	}
+
+	/**
+	 * Applies num_sold as committed by another process.  Changes arrive in
+	 * commit order, so unlike reserved the count may go down, e.g. after a
+	 * cancellation.
+	 *
+	 * @param fnum the flight number
+	 * @param sold num_sold as committed
+	 */
+	public synchronized void changed(int fnum, int sold) {
+		Seats seats = this._flights.get(fnum);
+		if (seats == null) ++this._writes;
+		else seats.sold = sold;
+	}
+
+	/**
+	 * Drops a flight after a change this cache can not apply exactly.
+	 */
+	public synchronized void invalidate(int fnum) {
+		++this._writes;
+		this._flights.remove(fnum);
+	}
+
+	/**
+	 * Drops every flight.
+	 */
+	public synchronized void clear() {
+		++this._writes;
+		this._flights.clear();
+	}
+
+	private synchronized long writes() {
+		return this._writes;
+	}
+
+	public long getHits() {
+		return this._hits.get();
+	}
+
+	public long getMisses() {
+		return this._misses.get();
+	}
+
+	public synchronized int size() {
+		return this._flights.size();
+	}
+
+	public String toString() {
+		long hits = getHits(), misses = getMisses();
+		return String.format("seat cache: %d flights, %d hits, %d misses, %.1f%% hit ratio",
+				size(), hits, misses, hits + misses == 0 ? 0.0 : 100.0 * hits / (hits + misses));
+	}
+}
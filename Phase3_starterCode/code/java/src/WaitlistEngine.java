@@ -0,0 +1,197 @@
+/*
+ * Template JAVA User Interface
+ * =============================
+ *
+ * Database Management Systems
+ * Department of Computer Science &amp; Engineering
+ * University of California - Riverside
+ *
+ * Target DBMS: 'Postgres'
+ *
+ */
+
+
+import java.sql.Array;
+import java.sql.SQLException;
+
+
+/**
+ * This class cancels reservations and promotes waitlisted passengers into
+ * the seats that are free.  Promotion is one statement per batch of
+ * flights: it locks the batch's Flight rows in fnum order, ranks the
+ * waitlisted reservations of each flight by rnum, moves as many of them
+ * to 'R' as the flight has seats left and adds them to num_sold.
+ *
+ * A single booking takes its seat with one conditional UPDATE of the
+ * Flight row, num_sold + 1 WHERE num_sold < seats.  The update waits for a
+ * promotion holding the row and then re-checks the condition against the
+ * num_sold the promotion committed, while a promotion reads num_sold only
+ * once it holds the row lock, after the booking's increment committed.
+ * Either way the check and the increment see the same num_sold, so neither
+ * can oversell the flight.  Group bookings and promotion batches lock
+ * their flights in fnum order, so they can not deadlock each other.
+ */
+
+public class WaitlistEngine{
+	//flights promoted per transaction by promoteAll
+	static final int BATCH_FLIGHTS = 1000;
+
+	//marks an active reservation cancelled and gives its seat back
+	static final String CANCEL =
+		"WITH target AS (" +
+			"SELECT R.rnum, R.fid, R.status FROM Reservation R WHERE R.rnum = ? AND R.status IN ('R', 'W') FOR UPDATE" +
+		"), cancelled AS (" +
+			"UPDATE Reservation R SET status = 'C' FROM target T WHERE R.rnum = T.rnum RETURNING T.fid, T.status" +
+		"), freed AS (" +
+			"UPDATE Flight F SET num_sold = F.num_sold - 1 FROM cancelled C WHERE F.fnum = C.fid AND C.status = 'R' RETURNING F.fnum" +
+		") SELECT fid, status FROM cancelled";
+	//oldest waitlisted reservations of a batch of flights into the free seats
+	static final String PROMOTE =
+		"WITH flights AS (" +
+			"SELECT F.fnum, F.num_sold FROM Flight F WHERE F.fnum = ANY (?) ORDER BY F.fnum FOR UPDATE" +
+		"), capacity AS (" +
+			"SELECT FL.fnum, (SELECT P.seats FROM FlightInfo FI, Plane P WHERE FI.flight_id = FL.fnum AND P.id = FI.plane_id LIMIT 1) " +
+			"- FL.num_sold AS free FROM flights FL" +
+		"), waiting AS (" +
+			"SELECT R.rnum, R.fid, row_number() OVER (PARTITION BY R.fid ORDER BY R.rnum) AS position " +
+			"FROM Reservation R, capacity C WHERE R.fid = C.fnum AND R.status = 'W' AND C.free > 0" +
+		"), promoted AS (" +
+			//re-checked on rows a concurrent cancellation changed, their seat stays free for the next run
+			"UPDATE Reservation R SET status = 'R' FROM waiting W, capacity C " +
+			"WHERE R.rnum = W.rnum AND C.fnum = W.fid AND W.position <= C.free AND R.status = 'W' " +
+			"RETURNING R.fid" +
+		"), sold AS (" +
+			"UPDATE Flight F SET num_sold = F.num_sold + P.n " +
+			"FROM (SELECT fid, COUNT(*) AS n FROM promoted GROUP BY fid) P WHERE F.fnum = P.fid " +
+			"RETURNING F.fnum, F.num_sold, P.n" +
+		") SELECT fnum, num_sold, n FROM sold";
+	//flights with waitlisted passengers, from the status summary
+	static final String WAITLISTED_FLIGHTS =
+		"SELECT fid FROM ReservationStatusCount WHERE status = 'W' AND passengers > 0 ORDER BY fid";
+
+	/**
+	 * The outcome of a cancellation.
+	 */
+	public static class Cancellation{
+		public final int rnum;
+		public final int fnum;
+		//status the reservation had, 'R' or 'W'
+		public final String status;
+		//waitlisted passengers moved into the freed seat
+		public final int promoted;
+
+		Cancellation(int rnum, int fnum, String status, int promoted) {
+			this.rnum = rnum;
+			this.fnum = fnum;
+			this.status = status;
+			this.promoted = promoted;
+		}
+
+		public String toString() {
+			return "Reservation " + this.rnum + " on flight " + this.fnum + " cancelled (was " + this.status + "), " +
+					this.promoted + " waitlisted passenger(s) promoted";
+		}
+	}
+
+	private final DBproject _esql;
+
+	public WaitlistEngine(DBproject esql) {
+		this._esql = esql;
+	}
+
+	/**
+	 * Method to cancel a reserved or waitlisted reservation.  A freed seat
+	 * goes to the flight's oldest waitlisted passenger in the same
+	 * transaction.
+	 *
+	 * @param rnum the reservation number
+	 * @return the cancellation, or null when there is no active reservation with that number
+	 * @throws java.sql.SQLException when the cancellation failed
+	 */
+	public Cancellation cancel(final int rnum) throws SQLException {
+		return this._esql.transaction(new DBproject.Work<Cancellation>(){
+			public Cancellation run(CachedConnection conn) throws SQLException {
+				ResultTable cancelled = _esql.executeQueryAndReturnTable(CANCEL, rnum);
+				if (cancelled.rowCount() == 0) return null;
+				final int fnum = cancelled.getInt(0, 0);
+				String status = cancelled.getString(0, 1);
+				int promoted = 0;
+				if (status.equals("R")){
+					//num_sold went down, which the cache can not apply by itself
+					_esql.afterCommit(new Runnable(){
+						public void run() {
+							_esql.getSeatCache().invalidate(fnum);
+							_esql.getRoutes().changed(fnum);
+						}
+					});
+					promoted = promoteBatch(new int[]{fnum});
+				}//end if
+				return new Cancellation(rnum, fnum, status, promoted);
+			}
+		});
+	}//end cancel
+
+	/**
+	 * Method to promote waitlisted passengers of some flights in one
+	 * transaction, e.g. after their planes were changed for bigger ones.
+	 *
+	 * @param fnums the flight numbers
+	 * @return the number of passengers promoted
+	 * @throws java.sql.SQLException when the promotion failed, in which case no one is promoted
+	 */
+	public int promote(final int... fnums) throws SQLException {
+		return this._esql.transaction(new DBproject.Work<Integer>(){
+			public Integer run(CachedConnection conn) throws SQLException {
+				return promoteBatch(fnums);
+			}
+		});
+	}
+
+	/**
+	 * Method to promote waitlisted passengers on every flight, BATCH_FLIGHTS
+	 * flights per transaction.  A failed batch leaves the batches before it
+	 * committed.
+	 *
+	 * @return the number of passengers promoted
+	 * @throws java.sql.SQLException when a batch failed
+	 */
+	public int promoteAll() throws SQLException {
+		ResultTable flights = this._esql.executeQueryAndReturnTable(WAITLISTED_FLIGHTS);
+		int promoted = 0;
+		for (int from = 0; from < flights.rowCount(); from += BATCH_FLIGHTS){
+			int[] batch = new int[Math.min(BATCH_FLIGHTS, flights.rowCount() - from)];
+			for (int i = 0; i < batch.length; ++i)
+				batch[i] = flights.getInt(from + i, 0);
+			promoted += promote(batch);
+		}//end for
+		return promoted;
+	}
+
+	/**
+	 * Runs the promotion statement for a batch in the calling transaction.
+	 */
+	private int promoteBatch(int[] fnums) throws SQLException {
+		CachedConnection conn = this._esql.acquire();
+		Array array;
+		try{
+			Integer[] boxed = new Integer[fnums.length];
+			for (int i = 0; i < fnums.length; ++i)
+				boxed[i] = fnums[i];
+			array = conn.getConnection().createArrayOf("integer", boxed);
+		}finally{
+			this._esql.release(conn);
+		}
+		ResultTable sold = this._esql.executeQueryAndReturnTable(PROMOTE, array);
+		int promoted = 0;
+		for (int r = 0; r < sold.rowCount(); ++r){
+			final int fnum = sold.getInt(r, 0), numSold = sold.getInt(r, 1);
+			promoted += sold.getInt(r, 2);
+			this._esql.afterCommit(new Runnable(){
+				public void run() {
+					_esql.getSeatCache().reserved(fnum, numSold);
+				}
+			});
+		}//end for
+		return promoted;
+	}
+}
@@ -0,0 +1,8 @@
+#! /bin/bash
+DBNAME=$1
+PORT=$2
+USER=$3
+shift 3
+
+# Example: source ./suite.sh flightDB 5432 user -t 1,8 -rff result.json menu.Find
+java -cp lib/*:bin/ BenchSuite $USER"_DB" $PORT $USER "$@"
@@ -11,3 +11,6 @@ echo "Initializing tables .. "
 sleep 1
 psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create.sql
 psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_indexes.sql
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_sequences.sql
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_aggregates.sql
+psql -h localhost -p $PGPORT $USER"_DB" < ../sql/create_notify.sql
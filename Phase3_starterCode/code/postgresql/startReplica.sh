@@ -0,0 +1,20 @@
+#! /bin/bash
+# Starts a hot standby of the database started by startPostgreSQL.sh,
+# streaming from it, to route reads to with
+#   source ./run.sh flightDB $PGPORT $USER "" localhost:$REPLICA_PORT
+# Run from the same shell after startPostgreSQL.sh, so PGPORT is set.
+folder=/tmp/$USER
+export REPLICA_PORT=${1:-9991}
+export REPLICA_DATA=$folder/replica/data
+export REPLICA_SOCKETS=$folder/replica/sockets
+
+#Clear folder
+rm -rf $folder/replica
+mkdir -p $REPLICA_DATA $REPLICA_SOCKETS
+chmod 700 $REPLICA_DATA
+
+#Copy the primary, -R writes the settings to follow it
+pg_basebackup -h localhost -p $PGPORT -D $REPLICA_DATA -X stream -R
+
+sleep 1
+pg_ctl -o "-c unix_socket_directories=$REPLICA_SOCKETS -p $REPLICA_PORT -c hot_standby=on" -D $REPLICA_DATA -l $folder/replica/logfile start
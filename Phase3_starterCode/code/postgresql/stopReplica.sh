@@ -0,0 +1,2 @@
+#! /bin/bash
+pg_ctl -o "-c unix_socket_directories=$REPLICA_SOCKETS -p $REPLICA_PORT" -D $REPLICA_DATA -l $folder/replica/logfile stop
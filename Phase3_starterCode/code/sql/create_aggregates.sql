@@ -0,0 +1,86 @@
+-- Summary tables behind the repair and passenger status reports (menu
+-- options 7 to 10). Triggers keep them up to date on every insert, update
+-- and delete, so the reports read one row per group instead of running a
+-- GROUP BY over Repairs or Reservation. Counts that drop to zero keep their
+-- row; the reports skip them. Run after the data is loaded; the tables are
+-- filled from the current data first.
+
+DROP TABLE IF EXISTS RepairsPerPlane CASCADE;
+DROP TABLE IF EXISTS RepairsPerYear CASCADE;
+DROP TABLE IF EXISTS ReservationStatusCount CASCADE;
+
+CREATE TABLE RepairsPerPlane
+(
+	plane_id INTEGER NOT NULL,
+	repairs BIGINT NOT NULL,
+	PRIMARY KEY (plane_id)
+);
+
+CREATE TABLE RepairsPerYear
+(
+	year INTEGER NOT NULL,
+	repairs BIGINT NOT NULL,
+	PRIMARY KEY (year)
+);
+
+CREATE TABLE ReservationStatusCount
+(
+	fid INTEGER NOT NULL,
+	status CHAR(1) NOT NULL,
+	passengers BIGINT NOT NULL,
+	PRIMARY KEY (fid, status)
+);
+
+INSERT INTO RepairsPerPlane
+SELECT plane_id, COUNT(*) FROM Repairs GROUP BY plane_id;
+
+INSERT INTO RepairsPerYear
+SELECT EXTRACT(year FROM repair_date), COUNT(*) FROM Repairs GROUP BY EXTRACT(year FROM repair_date);
+
+INSERT INTO ReservationStatusCount
+SELECT fid, status, COUNT(*) FROM Reservation WHERE status IS NOT NULL GROUP BY fid, status;
+
+--------------
+---TRIGGERS---
+--------------
+CREATE OR REPLACE FUNCTION repairs_summary() RETURNS trigger AS $$
+BEGIN
+	IF TG_OP IN ('UPDATE', 'DELETE') THEN
+		UPDATE RepairsPerPlane SET repairs = repairs - 1 WHERE plane_id = OLD.plane_id;
+		UPDATE RepairsPerYear SET repairs = repairs - 1 WHERE year = EXTRACT(year FROM OLD.repair_date);
+	END IF;
+	IF TG_OP IN ('INSERT', 'UPDATE') THEN
+		INSERT INTO RepairsPerPlane VALUES (NEW.plane_id, 1)
+		ON CONFLICT (plane_id) DO UPDATE SET repairs = RepairsPerPlane.repairs + 1;
+		INSERT INTO RepairsPerYear VALUES (EXTRACT(year FROM NEW.repair_date), 1)
+		ON CONFLICT (year) DO UPDATE SET repairs = RepairsPerYear.repairs + 1;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE OR REPLACE FUNCTION reservation_summary() RETURNS trigger AS $$
+BEGIN
+	IF TG_OP IN ('UPDATE', 'DELETE') AND OLD.status IS NOT NULL THEN
+		UPDATE ReservationStatusCount SET passengers = passengers - 1
+		WHERE fid = OLD.fid AND status = OLD.status;
+	END IF;
+	IF TG_OP IN ('INSERT', 'UPDATE') AND NEW.status IS NOT NULL THEN
+		INSERT INTO ReservationStatusCount VALUES (NEW.fid, NEW.status, 1)
+		ON CONFLICT (fid, status) DO UPDATE SET passengers = ReservationStatusCount.passengers + 1;
+	END IF;
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER repairs_summary_insert_delete AFTER INSERT OR DELETE ON Repairs
+FOR EACH ROW EXECUTE PROCEDURE repairs_summary();
+CREATE TRIGGER repairs_summary_update AFTER UPDATE OF plane_id, repair_date ON Repairs
+FOR EACH ROW WHEN (OLD.plane_id <> NEW.plane_id OR OLD.repair_date <> NEW.repair_date)
+EXECUTE PROCEDURE repairs_summary();
+
+CREATE TRIGGER reservation_summary_insert_delete AFTER INSERT OR DELETE ON Reservation
+FOR EACH ROW EXECUTE PROCEDURE reservation_summary();
+CREATE TRIGGER reservation_summary_update AFTER UPDATE OF fid, status ON Reservation
+FOR EACH ROW WHEN (OLD.fid <> NEW.fid OR OLD.status IS DISTINCT FROM NEW.status)
+EXECUTE PROCEDURE reservation_summary();
@@ -0,0 +1,32 @@
+-- Keys added by the Java bulk loader (java/src/BulkLoader.java) once all
+-- tables are loaded. Building each index in one pass over loaded data is
+-- much cheaper than maintaining it row by row during the load.
+
+-----------------
+---PRIMARY KEYS--
+-----------------
+ALTER TABLE Customer ADD PRIMARY KEY (id);
+ALTER TABLE Pilot ADD PRIMARY KEY (id);
+ALTER TABLE Flight ADD PRIMARY KEY (fnum);
+ALTER TABLE Plane ADD PRIMARY KEY (id);
+ALTER TABLE Technician ADD PRIMARY KEY (id);
+ALTER TABLE Reservation ADD PRIMARY KEY (rnum);
+ALTER TABLE FlightInfo ADD PRIMARY KEY (fiid);
+ALTER TABLE Repairs ADD PRIMARY KEY (rid);
+ALTER TABLE Schedule ADD PRIMARY KEY (id);
+
+-----------------
+---FOREIGN KEYS--
+-----------------
+ALTER TABLE Reservation ADD FOREIGN KEY (cid) REFERENCES Customer(id);
+ALTER TABLE Reservation ADD FOREIGN KEY (fid) REFERENCES Flight(fnum);
+
+ALTER TABLE FlightInfo ADD FOREIGN KEY (flight_id) REFERENCES Flight(fnum);
+ALTER TABLE FlightInfo ADD FOREIGN KEY (pilot_id) REFERENCES Pilot(id);
+ALTER TABLE FlightInfo ADD FOREIGN KEY (plane_id) REFERENCES Plane(id);
+
+ALTER TABLE Repairs ADD FOREIGN KEY (pilot_id) REFERENCES Pilot(id);
+ALTER TABLE Repairs ADD FOREIGN KEY (plane_id) REFERENCES Plane(id);
+ALTER TABLE Repairs ADD FOREIGN KEY (technician_id) REFERENCES Technician(id);
+
+ALTER TABLE Schedule ADD FOREIGN KEY (flightNum) REFERENCES Flight(fnum);
@@ -1,31 +1,59 @@
--- ASSUME 500+ ENTRIES REQUIRED FOR BTREE
+-- Indexes for the predicates the application actually runs (see
+-- java/src/PlanCheck.java for the workload and its plan baselines).
+-- Primary keys already come with a unique B-tree index, so none is
+-- repeated here.
 
--- 20000 Entries
-CREATE INDEX flight_i
-ON Flight
-USING BTREE (fnum);
+DROP INDEX IF EXISTS flight_i;
+DROP INDEX IF EXISTS reservation_i;
+DROP INDEX IF EXISTS flightinfo_i;
+DROP INDEX IF EXISTS repairs_i;
+DROP INDEX IF EXISTS schedule_i;
+DROP INDEX IF EXISTS repairs_plane_i;
+
+-- Reservations of a flight by status: the status recount of the summary
+-- verification and waitlist lookups, also serves the fid foreign key.
+CREATE INDEX reservation_fid_status_i
+ON Reservation
+USING BTREE (fid, status);
 
--- Customer ONLY has 250 entrees. NO BTREE
--- Pilot ONLY has 250 entrees. NO BTREE
--- Plane ONLY has 67 entrees. NO BTREE
--- Technician ONLY has 250 entrees. NO BTREE
+-- Reservations of a customer and of a flight by rnum: the keyset pages of
+-- java/src/Listings.java seek to the last rnum of the page before.
+CREATE INDEX reservation_cid_rnum_i
+ON Reservation
+USING BTREE (cid, rnum);
 
--- 9999 Entries
-CREATE INDEX reservation_i
+CREATE INDEX reservation_fid_rnum_i
 ON Reservation
-USING BTREE (rnum);
+USING BTREE (fid, rnum);
+
+-- Flights leaving or arriving at an airport in a window of days, paged
+-- by date and fnum.
+CREATE INDEX flight_departure_i
+ON Flight
+USING BTREE (departure_airport, actual_departure_date, fnum);
 
--- 2000 Entries
-CREATE INDEX flightinfo_i
+CREATE INDEX flight_arrival_i
+ON Flight
+USING BTREE (arrival_airport, actual_arrival_date, fnum);
+
+-- Plane of a flight: seat availability and the booking statement.
+-- plane_id is included so the lookup does not visit the table.
+CREATE INDEX flightinfo_flight_plane_i
 ON FlightInfo
-USING BTREE (fiid);
+USING BTREE (flight_id, plane_id);
+
+-- Whether a flight departs on a given day.
+CREATE INDEX schedule_flight_departure_i
+ON Schedule
+USING BTREE (flightNum, departure_time);
 
--- 550 Entries
-CREATE INDEX repairs_i
+-- Repairs of a plane: the per plane recount, the plane_id foreign key and
+-- the keyset pages of a plane's repairs by date and rid.
+CREATE INDEX repairs_plane_date_i
 ON Repairs
-USING BTREE (rid);
+USING BTREE (plane_id, repair_date, rid);
 
--- 2000 Entries
-CREATE INDEX schedule_i
-ON Schedule
-USING BTREE (id);
+-- Repairs of a year: the per year recount.
+CREATE INDEX repairs_year_i
+ON Repairs
+USING BTREE ((EXTRACT(year FROM repair_date)));
@@ -0,0 +1,61 @@
+-- Change events for the caches of other DBproject processes (see
+-- java/src/ChangeListener.java). Every insert, update and delete on the
+-- tables they cache publishes one NOTIFY on the dbproject_changes channel,
+-- sent when the transaction commits, in commit order. Payloads are
+-- "<table> <operation> <key> [<value>]":
+--   F I|U|D fnum num_sold    Flight
+--   R I|U|D rnum fid         Reservation
+--   P|I|T|C I|U|D id         Plane, Pilot, Technician, Customer
+-- Identical payloads of one transaction are delivered once. Run after the
+-- data is loaded, so the load itself publishes nothing.
+
+DROP TRIGGER IF EXISTS flight_changes ON Flight;
+DROP TRIGGER IF EXISTS reservation_changes ON Reservation;
+DROP TRIGGER IF EXISTS plane_changes ON Plane;
+DROP TRIGGER IF EXISTS pilot_changes ON Pilot;
+DROP TRIGGER IF EXISTS technician_changes ON Technician;
+DROP TRIGGER IF EXISTS customer_changes ON Customer;
+
+CREATE OR REPLACE FUNCTION publish_change() RETURNS trigger AS $$
+DECLARE
+	changed RECORD;
+	old_key INTEGER;
+	new_key INTEGER;
+	extra TEXT := '';
+BEGIN
+	IF TG_OP = 'DELETE' THEN changed := OLD; ELSE changed := NEW; END IF;
+	-- the function is planned once per table, so only the branch of
+	-- that table ever reads its columns
+	IF TG_ARGV[0] = 'F' THEN
+		new_key := changed.fnum;
+		extra := ' ' || changed.num_sold;
+		IF TG_OP = 'UPDATE' THEN old_key := OLD.fnum; END IF;
+	ELSIF TG_ARGV[0] = 'R' THEN
+		new_key := changed.rnum;
+		extra := ' ' || changed.fid;
+		IF TG_OP = 'UPDATE' THEN old_key := OLD.rnum; END IF;
+	ELSE
+		new_key := changed.id;
+		IF TG_OP = 'UPDATE' THEN old_key := OLD.id; END IF;
+	END IF;
+	-- a changed key also retires the row under its old key
+	IF old_key IS NOT NULL AND old_key <> new_key THEN
+		PERFORM pg_notify('dbproject_changes', TG_ARGV[0] || ' D ' || old_key);
+	END IF;
+	PERFORM pg_notify('dbproject_changes', TG_ARGV[0] || ' ' || left(TG_OP, 1) || ' ' || new_key || extra);
+	RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER flight_changes AFTER INSERT OR UPDATE OR DELETE ON Flight
+FOR EACH ROW EXECUTE PROCEDURE publish_change('F');
+CREATE TRIGGER reservation_changes AFTER INSERT OR UPDATE OR DELETE ON Reservation
+FOR EACH ROW EXECUTE PROCEDURE publish_change('R');
+CREATE TRIGGER plane_changes AFTER INSERT OR UPDATE OR DELETE ON Plane
+FOR EACH ROW EXECUTE PROCEDURE publish_change('P');
+CREATE TRIGGER pilot_changes AFTER INSERT OR UPDATE OR DELETE ON Pilot
+FOR EACH ROW EXECUTE PROCEDURE publish_change('I');
+CREATE TRIGGER technician_changes AFTER INSERT OR UPDATE OR DELETE ON Technician
+FOR EACH ROW EXECUTE PROCEDURE publish_change('T');
+CREATE TRIGGER customer_changes AFTER INSERT OR UPDATE OR DELETE ON Customer
+FOR EACH ROW EXECUTE PROCEDURE publish_change('C');
@@ -0,0 +1,122 @@
+-- Schema used by the Java bulk loader (java/src/BulkLoader.java).
+-- Same tables as create.sql, but without primary and foreign keys so the
+-- data can be loaded first; create_constraints.sql adds them afterwards.
+
+DROP TABLE IF EXISTS Customer CASCADE;--OK
+DROP TABLE IF EXISTS Flight CASCADE;--OK
+DROP TABLE IF EXISTS Pilot CASCADE;--OK
+DROP TABLE IF EXISTS Plane CASCADE;--OK
+DROP TABLE IF EXISTS Technician CASCADE;--OK
+
+DROP TABLE IF EXISTS Reservation CASCADE;--OK
+DROP TABLE IF EXISTS FlightInfo CASCADE;--OK
+DROP TABLE IF EXISTS Repairs CASCADE;--OK
+DROP TABLE IF EXISTS Schedule CASCADE;--OK
+
+DROP DOMAIN IF EXISTS us_postal_code;
+DROP DOMAIN IF EXISTS _STATUS;
+DROP DOMAIN IF EXISTS _GENDER;
+DROP DOMAIN IF EXISTS _CODE;
+DROP DOMAIN IF EXISTS _PINTEGER;
+DROP DOMAIN IF EXISTS _PZEROINTEGER;
+DROP DOMAIN IF EXISTS _YEAR_1970;
+DROP DOMAIN IF EXISTS _SEATS;
+
+-------------
+---DOMAINS---
+-------------
+CREATE DOMAIN us_postal_code AS TEXT CHECK(VALUE ~ '^\d{5}$' OR VALUE ~ '^\d{5}-\d{4}$');
+CREATE DOMAIN _STATUS CHAR(1) CHECK (value IN ( 'W' , 'C', 'R' ) );
+CREATE DOMAIN _GENDER CHAR(1) CHECK (value IN ( 'F' , 'M' ) );
+CREATE DOMAIN _CODE CHAR(2) CHECK (value IN ( 'MJ' , 'MN', 'SV' ) ); --Major, Minimum, Service
+CREATE DOMAIN _PINTEGER AS int4 CHECK(VALUE > 0);
+CREATE DOMAIN _PZEROINTEGER AS int4 CHECK(VALUE >= 0);
+CREATE DOMAIN _YEAR_1970 AS int4 CHECK(VALUE >= 0);
+CREATE DOMAIN _SEATS AS int4 CHECK(VALUE > 0 AND VALUE < 500);--Plane Seats
+
+------------
+---TABLES---
+------------
+CREATE TABLE Customer
+(
+	id INTEGER NOT NULL,
+	fname CHAR(24) NOT NULL,
+	lname CHAR(24) NOT NULL,
+	gtype _GENDER NOT NULL,
+	dob DATE NOT NULL,
+	address CHAR(256),
+	phone CHAR(10),
+	zipcode char(10)
+);
+
+CREATE TABLE Pilot
+(
+	id INTEGER NOT NULL,
+	fullname CHAR(128),
+	nationality CHAR(24)
+);
+
+CREATE TABLE Flight
+(
+	fnum INTEGER NOT NULL,
+	cost _PINTEGER NOT NULL,
+	num_sold _PZEROINTEGER NOT NULL,
+	num_stops _PZEROINTEGER NOT NULL,
+	actual_departure_date DATE NOT NULL,
+	actual_arrival_date DATE NOT NULL,
+	arrival_airport CHAR(5) NOT NULL,-- AIRPORT CODE --
+	departure_airport CHAR(5) NOT NULL -- AIRPORT CODE --
+);
+
+CREATE TABLE Plane
+(
+	id INTEGER NOT NULL,
+	make CHAR(32) NOT NULL,
+	model CHAR(64) NOT NULL,
+	age _YEAR_1970 NOT NULL,
+	seats _SEATS NOT NULL
+);
+
+CREATE TABLE Technician
+(
+	id INTEGER NOT NULL,
+	full_name CHAR(128) NOT NULL
+);
+
+---------------
+---RELATIONS---
+---------------
+
+CREATE TABLE Reservation
+(
+	rnum INTEGER NOT NULL,
+	cid INTEGER NOT NULL,
+	fid INTEGER NOT NULL,
+	status _STATUS
+);
+
+CREATE TABLE FlightInfo
+(
+	fiid INTEGER NOT NULL,
+	flight_id INTEGER NOT NULL,
+	pilot_id INTEGER NOT NULL,
+	plane_id INTEGER NOT NULL
+);
+
+CREATE TABLE Repairs
+(
+	rid INTEGER NOT NULL,
+	repair_date DATE NOT NULL,
+	repair_code _CODE,
+	pilot_id INTEGER NOT NULL,
+	plane_id INTEGER NOT NULL,
+	technician_id INTEGER NOT NULL
+);
+
+CREATE TABLE Schedule
+(
+	id INTEGER NOT NULL,
+	flightNum INTEGER NOT NULL,
+	departure_time DATE NOT NULL,
+	arrival_time DATE NOT NULL
+);
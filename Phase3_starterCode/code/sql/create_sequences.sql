@@ -0,0 +1,28 @@
+-- Sequences backing the block id allocator (java/src/IdAllocator.java).
+-- Each nextval reserves a block of ids, so INCREMENT BY must match
+-- IdAllocator.BLOCK_SIZE. Every sequence is seeded from the current max key
+-- so it can be re-run after a reload.
+
+DROP SEQUENCE IF EXISTS plane_id_seq;
+DROP SEQUENCE IF EXISTS pilot_id_seq;
+DROP SEQUENCE IF EXISTS technician_id_seq;
+DROP SEQUENCE IF EXISTS flight_fnum_seq;
+DROP SEQUENCE IF EXISTS flightinfo_fiid_seq;
+DROP SEQUENCE IF EXISTS schedule_id_seq;
+DROP SEQUENCE IF EXISTS reservation_rnum_seq;
+
+CREATE SEQUENCE plane_id_seq INCREMENT BY 50 MINVALUE 0;
+CREATE SEQUENCE pilot_id_seq INCREMENT BY 50 MINVALUE 0;
+CREATE SEQUENCE technician_id_seq INCREMENT BY 50 MINVALUE 0;
+CREATE SEQUENCE flight_fnum_seq INCREMENT BY 50 MINVALUE 0;
+CREATE SEQUENCE flightinfo_fiid_seq INCREMENT BY 50 MINVALUE 0;
+CREATE SEQUENCE schedule_id_seq INCREMENT BY 50 MINVALUE 0;
+CREATE SEQUENCE reservation_rnum_seq INCREMENT BY 50 MINVALUE 0;
+
+SELECT setval('plane_id_seq', (SELECT COALESCE(MAX(id) + 1, 0) FROM Plane), false);
+SELECT setval('pilot_id_seq', (SELECT COALESCE(MAX(id) + 1, 0) FROM Pilot), false);
+SELECT setval('technician_id_seq', (SELECT COALESCE(MAX(id) + 1, 0) FROM Technician), false);
+SELECT setval('flight_fnum_seq', (SELECT COALESCE(MAX(fnum) + 1, 0) FROM Flight), false);
+SELECT setval('flightinfo_fiid_seq', (SELECT COALESCE(MAX(fiid) + 1, 0) FROM FlightInfo), false);
+SELECT setval('schedule_id_seq', (SELECT COALESCE(MAX(id) + 1, 0) FROM Schedule), false);
+SELECT setval('reservation_rnum_seq', (SELECT COALESCE(MAX(rnum) + 1, 0) FROM Reservation), false);
@@ -2,3 +2,6 @@
 psql -h localhost -p $PGPORT $USER"_DB" < create.sql
 sleep 5
 psql -h localhost -p $PGPORT $USER"_DB" < create_indexes.sql
+psql -h localhost -p $PGPORT $USER"_DB" < create_sequences.sql
+psql -h localhost -p $PGPORT $USER"_DB" < create_aggregates.sql
+psql -h localhost -p $PGPORT $USER"_DB" < create_notify.sql